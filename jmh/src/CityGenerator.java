@@ -0,0 +1,122 @@
+import java.util.*;
+
+/*
+ * Synthetic cities for benchmarks: a jittered square grid of intersections around
+ * Bangalore with right/down roads, a sprinkling of diagonals and road lengths a little
+ * longer than the straight-line distance (so the A* heuristic stays admissible).
+ * Node names are N0..N(n-1) and their coordinates are registered in GeoDB; lots sit on
+ * random nodes with random ratings, prices and amenities. Everything is seeded, so the
+ * same scale always produces the same city.
+ */
+public class CityGenerator {
+    private static final double LAT0 = 12.90, LON0 = 77.55;
+    private static final double STEP_DEG = 0.002; // ~220 m between intersections
+
+    public final CompactGraph graph;
+    public final String[] nodes;
+    public final double[] lat, lon;
+
+    private CityGenerator(CompactGraph graph, String[] nodes, double[] lat, double[] lon) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.lat = lat;
+        this.lon = lon;
+    }
+
+    public static CityGenerator city(int nodeCount, long seed) {
+        int side = (int) Math.ceil(Math.sqrt(nodeCount));
+        Random rnd = new Random(seed);
+        String[] names = new String[nodeCount];
+        double[] lat = new double[nodeCount];
+        double[] lon = new double[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            names[i] = "N" + i;
+            lat[i] = LAT0 + (i / side) * STEP_DEG + (rnd.nextDouble() - 0.5) * STEP_DEG * 0.4;
+            lon[i] = LON0 + (i % side) * STEP_DEG + (rnd.nextDouble() - 0.5) * STEP_DEG * 0.4;
+            GeoDB.put(names[i], lat[i], lon[i]);
+        }
+
+        // Undirected edges as (u, v, km); each is stored in both directions below
+        int[] from = new int[nodeCount * 5];
+        int[] to = new int[nodeCount * 5];
+        double[] km = new double[nodeCount * 5];
+        int m = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            int col = i % side;
+            int right = col + 1 < side ? i + 1 : -1;
+            int down = i + side;
+            int diag = col + 1 < side ? i + side + 1 : -1;
+            for (int j : new int[]{right, down, rnd.nextInt(8) == 0 ? diag : -1}) {
+                if (j < 0 || j >= nodeCount) continue;
+                if (from.length == m) {
+                    from = Arrays.copyOf(from, m * 2);
+                    to = Arrays.copyOf(to, m * 2);
+                    km = Arrays.copyOf(km, m * 2);
+                }
+                from[m] = i;
+                to[m] = j;
+                km[m] = GeoUtil.haversine(lat[i], lon[i], lat[j], lon[j]) * (1.05 + rnd.nextDouble() * 0.3);
+                m++;
+            }
+        }
+
+        int[] offsets = new int[nodeCount + 1];
+        for (int e = 0; e < m; e++) {
+            offsets[from[e] + 1]++;
+            offsets[to[e] + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) offsets[i + 1] += offsets[i];
+        int[] fill = Arrays.copyOf(offsets, nodeCount);
+        int[] targets = new int[2 * m];
+        double[] weights = new double[2 * m];
+        for (int e = 0; e < m; e++) {
+            targets[fill[from[e]]] = to[e];
+            weights[fill[from[e]]++] = km[e];
+            targets[fill[to[e]]] = from[e];
+            weights[fill[to[e]]++] = km[e];
+        }
+        return new CityGenerator(new CompactGraph(names, offsets, targets, weights), names, lat, lon);
+    }
+
+    // 'count' lots of 20..500 slots on random nodes, each with the given fraction occupied
+    public List<ParkingLot> lots(int count, double occupied, long seed) {
+        Random rnd = new Random(seed);
+        List<ParkingLot> lots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int node = rnd.nextInt(nodes.length);
+            int total = 20 + rnd.nextInt(481);
+            int available = total - (int) Math.round(total * occupied);
+            lots.add(new ParkingLot(String.valueOf(i + 1), nodes[node], total, available,
+                    1 + rnd.nextInt(41) / 10.0, 5 + rnd.nextInt(26), amenities(rnd), lat[node], lon[node]));
+        }
+        return lots;
+    }
+
+    // Security and covered half the time, EV charging a third, valet a fifth
+    private static int amenities(Random rnd) {
+        return (rnd.nextBoolean() ? 1 << AvailabilityStats.SECURE : 0)
+                | (rnd.nextBoolean() ? 1 << AvailabilityStats.COVERED : 0)
+                | (rnd.nextInt(3) == 0 ? 1 << AvailabilityStats.EV_CHARGING : 0)
+                | (rnd.nextInt(5) == 0 ? 1 << AvailabilityStats.VALET : 0);
+    }
+
+    // 'count' random node names, for cycling through query endpoints
+    public String[] sample(int count, long seed) {
+        Random rnd = new Random(seed);
+        String[] out = new String[count];
+        for (int i = 0; i < count; i++) out[i] = nodes[rnd.nextInt(nodes.length)];
+        return out;
+    }
+
+    // The graph as a Source,Dest,DistanceKM CSV (each road once), as FileUtil.loadGraph reads it
+    public void writeCsv(String filepath) throws Exception {
+        try (java.io.BufferedWriter bw = new java.io.BufferedWriter(new java.io.FileWriter(filepath))) {
+            for (int u = 0; u < graph.nodeCount(); u++) {
+                for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                    int v = graph.target(e);
+                    if (u < v) bw.write(nodes[u] + "," + nodes[v] + "," + String.format("%.4f", graph.weight(e)) + "\n");
+                }
+            }
+        }
+    }
+}
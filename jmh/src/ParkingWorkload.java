@@ -0,0 +1,158 @@
+import bench.Workload;
+import java.io.File;
+import java.util.*;
+
+/*
+ * The parking side of bench.Workload: builds a CityGenerator city with a ParkingManager
+ * and a separate ReservationEngine over it, and runs one operation per call.
+ */
+public class ParkingWorkload implements Workload {
+    private static final int BURST = 2000, BURST_ORIGINS = 40;
+
+    private CityGenerator city;
+    private String[] from, to, lotIds;
+    private List<ParkingLot> lots;
+    private List<String> burst;
+    private double[] distances;
+    private LogManager logger;
+    private WaitlistManager waitlist;
+    private ParkingManager manager;
+    private ReservationEngine engine;
+    private String lotFile, graphCsv, graphSnapshot;
+
+    @Override
+    public void setup(int nodes, int lotCount, File dir) throws Exception {
+        city = CityGenerator.city(nodes, 42);
+        from = city.sample(SAMPLES, 1);
+        to = city.sample(SAMPLES, 2);
+        lots = city.lots(lotCount, 0.5, 7);
+
+        logger = new LogManager(new File(dir, "bench.log").getPath(), 1 << 16,
+                LogManager.Backpressure.DROP, 200, null);
+        waitlist = new WaitlistManager(new File(dir, "waitlist.txt").getPath());
+        manager = new ParkingManager(lots, city.graph, waitlist, logger);
+
+        burst = new ArrayList<>(BURST);
+        String[] origins = city.sample(BURST_ORIGINS, 5);
+        for (int k = 0; k < BURST; k++) burst.add(origins[k % BURST_ORIGINS]);
+
+        Random rnd = new Random(11);
+        distances = new double[lotCount];
+        for (int i = 0; i < lotCount; i++) distances[i] = rnd.nextDouble() * 20;
+
+        engine = new ReservationEngine(city.lots(lotCount, 0.5, 7));
+        lotIds = new String[SAMPLES];
+        rnd = new Random(3);
+        for (int k = 0; k < SAMPLES; k++) lotIds[k] = String.valueOf(1 + rnd.nextInt(lotCount));
+
+        lotFile = new File(dir, "lots.txt").getPath();
+        graphCsv = new File(dir, "graph.txt").getPath();
+        graphSnapshot = new File(dir, "graph.bin").getPath();
+        FileUtil.saveParkingData(lotFile, lots);
+    }
+
+    @Override
+    public void tearDown() {
+        logger.close();
+        waitlist.close();
+    }
+
+    @Override
+    public Router router(String mode) {
+        // One engine per thread, since its search state is reused between calls
+        Dijkstra dj = new Dijkstra(city.graph);
+        dj.useGeoHeuristic();
+        return new Router() {
+            @Override
+            public Object route(int k) {
+                return switch (mode) {
+                    case "DIJKSTRA" -> dj.route(from[k], to[k]);
+                    case "ASTAR" -> dj.aStar(from[k], to[k]);
+                    case "BIDIRECTIONAL_ASTAR" -> dj.bidirectionalAStar(from[k], to[k]);
+                    default -> throw new IllegalArgumentException("Unknown mode " + mode);
+                };
+            }
+
+            @Override
+            public Object oneToAll(int k) {
+                return dj.shortestPath(from[k]);
+            }
+        };
+    }
+
+    @Override
+    public Object detailedRoute(int k) {
+        return manager.getDetailedRoute(from[k], to[k]);
+    }
+
+    @Override
+    public Object recommend(int k) {
+        return manager.recommend(from[k]);
+    }
+
+    @Override
+    public Object recommendBatch() {
+        return manager.recommendBatch(burst);
+    }
+
+    @Override
+    public Object managerReserveFree(int k) {
+        String vehicle = "MV" + k;
+        manager.reserveVehicleAtLot(vehicle, lots.get(k % lots.size()).id);
+        return manager.freeByVehicle(vehicle);
+    }
+
+    @Override
+    public double scoreAll() {
+        ScoringKernel.Batch batch = ScoringKernel.acquire();
+        try {
+            for (int i = 0; i < lots.size(); i++) {
+                ParkingLot lot = lots.get(i);
+                batch.add(lot, distances[i], lot.availableSlots() / (double) lot.totalSlots,
+                          lot.rating, lot.costPerHour, 0.5);
+            }
+            int count = ScoringKernel.score(batch, ScoringKernel.DEFAULT_WEIGHTS, 5);
+            return count > 0 ? batch.score[batch.top[0]] : Double.NaN;
+        } finally {
+            ScoringKernel.release(batch);
+        }
+    }
+
+    @Override
+    public String lotId(int k) {
+        return lotIds[k];
+    }
+
+    @Override
+    public Object engineReserveFree(String vehicle, String lotId) {
+        ReservationEngine.Outcome outcome = engine.reserve(vehicle, lotId);
+        if (outcome == ReservationEngine.Outcome.RESERVED) engine.free(vehicle);
+        return outcome;
+    }
+
+    @Override
+    public void saveParkingData() throws Exception {
+        FileUtil.saveParkingData(lotFile, lots);
+    }
+
+    @Override
+    public Object loadParkingLots() throws Exception {
+        return FileUtil.loadParkingLots(lotFile);
+    }
+
+    @Override
+    public void writeGraphFiles() throws Exception {
+        city.writeCsv(graphCsv);
+        GraphSnapshot.write(city.graph, graphSnapshot);
+    }
+
+    @Override
+    public Object loadGraphCsv() throws Exception {
+        return CompactGraph.fromAdjacency(FileUtil.loadGraph(graphCsv));
+    }
+
+    @Override
+    public Object readGraphSnapshot() throws Exception {
+        return GraphSnapshot.read(graphSnapshot);
+    }
+}
@@ -0,0 +1,38 @@
+package bench;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.openjdk.jmh.annotations.*;
+
+/*
+ * One synthetic city per trial. Scales from the benchmark plan, picked with -p:
+ *   small  -p nodes=1000 -p lots=10        (the default)
+ *   medium -p nodes=100000 -p lots=1000
+ *   large  -p nodes=1000000 -p lots=50000
+ */
+@State(Scope.Benchmark)
+public class City {
+    @Param({"1000"})
+    public int nodes;
+
+    @Param({"10"})
+    public int lots;
+
+    public Workload workload;
+    private File dir;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("parking-bench").toFile();
+        workload = Workload.create();
+        workload.setup(nodes, lots, dir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.tearDown();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+}
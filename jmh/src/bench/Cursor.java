@@ -0,0 +1,13 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+// Each thread's position in the sample endpoints
+@State(Scope.Thread)
+public class Cursor {
+    private int k;
+
+    public int next() {
+        return k = (k + 1) & (Workload.SAMPLES - 1);
+    }
+}
@@ -0,0 +1,42 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Lot and graph files: the CSV formats FileUtil reads and writes, and the binary graph snapshot
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FileBenchmark {
+
+    // Written once per trial, and only for the graph loads
+    @State(Scope.Benchmark)
+    public static class GraphFiles {
+        @Setup(Level.Trial)
+        public void write(City city) throws Exception {
+            city.workload.writeGraphFiles();
+        }
+    }
+
+    @Benchmark
+    public void saveParkingData(City city) throws Exception {
+        city.workload.saveParkingData();
+    }
+
+    @Benchmark
+    public Object loadParkingLots(City city) throws Exception {
+        return city.workload.loadParkingLots();
+    }
+
+    @Benchmark
+    public Object loadGraph(City city, GraphFiles files) throws Exception {
+        return city.workload.loadGraphCsv();
+    }
+
+    @Benchmark
+    public Object readGraphSnapshot(City city, GraphFiles files) throws Exception {
+        return city.workload.readGraphSnapshot();
+    }
+}
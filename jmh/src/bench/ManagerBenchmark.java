@@ -0,0 +1,39 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// ParkingManager entry points as the console and the HTTP service call them
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ManagerBenchmark {
+
+    @Benchmark
+    public Object getDetailedRoute(City city, Cursor cursor) {
+        return city.workload.detailedRoute(cursor.next());
+    }
+
+    @Benchmark
+    public Object recommend(City city, Cursor cursor) {
+        return city.workload.recommend(cursor.next());
+    }
+
+    @Benchmark
+    public Object recommendBatch(City city) {
+        return city.workload.recommendBatch();
+    }
+
+    @Benchmark
+    public Object reserveFree(City city, Cursor cursor) {
+        return city.workload.managerReserveFree(cursor.next());
+    }
+
+    // The scoring kernel alone: every lot scored, best 5 selected
+    @Benchmark
+    public double scoringKernel(City city) {
+        return city.workload.scoreAll();
+    }
+}
@@ -0,0 +1,52 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+// ReservationEngine under contention: each thread parks and frees its own vehicles
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReservationBenchmark {
+
+    @State(Scope.Thread)
+    public static class Gate {
+        String[] vehicles = new String[Workload.SAMPLES];
+        String[] lotIds = new String[Workload.SAMPLES];
+
+        @Setup(Level.Trial)
+        public void setup(City city, ThreadParams thread) {
+            int t = thread.getThreadIndex();
+            for (int k = 0; k < Workload.SAMPLES; k++) {
+                vehicles[k] = "T" + t + "-" + k;
+                lotIds[k] = city.workload.lotId((k + t * 31) & (Workload.SAMPLES - 1));
+            }
+        }
+    }
+
+    private static Object reserveFree(City city, Gate gate, Cursor cursor) {
+        int k = cursor.next();
+        return city.workload.engineReserveFree(gate.vehicles[k], gate.lotIds[k]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object reserveFree1(City city, Gate gate, Cursor cursor) {
+        return reserveFree(city, gate, cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object reserveFree4(City city, Gate gate, Cursor cursor) {
+        return reserveFree(city, gate, cursor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object reserveFree8(City city, Gate gate, Cursor cursor) {
+        return reserveFree(city, gate, cursor);
+    }
+}
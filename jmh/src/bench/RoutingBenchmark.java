@@ -0,0 +1,46 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Point-to-point search in each mode, and a full one-to-all search, on one engine per thread
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RoutingBenchmark {
+
+    @State(Scope.Thread)
+    public static class Engine {
+        @Param({"DIJKSTRA", "ASTAR", "BIDIRECTIONAL_ASTAR"})
+        public String mode;
+
+        Workload.Router router;
+
+        @Setup(Level.Trial)
+        public void setup(City city) {
+            router = city.workload.router(mode);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FullSearch {
+        Workload.Router router;
+
+        @Setup(Level.Trial)
+        public void setup(City city) {
+            router = city.workload.router("DIJKSTRA");
+        }
+    }
+
+    @Benchmark
+    public Object route(Engine engine, Cursor cursor) {
+        return engine.router.route(cursor.next());
+    }
+
+    @Benchmark
+    public Object oneToAll(FullSearch search, Cursor cursor) {
+        return search.router.oneToAll(cursor.next());
+    }
+}
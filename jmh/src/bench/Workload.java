@@ -0,0 +1,62 @@
+package bench;
+
+import java.io.File;
+
+/*
+ * What the benchmarks drive, behind an interface: JMH will not generate code for a
+ * benchmark in the default package, and a named package cannot see the parking
+ * classes, which all live there. ParkingWorkload (default package) implements it and
+ * is looked up once per trial, so the measured calls are plain interface calls.
+ * Every query method returns its result for the benchmark to hand back to JMH.
+ */
+public interface Workload {
+    int SAMPLES = 4096; // query endpoints cycled through; a power of two
+
+    static Workload create() throws ReflectiveOperationException {
+        return (Workload) Class.forName("ParkingWorkload").getDeclaredConstructor().newInstance();
+    }
+
+    // A seeded city of 'nodes' intersections with 'lots' lots; scratch files go in 'dir'
+    void setup(int nodes, int lots, File dir) throws Exception;
+
+    void tearDown();
+
+    // Search engine for one thread; mode is DIJKSTRA, ASTAR or BIDIRECTIONAL_ASTAR
+    Router router(String mode);
+
+    interface Router {
+        Object route(int k);     // sample k's from -> to
+
+        Object oneToAll(int k);  // every node from sample k's origin
+    }
+
+    Object detailedRoute(int k);
+
+    Object recommend(int k);
+
+    // One burst of arrivals from a few dozen origins, as an event venue sends them
+    Object recommendBatch();
+
+    // Park and free one vehicle through ParkingManager
+    Object managerReserveFree(int k);
+
+    // Every lot scored by the kernel, best 5 selected; returns the best score
+    double scoreAll();
+
+    // Lot id for sample k, for the engine benchmark's reservations
+    String lotId(int k);
+
+    // Park and free one vehicle on ReservationEngine alone
+    Object engineReserveFree(String vehicle, String lotId);
+
+    void saveParkingData() throws Exception;
+
+    Object loadParkingLots() throws Exception;
+
+    // Writes the CSV and binary snapshot the two graph loads below read
+    void writeGraphFiles() throws Exception;
+
+    Object loadGraphCsv() throws Exception;
+
+    Object readGraphSnapshot() throws Exception;
+}
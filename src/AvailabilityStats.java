@@ -0,0 +1,197 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Running totals over all lots so status views and the waitlist loop never scan the lots.
+ * update(lot) is called after a lot's availableSlots changes: it CASes the new value in
+ * over the last one seen for that lot (kept per registry handle) and applies the
+ * difference to every counter, so it is O(1) whatever the size of the change. It loops
+ * until the stored value matches the lot, so a gate that stored an older reading after a
+ * newer one puts it right before returning. Reads are plain atomic loads.
+ */
+public class AvailabilityStats {
+    public static final int SECURE = 0, COVERED = 1, EV_CHARGING = 2, VALET = 3;
+    private static final int AMENITIES = 4;
+    private static final int RETIRED = Integer.MIN_VALUE; // LotState.available once untracked
+
+    private static class LotState {
+        final ParkingLot lot;
+        final int total;
+        final int amenities; // bit per amenity constant
+        final Location location;
+        final AtomicInteger available;
+
+        LotState(ParkingLot lot, Location location) {
+            this.lot = lot;
+            this.total = lot.totalSlots;
+            this.amenities = lot.amenities;
+            this.location = location;
+            this.available = new AtomicInteger(lot.availableSlots());
+        }
+    }
+
+    private static class Location {
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong occupied = new AtomicLong();
+        final AtomicInteger lots = new AtomicInteger();
+    }
+
+    private final LotRegistry registry;
+    private volatile LotState[] states = new LotState[16];
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+    private final AtomicLong totalSlots = new AtomicLong();
+    private final AtomicLong availableSlots = new AtomicLong();
+    private final AtomicInteger lotCount = new AtomicInteger();
+    private final AtomicInteger nonFullLots = new AtomicInteger();
+    private final AtomicLongArray amenityAvailable = new AtomicLongArray(AMENITIES);
+    private final int[] amenityLots = new int[AMENITIES]; // guarded by 'this'; only track/untrack change it
+
+    // "SE" -> security + EV charging (letters S, E, C, V), as amenity bits
+    public static int parseAmenities(String input) {
+        int bits = 0;
+        for (char c : input.trim().toUpperCase().toCharArray()) {
+            switch (c) {
+                case 'S' -> bits |= 1 << SECURE;
+                case 'E' -> bits |= 1 << EV_CHARGING;
+                case 'C' -> bits |= 1 << COVERED;
+                case 'V' -> bits |= 1 << VALET;
+                default -> { }
+            }
+        }
+        return bits;
+    }
+
+    public AvailabilityStats(LotRegistry registry) {
+        this.registry = registry;
+        for (ParkingLot lot : registry.all()) track(lot);
+    }
+
+    // Start counting a lot, or re-read its size, amenities and location after they changed
+    public synchronized void track(ParkingLot lot) {
+        int handle = registry.handleOf(lot.id);
+        if (handle < 0) return;
+        untrack(handle);
+        if (handle >= states.length) states = Arrays.copyOf(states, Math.max(handle + 1, states.length * 2));
+        Location location = locations.computeIfAbsent(lot.locationName, k -> new Location());
+        LotState st = new LotState(lot, location);
+        int available = st.available.get();
+        lotCount.incrementAndGet();
+        totalSlots.addAndGet(st.total);
+        availableSlots.addAndGet(available);
+        if (available > 0) nonFullLots.incrementAndGet();
+        for (int a = 0; a < AMENITIES; a++) {
+            if ((st.amenities & (1 << a)) == 0) continue;
+            amenityAvailable.addAndGet(a, available);
+            amenityLots[a]++;
+        }
+        location.lots.incrementAndGet();
+        location.total.addAndGet(st.total);
+        location.occupied.addAndGet(st.total - available);
+        states[handle] = st;
+    }
+
+    // Stop counting the lot holding 'handle'; call before the handle is released for reuse
+    public synchronized void untrack(int handle) {
+        LotState[] table = states;
+        if (handle < 0 || handle >= table.length || table[handle] == null) return;
+        LotState st = table[handle];
+        table[handle] = null;
+        int available = st.available.getAndSet(RETIRED);
+        lotCount.decrementAndGet();
+        totalSlots.addAndGet(-st.total);
+        availableSlots.addAndGet(-available);
+        if (available > 0) nonFullLots.decrementAndGet();
+        for (int a = 0; a < AMENITIES; a++) {
+            if ((st.amenities & (1 << a)) == 0) continue;
+            amenityAvailable.addAndGet(a, -available);
+            amenityLots[a]--;
+        }
+        st.location.lots.decrementAndGet();
+        st.location.total.addAndGet(-st.total);
+        st.location.occupied.addAndGet(-(st.total - available));
+        if (st.location.lots.get() == 0) locations.remove(st.lot.locationName, st.location);
+    }
+
+    // Call after lot.availableSlots may have changed
+    public void update(ParkingLot lot) {
+        if (lot == null) return;
+        int handle = registry.handleOf(lot.id);
+        LotState[] table = states;
+        LotState st = handle >= 0 && handle < table.length ? table[handle] : null;
+        if (st == null || st.lot != lot) {
+            if (handle >= 0) track(lot);
+            return;
+        }
+        while (true) {
+            int prev = st.available.get();
+            int now = lot.availableSlots();
+            if (prev == now || prev == RETIRED) return;
+            if (st.available.compareAndSet(prev, now)) apply(st, prev, now);
+        }
+    }
+
+    private void apply(LotState st, int prev, int now) {
+        int delta = now - prev;
+        availableSlots.addAndGet(delta);
+        if ((prev > 0) != (now > 0)) nonFullLots.addAndGet(now > 0 ? 1 : -1);
+        for (int a = 0, bits = st.amenities; bits != 0; a++, bits >>>= 1) {
+            if ((bits & 1) != 0) amenityAvailable.addAndGet(a, delta);
+        }
+        st.location.occupied.addAndGet(-delta);
+    }
+
+    public long totalSlots() {
+        return totalSlots.get();
+    }
+
+    public long availableSlots() {
+        return availableSlots.get();
+    }
+
+    public long occupiedSlots() {
+        return totalSlots.get() - availableSlots.get();
+    }
+
+    public int lotCount() {
+        return lotCount.get();
+    }
+
+    public int nonFullLots() {
+        return nonFullLots.get();
+    }
+
+    public boolean hasAvailableSlots() {
+        return nonFullLots.get() > 0;
+    }
+
+    // Free slots across lots offering the amenity (SECURE, COVERED, EV_CHARGING, VALET)
+    public long amenityAvailable(int amenity) {
+        return amenityAvailable.get(amenity);
+    }
+
+    public synchronized int amenityLots(int amenity) {
+        return amenityLots[amenity];
+    }
+
+    public long locationOccupied(String locationName) {
+        Location l = locationName == null ? null : locations.get(locationName.toUpperCase());
+        return l == null ? 0 : l.occupied.get();
+    }
+
+    public long locationTotal(String locationName) {
+        Location l = locationName == null ? null : locations.get(locationName.toUpperCase());
+        return l == null ? 0 : l.total.get();
+    }
+
+    // location -> {occupied, total}
+    public Map<String, long[]> locationOccupancy() {
+        Map<String, long[]> out = new TreeMap<>();
+        locations.forEach((name, l) -> out.put(name, new long[]{l.occupied.get(), l.total.get()}));
+        return out;
+    }
+}
@@ -0,0 +1,166 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/*
+ * Immutable road graph in compressed sparse row (CSR) form.
+ * Node names are interned to dense int ids once at build time; edges of node u
+ * live in targets/weights[offsets[u] .. offsets[u+1]).
+ */
+public class CompactGraph {
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+
+    CompactGraph(String[] names, int[] offsets, int[] targets, double[] weights) {
+        this.names = names;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.ids = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) ids.put(names[i], i);
+    }
+
+    // Build from the adjacency map produced by FileUtil.loadGraph
+    public static CompactGraph fromAdjacency(Map<String, List<Dijkstra.Edge>> adjacency) {
+        if (adjacency == null) adjacency = Collections.emptyMap();
+
+        // Every edge target is a node too, even if it has no outgoing list
+        TreeSet<String> all = new TreeSet<>(adjacency.keySet());
+        for (List<Dijkstra.Edge> edges : adjacency.values()) {
+            for (Dijkstra.Edge e : edges) all.add(e.to);
+        }
+        String[] names = all.toArray(new String[0]);
+        Map<String, Integer> index = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) index.put(names[i], i);
+
+        int[] offsets = new int[names.length + 1];
+        for (int i = 0; i < names.length; i++) {
+            List<Dijkstra.Edge> edges = adjacency.get(names[i]);
+            offsets[i + 1] = offsets[i] + (edges == null ? 0 : edges.size());
+        }
+
+        int[] targets = new int[offsets[names.length]];
+        double[] weights = new double[targets.length];
+        for (int i = 0; i < names.length; i++) {
+            List<Dijkstra.Edge> edges = adjacency.get(names[i]);
+            if (edges == null) continue;
+            int k = offsets[i];
+            for (Dijkstra.Edge e : edges) {
+                targets[k] = index.get(e.to);
+                weights[k] = e.weight;
+                k++;
+            }
+        }
+        return new CompactGraph(names, offsets, targets, weights);
+    }
+
+    // Copy of this graph with an extra two-way road. Existing node ids are kept stable
+    // and unknown endpoints are appended as new nodes.
+    public CompactGraph withEdge(String from, String to, double weight) {
+        from = from.toUpperCase();
+        to = to.toUpperCase();
+        List<String> extra = new ArrayList<>();
+        if (!contains(from)) extra.add(from);
+        if (!contains(to) && !to.equals(from)) extra.add(to);
+
+        int n = names.length + extra.size();
+        String[] newNames = Arrays.copyOf(names, n);
+        for (int i = 0; i < extra.size(); i++) newNames[names.length + i] = extra.get(i);
+        Map<String, Integer> index = new HashMap<>(ids);
+        for (int i = names.length; i < n; i++) index.put(newNames[i], i);
+        int u = index.get(from);
+        int v = index.get(to);
+
+        int[] newOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            int deg = i < names.length ? degree(i) : 0;
+            if (i == u) deg++;
+            if (i == v) deg++;
+            newOffsets[i + 1] = newOffsets[i] + deg;
+        }
+        int[] newTargets = new int[newOffsets[n]];
+        double[] newWeights = new double[newTargets.length];
+        for (int i = 0; i < n; i++) {
+            int k = newOffsets[i];
+            if (i < names.length) {
+                int deg = degree(i);
+                System.arraycopy(targets, offsets[i], newTargets, k, deg);
+                System.arraycopy(weights, offsets[i], newWeights, k, deg);
+                k += deg;
+            }
+            if (i == u) { newTargets[k] = v; newWeights[k++] = weight; }
+            if (i == v) { newTargets[k] = u; newWeights[k] = weight; }
+        }
+        return new CompactGraph(newNames, newOffsets, newTargets, newWeights);
+    }
+
+    public int nodeCount() { return names.length; }
+
+    public int edgeCount() { return targets.length; }
+
+    // Returns -1 when the node is not part of the graph
+    public int indexOf(String name) {
+        if (name == null) return -1;
+        Integer id = ids.get(name.toUpperCase());
+        return id == null ? -1 : id;
+    }
+
+    public boolean contains(String name) { return indexOf(name) >= 0; }
+
+    public String nameOf(int node) { return names[node]; }
+
+    public int firstEdge(int node) { return offsets[node]; }
+
+    public int endEdge(int node) { return offsets[node + 1]; }
+
+    public int target(int edge) { return targets[edge]; }
+
+    public double weight(int edge) { return weights[edge]; }
+
+    public int degree(int node) { return offsets[node + 1] - offsets[node]; }
+
+    // Weight of the cheapest direct edge u -> v, or NaN if they are not adjacent
+    public double edgeWeight(int from, int to) {
+        double best = Double.NaN;
+        for (int e = offsets[from]; e < offsets[from + 1]; e++) {
+            if (targets[e] == to && (Double.isNaN(best) || weights[e] < best)) best = weights[e];
+        }
+        return best;
+    }
+
+    // CRC32 over names, edges and weights; files derived from the graph store it to detect
+    // a graph that changed under them even when node and edge counts are the same
+    public long checksum() {
+        CRC32 crc = new CRC32();
+        for (String name : names) {
+            byte[] b = name.getBytes(StandardCharsets.UTF_8);
+            crc.update(ByteBuffer.allocate(4).putInt(b.length).array());
+            crc.update(b);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        for (int o : offsets) buf = put(crc, buf, 4).putInt(o);
+        for (int t : targets) buf = put(crc, buf, 4).putInt(t);
+        for (double w : weights) buf = put(crc, buf, 8).putDouble(w);
+        crc.update(buf.flip());
+        return crc.getValue();
+    }
+
+    // Flush 'buf' into the checksum when fewer than 'bytes' remain
+    private static ByteBuffer put(CRC32 crc, ByteBuffer buf, int bytes) {
+        if (buf.remaining() < bytes) {
+            crc.update(buf.flip());
+            buf.clear();
+        }
+        return buf;
+    }
+
+    // Raw arrays for serializers; callers must not modify them
+    String[] names() { return names; }
+    int[] offsets() { return offsets; }
+    int[] targets() { return targets; }
+    double[] weights() { return weights; }
+}
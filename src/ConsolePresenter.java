@@ -0,0 +1,330 @@
+import java.util.*;
+
+/*
+ * Console rendering for the interactive menu. ParkingManager never prints: it returns
+ * plain result objects or status flags and logs the details; only Main calls into this
+ * class, so the service and benchmark callers pay nothing for formatting.
+ */
+public class ConsolePresenter {
+    private static final String RULE = "══════════════════════════════════════════════════════════════";
+
+    // Ranked candidates, selection odds and the reasons behind the pick
+    public static void recommendation(ParkingManager.Recommendation r) {
+        if (r.candidatesConsidered == 0) {
+            System.out.println("🔍 No available parking lots found");
+            return;
+        }
+        System.out.println("🎯 Found " + r.candidatesConsidered + " available parking lots");
+        if (r.selected == null) return;
+
+        System.out.println("\n🏆 TOP PARKING CANDIDATES (Ranked by Overall Score)");
+        System.out.println("=================================================================");
+        for (int i = 0; i < Math.min(5, r.ranked.size()); i++) {
+            ParkingManager.ParkingScore ps = r.ranked.get(i);
+            ParkingManager.ParkingFacilities facilities = ps.facilities;
+            System.out.printf("%d. %s | %s | Available: %d/%d | Rating: %.1f | Cost: $%.2f/hr %s%n",
+                i + 1, ps.lot.id, ps.lot.locationName, ps.lot.availableSlots(),
+                ps.lot.totalSlots, ps.lot.rating, facilities.costPerHour, facilityIcons(facilities));
+            System.out.printf("   📊 Overall Score: %.3f | 📏 Distance: %.1f km%n", ps.score, ps.distance);
+            System.out.printf("   💰 Cost Factor: %.1f/1.0 | 🏆 Facility Score: %.1f/1.0%n",
+                            ps.costFactor, ps.facilityFactor);
+
+            StringBuilder amenities = new StringBuilder("   🎯 Amenities: ");
+            if (facilities.has(AvailabilityStats.SECURE)) amenities.append("Security ");
+            if (facilities.has(AvailabilityStats.EV_CHARGING)) amenities.append("EV-Charging ");
+            if (facilities.has(AvailabilityStats.COVERED)) amenities.append("Covered ");
+            if (facilities.has(AvailabilityStats.VALET)) amenities.append("Valet ");
+            System.out.println(amenities);
+            System.out.println();
+        }
+
+        System.out.println("⚖️ SELECTION PROBABILITIES:");
+        for (int i = 0; i < r.probabilities.length; i++) {
+            System.out.printf("   %s: %.1f%% chance%n", r.ranked.get(i).lot.locationName, r.probabilities[i] * 100);
+        }
+
+        ParkingManager.ParkingScore s = r.selected;
+        ParkingManager.ParkingFacilities facilities = s.facilities;
+        System.out.println("\n✅ SELECTED: " + s.lot.locationName);
+        System.out.println("📋 SELECTION REASONS:");
+        System.out.printf("   📊 Overall Score: %.3f/1.0%n", s.score);
+        System.out.printf("   📏 Distance: %.1f km%n", s.distance);
+        System.out.printf("   🅿️ Availability: %d/%d slots%n", s.lot.availableSlots(), s.lot.totalSlots);
+        System.out.printf("   ⭐ User Rating: %.1f/5.0%n", s.lot.rating);
+        System.out.printf("   💰 Cost: $%.2f per hour%n", facilities.costPerHour);
+        System.out.printf("   🏆 Facilities: %.1f/1.0%n", s.facilityFactor);
+
+        StringBuilder reasons = new StringBuilder("   🎯 Key Features: ");
+        if (facilities.has(AvailabilityStats.SECURE)) reasons.append("Secure ");
+        if (facilities.has(AvailabilityStats.EV_CHARGING)) reasons.append("EV-Friendly ");
+        if (facilities.has(AvailabilityStats.COVERED)) reasons.append("Covered ");
+        if (facilities.has(AvailabilityStats.VALET)) reasons.append("Valet-Service ");
+        System.out.println(reasons);
+    }
+
+    public static void reservation(ParkingManager manager, ParkingManager.ReservationResult r) {
+        String where = r.lotId != null ? "Lot " + r.lotId + " is full" : "No slots available";
+        switch (r.status) {
+            case PARKED -> {
+                ParkingManager.ParkingFacilities facilities = manager.getFacilities(r.lot);
+                System.out.println("✅ Vehicle " + r.vehicle + " parked at " + r.lot.locationName + ", bay " + r.bay);
+                System.out.println("   💰 Parking cost: $" + facilities.costPerHour + " per hour");
+                if (facilities.has(AvailabilityStats.SECURE)) System.out.println("   🔒 Secure parking available");
+                if (facilities.has(AvailabilityStats.EV_CHARGING)) System.out.println("   ⚡ EV charging available");
+                if (facilities.has(AvailabilityStats.COVERED)) System.out.println("   🏢 Covered parking available");
+                if (facilities.has(AvailabilityStats.VALET)) System.out.println("   🚗 Valet service available");
+            }
+            case FREED -> System.out.println("✅ Vehicle " + r.vehicle + " freed from lot " + r.lotId
+                    + (r.lot == null ? "" : " | Slots now: " + r.availableSlots + "/" + r.lot.totalSlots));
+            case TRANSFERRED -> System.out.println("✅ Vehicle " + r.vehicle + " moved from lot " + r.fromLotId
+                    + " to lot " + r.lotId + ", bay " + r.bay);
+            case ALREADY_PARKED -> System.out.println("❌ Vehicle already parked at lot: " + r.lotId);
+            case NOT_PARKED -> System.out.println("❌ Vehicle " + r.vehicle + " not found in parking system");
+            case UNKNOWN_LOT -> System.out.println("❌ Parking lot " + r.lotId + " not found");
+            case LOT_FULL -> System.out.println("❌ Lot " + r.lotId + " is full");
+            case WAITLISTED -> System.out.println("❌ " + where + " - added to waitlist");
+            case ALREADY_WAITLISTED -> System.out.println("❌ " + where + " - " + r.vehicle + " is already on the waitlist");
+        }
+        if (r.drain != null) drain(r.drain);
+    }
+
+    public static void drain(ParkingManager.WaitlistDrain d) {
+        if (d.vehicles.isEmpty()) return;
+        System.out.printf("🔄 Automatically assigned %d vehicles from waitlist to lot %s in %.1f ms (avg wait %ds)%n",
+                         d.vehicles.size(), d.lotId, d.elapsedNanos / 1e6, d.totalWaitMillis / d.vehicles.size() / 1000);
+        int shown = Math.min(d.vehicles.size(), 10);
+        for (int i = 0; i < shown; i++) {
+            System.out.println("   🚗 " + d.vehicles.get(i) + " → bay " + d.bays.get(i));
+        }
+        if (d.vehicles.size() > shown) System.out.println("   ... and " + (d.vehicles.size() - shown) + " more");
+        if (d.filledUp) System.out.println("   ⚠️ Lot filled up meanwhile; the rest keep their place in the queue");
+        if (d.remaining > 0) System.out.println("   ⏳ " + d.remaining + " vehicles still waiting");
+    }
+
+    public static void emergency(String lotId, ParkingManager.EmergencyRelease r) {
+        if (r == null) {
+            System.out.println("❌ Invalid lot ID: " + lotId);
+            return;
+        }
+        List<String> freed = r.vehicles;
+        System.out.println("🚨 EMERGENCY FREE COMPLETED:");
+        System.out.println("✅ Freed " + freed.size() + " vehicles: " + (freed.size() <= 20 ? freed
+                : freed.subList(0, 20) + " ... and " + (freed.size() - 20) + " more"));
+        System.out.println("✅ Freed " + r.slotsFreed + " slots from lot " + r.lot.id);
+        System.out.println("📍 Lot " + r.lot.id + " now has " + r.lot.availableSlots() + "/" + r.lot.totalSlots + " slots available");
+        if (r.drain != null) drain(r.drain);
+    }
+
+    // Where a vehicle is parked; returns its 1-based bay number or -1
+    public static int vehicle(ParkingManager manager, String vehicleNumber) {
+        ReservationEngine.Spot spot = manager.spotOf(vehicleNumber);
+        ParkingLot lot = spot == null ? null : manager.getParkingById(spot.lotId);
+        if (lot == null) {
+            System.out.println("❌ Vehicle " + vehicleNumber + " not found in parking system");
+            return -1;
+        }
+        ParkingManager.ParkingFacilities facilities = manager.getFacilities(lot);
+        System.out.println("🚗 Vehicle " + vehicleNumber + " found:");
+        System.out.println("   📍 Lot: " + lot.id + " (" + lot.locationName + ")");
+        System.out.println("   🅿️ Bay: " + manager.bayLabel(spot));
+        System.out.println("   ⭐ Rating: " + lot.rating);
+        System.out.println("   🅿️ Available slots: " + lot.availableSlots() + "/" + lot.totalSlots);
+        System.out.println("   💰 Cost: $" + facilities.costPerHour + " per hour");
+        System.out.println("   🏆 Facility Score: " + facilities.facilityScore + "/10");
+        return spot.bay + 1;
+    }
+
+    // Path as one line of node names, with distance and search effort
+    public static void shortestPath(String from, String to, ParkingManager.RouteDetails route) {
+        if (route.hasError()) {
+            System.out.println("❌ " + route.getError());
+            return;
+        }
+        System.out.println("\n🚗 Shortest Path from " + from + " to " + to + ":");
+        System.out.println(String.join(" → ", route.getPath()));
+        System.out.printf("📏 Total Distance: %.2f km%n", route.getTotalDistance());
+        System.out.printf("🔎 Nodes settled: %d (%s)%n", route.getSettledCount(), route.getRoutingMode());
+    }
+
+    // Full directions: every node with segment distances, a summary and turn-by-turn steps
+    public static void directions(String from, String to, ParkingManager.RouteDetails route) {
+        if (from.equalsIgnoreCase(to)) {
+            System.out.println("📍 " + from);
+            System.out.println("🎯 You are already at your destination!");
+            return;
+        }
+        if (route.hasError()) {
+            System.out.println("📍 " + from);
+            System.out.println("❌ " + route.getError());
+            System.out.println("🎯 " + to);
+            return;
+        }
+
+        List<String> path = route.getPath();
+        List<Double> segments = route.getSegmentDistances();
+        double totalDistance = route.getTotalDistance();
+        System.out.println("🗺️  DETAILED ROUTE FROM " + path.get(0) + " TO " + path.get(path.size() - 1));
+        System.out.println(RULE);
+        System.out.println("📍 START: " + path.get(0));
+        for (int i = 1; i < path.size(); i++) {
+            System.out.println(String.format("   %s %5.1f km", directionArrow(i, path.size()), segments.get(i - 1)));
+            if (i == path.size() - 1) {
+                System.out.println("🎯 DESTINATION: " + path.get(i));
+            } else {
+                System.out.println(String.format("📍 %s %s", path.get(i), nodeType(i, path.size())));
+            }
+        }
+        System.out.println(RULE);
+        System.out.println("📊 ROUTE SUMMARY:");
+        System.out.println("   📏 Total Distance: " + String.format("%.1f", totalDistance) + " km");
+        System.out.println("   🛣️  Total Waypoints: " + (path.size() - 2));
+        System.out.println("   ⏱️  Estimated Time: " + String.format("%.0f", route.getEstimatedTime()) + " min");
+        System.out.println("   🚗 Average Speed: 40 km/h");
+        System.out.println("   📍 Total Nodes: " + path.size());
+
+        System.out.println("🔄 TURN-BY-TURN DIRECTIONS:");
+        List<Integer> degrees = route.getNodeDegrees();
+        for (int i = 0; i < path.size() - 1; i++) {
+            if (i == 0) System.out.println("   🚦 Start at " + path.get(i));
+            if (i < path.size() - 2) {
+                System.out.println("   → Continue from " + path.get(i) + " to " + path.get(i + 1));
+                if (degrees != null && degrees.get(i + 1) > 2) {
+                    System.out.println("     ⚠️ Intersection ahead - stay on route to " + path.get(i + 2));
+                }
+            } else {
+                System.out.println("   🏁 Arrive at destination: " + path.get(path.size() - 1));
+            }
+        }
+    }
+
+    // Compact route analysis with numbered waypoints
+    public static void routeDetails(ParkingManager.RouteDetails route) {
+        if (route.hasError()) {
+            System.out.println("❌ " + route.getError());
+            return;
+        }
+        List<String> path = route.getPath();
+        List<Double> segments = route.getSegmentDistances();
+        System.out.println("🗺️  COMPREHENSIVE ROUTE DETAILS");
+        System.out.println(RULE);
+        System.out.printf("📍 START: %s\n", path.get(0));
+        System.out.printf("🎯 DESTINATION: %s\n", path.get(path.size() - 1));
+        System.out.printf("📏 TOTAL DISTANCE: %.1f km\n", route.getTotalDistance());
+        System.out.printf("⏱️  ESTIMATED TIME: %.0f minutes\n", route.getEstimatedTime());
+        System.out.println(RULE);
+        for (int i = 0; i < path.size() - 1; i++) {
+            if (i == 0) System.out.printf("🚦 START: %s\n", path.get(i));
+            System.out.printf("   ↓ %.1f km\n", segments.get(i));
+            if (i == path.size() - 2) {
+                System.out.printf("🏁 ARRIVE: %s\n", path.get(i + 1));
+            } else {
+                System.out.printf("📍 %s [Waypoint %d]\n", path.get(i + 1), i + 1);
+            }
+        }
+        System.out.println(RULE);
+        System.out.printf("📊 SUMMARY: %d nodes, %.1f km total, %.0f min estimated\n",
+                        path.size(), route.getTotalDistance(), route.getEstimatedTime());
+    }
+
+    public static void parkingStatus(ParkingManager manager) {
+        System.out.println("\n--- PARKING SYSTEM STATUS ---");
+        AvailabilityStats stats = manager.getStats();
+        long totalSlots = stats.totalSlots();
+        long availableSlots = stats.availableSlots();
+        System.out.printf("Overall: %d/%d slots available (%.1f%% occupancy)%n",
+                         availableSlots, totalSlots, ((totalSlots - availableSlots) / (double) totalSlots) * 100);
+
+        System.out.println("\n--- Individual Lots ---");
+        for (ParkingLot lot : manager.getRegistry().all()) {
+            String status = lot.availableSlots() > 0 ? "🟢" : "🔴";
+            ParkingManager.ParkingFacilities facilities = manager.getFacilities(lot);
+            System.out.printf("%s %s | %s | Available: %d/%d | Rating: %.1f | Cost: $%.2f/hr %s%n",
+                             status, lot.id, lot.locationName,
+                             lot.availableSlots(), lot.totalSlots, lot.rating,
+                             facilities.costPerHour, facilityIcons(facilities));
+        }
+
+        System.out.println("\n--- Parked Vehicles ---");
+        Map<String, String> parked = manager.parkedVehicles();
+        if (parked.isEmpty()) {
+            System.out.println("No vehicles currently parked");
+        } else {
+            parked.forEach((vehicle, lot) -> {
+                ReservationEngine.Spot spot = manager.spotOf(vehicle);
+                String bay = spot == null ? "" : " (bay " + manager.bayLabel(spot) + ")";
+                System.out.println("🚗 " + vehicle + " → Lot " + lot + bay);
+            });
+        }
+
+        System.out.println("\n--- Waitlist ---");
+        System.out.println("Waitlisted vehicles: " + manager.waitlistSize());
+    }
+
+    public static void statistics(ParkingManager manager) {
+        AvailabilityStats stats = manager.getStats();
+        DistanceCache cache = manager.getDistanceCache();
+        System.out.println("\n--- SYSTEM STATISTICS ---");
+        System.out.println("Total parking lots: " + manager.getRegistry().size());
+        System.out.println("Total parked vehicles: " + manager.parkedCount());
+        System.out.println("Waitlisted vehicles: " + manager.waitlistSize());
+        System.out.println("Distance cache entries: " + cache.size());
+        long hits = cache.hitCount();
+        long lookups = hits + cache.missCount();
+        System.out.printf("Distance cache hits/misses/evictions: %d/%d/%d (%.1f%% hit rate)%n",
+                         hits, cache.missCount(), cache.evictionCount(),
+                         lookups == 0 ? 0.0 : hits * 100.0 / lookups);
+
+        System.out.println("Lots with available slots: " + stats.nonFullLots());
+        System.out.printf("Free slots by amenity: Security %d | EV-Charging %d | Covered %d | Valet %d%n",
+                         stats.amenityAvailable(AvailabilityStats.SECURE),
+                         stats.amenityAvailable(AvailabilityStats.EV_CHARGING),
+                         stats.amenityAvailable(AvailabilityStats.COVERED),
+                         stats.amenityAvailable(AvailabilityStats.VALET));
+        System.out.println("Occupancy by location:");
+        stats.locationOccupancy().forEach((location, counts) ->
+            System.out.printf("  %s: %d/%d occupied%n", location, counts[0], counts[1]));
+
+        System.out.println("Secure parking lots: " + stats.amenityLots(AvailabilityStats.SECURE));
+        System.out.println("EV charging lots: " + stats.amenityLots(AvailabilityStats.EV_CHARGING));
+    }
+
+    public static void recovery(ParkingManager manager, int replayed) {
+        if (manager.parkedCount() == 0 && replayed == 0) return;
+        System.out.println("🔁 Recovered " + manager.parkedCount() + " parked vehicles (" + replayed + " journal events replayed)");
+    }
+
+    public static void dataSaved(boolean saved) {
+        System.out.println(saved ? "💾 Parking data saved successfully" : "❌ Error saving parking data (details in the log)");
+    }
+
+    public static void warning(String message) {
+        System.out.println("⚠️ " + message);
+    }
+
+    public static void error(String message) {
+        System.out.println("❌ " + message);
+    }
+
+    private static String facilityIcons(ParkingManager.ParkingFacilities facilities) {
+        StringBuilder icons = new StringBuilder();
+        if (facilities.has(AvailabilityStats.SECURE)) icons.append("🔒");
+        if (facilities.has(AvailabilityStats.EV_CHARGING)) icons.append("⚡");
+        if (facilities.has(AvailabilityStats.COVERED)) icons.append("🏢");
+        if (facilities.has(AvailabilityStats.VALET)) icons.append("🚗");
+        return icons.toString();
+    }
+
+    private static String directionArrow(int index, int size) {
+        if (index == size - 1) return "🏁";
+        if (index % 3 == 0) return "↘️";
+        if (index % 3 == 1) return "➡️";
+        return "↙️";
+    }
+
+    private static String nodeType(int index, int size) {
+        if (index == 0) return "[Start]";
+        if (index == size - 1) return "[Destination]";
+        String[] types = {"[Intersection]", "[Landmark]", "[Checkpoint]", "[Waypoint]"};
+        return types[index % types.length];
+    }
+}
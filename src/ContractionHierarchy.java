@@ -0,0 +1,521 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/*
+ * Contraction Hierarchies over a CompactGraph of two-way roads.
+ * build() contracts nodes in rounds: each round picks an independent set of nodes with
+ * locally minimal priority and runs their witness searches in parallel, then applies
+ * the shortcuts. The result is an upward graph (edges and shortcuts pointing to higher
+ * ranked nodes) that route() searches from both ends before unpacking shortcuts back
+ * into the full node path. Queries reuse scratch arrays and are not thread-safe; give
+ * each thread its own copy().
+ *
+ * Augmented graph file (written by save(), read by load()):
+ *   #CH,version,nodeCount,edgeCount,graphChecksum
+ *   N,name,rank
+ *   A,from,to,weight,via      (via is "-" for an original road)
+ */
+public class ContractionHierarchy {
+    private static final int VERSION = 2;
+    // Witness searches give up after this many settled nodes and add the shortcut anyway;
+    // priority estimates use the cheaper limit
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int PRIORITY_SETTLE_LIMIT = 50;
+
+    private final CompactGraph graph;
+    private final int[] rank;
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final double[] upWeights;
+    private final int[] upVia;
+
+    private final double[] distF;
+    private final double[] distB;
+    private final int[] prevF;
+    private final int[] prevB;
+    private final int[] stampF;
+    private final int[] stampB;
+    private final IndexedMinHeap heapF;
+    private final IndexedMinHeap heapB;
+    private int epoch;
+
+    private ContractionHierarchy(CompactGraph graph, int[] rank, int[] upOffsets,
+                                 int[] upTargets, double[] upWeights, int[] upVia) {
+        this.graph = graph;
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upVia = upVia;
+        int n = graph.nodeCount();
+        this.distF = new double[n];
+        this.distB = new double[n];
+        this.prevF = new int[n];
+        this.prevB = new int[n];
+        this.stampF = new int[n];
+        this.stampB = new int[n];
+        this.heapF = new IndexedMinHeap(n);
+        this.heapB = new IndexedMinHeap(n);
+    }
+
+    public static ContractionHierarchy build(CompactGraph graph, int threads) {
+        return new Contractor(graph).run(Math.max(1, threads));
+    }
+
+    // Same hierarchy with its own query state, for a second thread
+    public ContractionHierarchy copy() {
+        return new ContractionHierarchy(graph, rank, upOffsets, upTargets, upWeights, upVia);
+    }
+
+    public int shortcutCount() {
+        int count = 0;
+        for (int v : upVia) if (v >= 0) count++;
+        return count;
+    }
+
+    public Dijkstra.Route route(String from, String to) {
+        int s = graph.indexOf(from);
+        int t = graph.indexOf(to);
+        if (s < 0 || t < 0) return Dijkstra.Route.none(0);
+        if (s == t) return new Dijkstra.Route(new ArrayList<>(List.of(graph.nameOf(s))), 0.0, 0);
+
+        heapF.clear();
+        heapB.clear();
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stampF, 0);
+            Arrays.fill(stampB, 0);
+            epoch = 1;
+        }
+        stampF[s] = epoch;
+        distF[s] = 0.0;
+        prevF[s] = -1;
+        heapF.push(s, 0.0);
+        stampB[t] = epoch;
+        distB[t] = 0.0;
+        prevB[t] = -1;
+        heapB.push(t, 0.0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        int settled = 0;
+        while (true) {
+            boolean fOk = !heapF.isEmpty() && heapF.peekKey() < best;
+            boolean bOk = !heapB.isEmpty() && heapB.peekKey() < best;
+            if (!fOk && !bOk) break;
+            boolean forward = fOk && (!bOk || heapF.peekKey() <= heapB.peekKey());
+            IndexedMinHeap q = forward ? heapF : heapB;
+            double[] d = forward ? distF : distB;
+            int[] p = forward ? prevF : prevB;
+            int[] st = forward ? stampF : stampB;
+            double[] other = forward ? distB : distF;
+            int[] otherSt = forward ? stampB : stampF;
+
+            int u = q.poll();
+            settled++;
+            if (otherSt[u] == epoch && d[u] + other[u] < best) {
+                best = d[u] + other[u];
+                meet = u;
+            }
+            for (int e = upOffsets[u]; e < upOffsets[u + 1]; e++) {
+                int v = upTargets[e];
+                double nd = d[u] + upWeights[e];
+                if (st[v] != epoch || nd < d[v]) {
+                    st[v] = epoch;
+                    d[v] = nd;
+                    p[v] = u;
+                    q.push(v, nd);
+                }
+            }
+        }
+        if (meet < 0) return Dijkstra.Route.none(settled);
+
+        // Hierarchy path s .. meet .. t, then expand every shortcut on it
+        List<Integer> up = new ArrayList<>();
+        for (int v = meet; v >= 0; v = prevF[v]) up.add(v);
+        Collections.reverse(up);
+        for (int v = prevB[meet]; v >= 0; v = prevB[v]) up.add(v);
+
+        List<String> path = new ArrayList<>();
+        path.add(graph.nameOf(s));
+        for (int i = 1; i < up.size(); i++) unpack(up.get(i - 1), up.get(i), path);
+        return new Dijkstra.Route(path, best, settled);
+    }
+
+    // Append the original nodes between a and b (excluding a, including b)
+    private void unpack(int a, int b, List<String> out) {
+        Deque<int[]> stack = new ArrayDeque<>();
+        stack.push(new int[]{a, b});
+        while (!stack.isEmpty()) {
+            int[] arc = stack.pop();
+            int via = viaOf(arc[0], arc[1]);
+            if (via < 0) {
+                out.add(graph.nameOf(arc[1]));
+            } else {
+                stack.push(new int[]{via, arc[1]});
+                stack.push(new int[]{arc[0], via});
+            }
+        }
+    }
+
+    // Arcs are stored once, at their lower-ranked endpoint
+    private int viaOf(int a, int b) {
+        int low = rank[a] < rank[b] ? a : b;
+        int high = low == a ? b : a;
+        for (int e = upOffsets[low]; e < upOffsets[low + 1]; e++) {
+            if (upTargets[e] == high) return upVia[e];
+        }
+        return -1;
+    }
+
+    public void save(String filepath) throws Exception {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(filepath, false))) {
+            bw.write("#CH," + VERSION + "," + graph.nodeCount() + "," + graph.edgeCount()
+                    + "," + graph.checksum() + "\n");
+            for (int v = 0; v < graph.nodeCount(); v++) {
+                bw.write("N," + graph.nameOf(v) + "," + rank[v] + "\n");
+            }
+            for (int u = 0; u < graph.nodeCount(); u++) {
+                for (int e = upOffsets[u]; e < upOffsets[u + 1]; e++) {
+                    String via = upVia[e] < 0 ? "-" : graph.nameOf(upVia[e]);
+                    bw.write("A," + graph.nameOf(u) + "," + graph.nameOf(upTargets[e]) + ","
+                            + upWeights[e] + "," + via + "\n");
+                }
+            }
+        }
+    }
+
+    // Returns null when the file is missing or was built from a different graph (the
+    // checksum catches edited weights that leave the node and edge counts unchanged)
+    public static ContractionHierarchy load(String filepath, CompactGraph graph) throws Exception {
+        File f = new File(filepath);
+        if (!f.exists()) return null;
+        int n = graph.nodeCount();
+        int[] rank = new int[n];
+        List<int[]> arcs = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        int[] upCount = new int[n];
+        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
+            String[] h = String.valueOf(br.readLine()).split(",");
+            if (h.length < 5 || !h[0].equals("#CH") || Integer.parseInt(h[1]) != VERSION
+                    || Integer.parseInt(h[2]) != n || Integer.parseInt(h[3]) != graph.edgeCount()
+                    || Long.parseLong(h[4]) != graph.checksum()) {
+                return null;
+            }
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] p = line.split(",");
+                if (p[0].equals("N") && p.length >= 3) {
+                    int v = graph.indexOf(p[1]);
+                    if (v < 0) return null;
+                    rank[v] = Integer.parseInt(p[2]);
+                } else if (p[0].equals("A") && p.length >= 5) {
+                    int u = graph.indexOf(p[1]);
+                    int v = graph.indexOf(p[2]);
+                    int via = p[4].equals("-") ? -1 : graph.indexOf(p[4]);
+                    if (u < 0 || v < 0) return null;
+                    arcs.add(new int[]{u, v, via});
+                    weights.add(Double.parseDouble(p[3]));
+                    upCount[u]++;
+                }
+            }
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) offsets[i + 1] = offsets[i] + upCount[i];
+        int[] fill = Arrays.copyOf(offsets, n);
+        int[] targets = new int[arcs.size()];
+        double[] w = new double[arcs.size()];
+        int[] via = new int[arcs.size()];
+        for (int i = 0; i < arcs.size(); i++) {
+            int[] a = arcs.get(i);
+            int k = fill[a[0]]++;
+            targets[k] = a[1];
+            w[k] = weights.get(i);
+            via[k] = a[2];
+        }
+        return new ContractionHierarchy(graph, rank, offsets, targets, w, via);
+    }
+
+    // Offline step: java ContractionHierarchy <city_graph.txt> <out.ch> [threads]
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java ContractionHierarchy <graph file> <output file> [threads]");
+            return;
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        CompactGraph graph = CompactGraph.fromAdjacency(FileUtil.loadGraph(args[0]));
+        long start = System.currentTimeMillis();
+        ContractionHierarchy ch = build(graph, threads);
+        ch.save(args[1]);
+        System.out.printf("Contracted %d nodes, %d shortcuts in %d ms -> %s%n", graph.nodeCount(),
+                ch.shortcutCount(), System.currentTimeMillis() - start, args[1]);
+    }
+
+    // Mutable working graph used only while contracting
+    private static class Contractor {
+        private final CompactGraph graph;
+        private final int n;
+        private final int[][] to;
+        private final double[][] w;
+        private final int[][] via;
+        private final int[] size;
+        private final int[] deleted;
+        private final int[] priority;
+        private final int[] rank;
+        private final int[][] upTo;
+        private final double[][] upW;
+        private final int[][] upV;
+        private final ThreadLocal<Witness> witness;
+        // Nodes contracted in the current round; witness paths must not use any of them,
+        // or two nodes could each rely on the other as their witness and both vanish
+        private final boolean[] inRound;
+
+        Contractor(CompactGraph graph) {
+            this.graph = graph;
+            this.n = graph.nodeCount();
+            this.to = new int[n][];
+            this.w = new double[n][];
+            this.via = new int[n][];
+            this.size = new int[n];
+            this.deleted = new int[n];
+            this.priority = new int[n];
+            this.rank = new int[n];
+            this.upTo = new int[n][];
+            this.upW = new double[n][];
+            this.upV = new int[n][];
+            this.witness = ThreadLocal.withInitial(() -> new Witness(n));
+            this.inRound = new boolean[n];
+            for (int u = 0; u < n; u++) {
+                int cap = Math.max(2, graph.degree(u));
+                to[u] = new int[cap];
+                w[u] = new double[cap];
+                via[u] = new int[cap];
+            }
+            for (int u = 0; u < n; u++) {
+                for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                    int v = graph.target(e);
+                    if (v == u) continue;
+                    addOrImprove(u, v, graph.weight(e), -1);
+                    addOrImprove(v, u, graph.weight(e), -1);
+                }
+            }
+        }
+
+        ContractionHierarchy run(int threads) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                int[] remaining = IntStream.range(0, n).toArray();
+                int remainingCount = n;
+                pool.submit(() -> IntStream.range(0, n).parallel()
+                        .forEach(v -> priority[v] = computePriority(v))).get();
+
+                boolean[] touched = new boolean[n];
+                int nextRank = 0;
+                while (remainingCount > 0) {
+                    int[] batch = new int[remainingCount];
+                    int batchSize = 0;
+                    for (int i = 0; i < remainingCount; i++) {
+                        if (isLocalMinimum(remaining[i])) batch[batchSize++] = remaining[i];
+                    }
+                    final int[] selected = Arrays.copyOf(batch, batchSize);
+                    final List<double[]>[] shortcuts = newShortcutLists(batchSize);
+                    for (int v : selected) inRound[v] = true;
+                    pool.submit(() -> IntStream.range(0, selected.length).parallel()
+                            .forEach(i -> shortcuts[i] = findShortcuts(selected[i], WITNESS_SETTLE_LIMIT))).get();
+                    for (int v : selected) inRound[v] = false;
+
+                    List<Integer> dirty = new ArrayList<>();
+                    for (int i = 0; i < selected.length; i++) {
+                        int v = selected[i];
+                        rank[v] = nextRank++;
+                        upTo[v] = Arrays.copyOf(to[v], size[v]);
+                        upW[v] = Arrays.copyOf(w[v], size[v]);
+                        upV[v] = Arrays.copyOf(via[v], size[v]);
+                        for (int k = 0; k < size[v]; k++) {
+                            int u = to[v][k];
+                            removeArc(u, v);
+                            deleted[u]++;
+                            if (!touched[u]) {
+                                touched[u] = true;
+                                dirty.add(u);
+                            }
+                        }
+                        size[v] = 0;
+                        for (double[] sc : shortcuts[i]) {
+                            addOrImprove((int) sc[0], (int) sc[1], sc[2], v);
+                            addOrImprove((int) sc[1], (int) sc[0], sc[2], v);
+                        }
+                    }
+
+                    int kept = 0;
+                    for (int i = 0; i < remainingCount; i++) {
+                        if (upTo[remaining[i]] == null) remaining[kept++] = remaining[i];
+                    }
+                    remainingCount = kept;
+                    for (int u : dirty) touched[u] = false;
+                    pool.submit(() -> dirty.parallelStream()
+                            .forEach(u -> priority[u] = computePriority(u))).get();
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("Contraction failed: " + e.getMessage(), e);
+            } finally {
+                pool.shutdown();
+            }
+            return toHierarchy();
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private List<double[]>[] newShortcutLists(int count) {
+            return new List[count];
+        }
+
+        // Priority = edge difference + already-contracted neighbours (keeps contraction uniform)
+        private int computePriority(int v) {
+            return findShortcuts(v, PRIORITY_SETTLE_LIMIT).size() - size[v] + deleted[v];
+        }
+
+        private boolean isLocalMinimum(int v) {
+            for (int k = 0; k < size[v]; k++) {
+                int u = to[v][k];
+                if (priority[u] < priority[v]) return false;
+                if (priority[u] == priority[v]
+                        && (mix(u) < mix(v) || (mix(u) == mix(v) && u < v))) return false;
+            }
+            return true;
+        }
+
+        // Scrambled id so ties do not always favour low ids along a chain
+        private static int mix(int x) {
+            return (x * 0x9E3779B9) ^ (x >>> 16);
+        }
+
+        // Shortcuts {u, x, weight} needed when v is removed from the remaining graph
+        private List<double[]> findShortcuts(int v, int settleLimit) {
+            List<double[]> result = new ArrayList<>();
+            int k = size[v];
+            Witness ws = witness.get();
+            for (int i = 0; i < k - 1; i++) {
+                int u = to[v][i];
+                double maxVia = 0.0;
+                for (int j = i + 1; j < k; j++) maxVia = Math.max(maxVia, w[v][i] + w[v][j]);
+                ws.search(u, v, maxVia, to[v], i + 1, k, settleLimit);
+                for (int j = i + 1; j < k; j++) {
+                    double viaDist = w[v][i] + w[v][j];
+                    if (ws.distance(to[v][j]) > viaDist) {
+                        result.add(new double[]{u, to[v][j], viaDist});
+                    }
+                }
+            }
+            return result;
+        }
+
+        private void addOrImprove(int u, int v, double weight, int middle) {
+            for (int k = 0; k < size[u]; k++) {
+                if (to[u][k] == v) {
+                    if (weight < w[u][k]) {
+                        w[u][k] = weight;
+                        via[u][k] = middle;
+                    }
+                    return;
+                }
+            }
+            if (size[u] == to[u].length) {
+                int cap = to[u].length * 2;
+                to[u] = Arrays.copyOf(to[u], cap);
+                w[u] = Arrays.copyOf(w[u], cap);
+                via[u] = Arrays.copyOf(via[u], cap);
+            }
+            to[u][size[u]] = v;
+            w[u][size[u]] = weight;
+            via[u][size[u]] = middle;
+            size[u]++;
+        }
+
+        private void removeArc(int u, int v) {
+            for (int k = 0; k < size[u]; k++) {
+                if (to[u][k] == v) {
+                    int last = --size[u];
+                    to[u][k] = to[u][last];
+                    w[u][k] = w[u][last];
+                    via[u][k] = via[u][last];
+                    return;
+                }
+            }
+        }
+
+        private ContractionHierarchy toHierarchy() {
+            int[] offsets = new int[n + 1];
+            for (int u = 0; u < n; u++) offsets[u + 1] = offsets[u] + upTo[u].length;
+            int[] targets = new int[offsets[n]];
+            double[] weights = new double[targets.length];
+            int[] vias = new int[targets.length];
+            for (int u = 0; u < n; u++) {
+                System.arraycopy(upTo[u], 0, targets, offsets[u], upTo[u].length);
+                System.arraycopy(upW[u], 0, weights, offsets[u], upW[u].length);
+                System.arraycopy(upV[u], 0, vias, offsets[u], upV[u].length);
+            }
+            return new ContractionHierarchy(graph, rank, offsets, targets, weights, vias);
+        }
+
+        // Bounded Dijkstra on the remaining graph that skips the node being contracted
+        private class Witness {
+            private final double[] dist;
+            private final int[] stamp;
+            private final int[] target;
+            private final IndexedMinHeap heap;
+            private int epoch;
+
+            Witness(int n) {
+                this.dist = new double[n];
+                this.stamp = new int[n];
+                this.target = new int[n];
+                this.heap = new IndexedMinHeap(n);
+            }
+
+            // Stops once targets[begin..end) are all settled, the frontier passes maxDistance
+            // or settleLimit nodes have been settled
+            void search(int source, int excluded, double maxDistance,
+                        int[] targets, int begin, int end, int settleLimit) {
+                heap.clear();
+                if (++epoch == Integer.MAX_VALUE) {
+                    Arrays.fill(stamp, 0);
+                    Arrays.fill(target, 0);
+                    epoch = 1;
+                }
+                int remaining = 0;
+                for (int i = begin; i < end; i++) {
+                    if (target[targets[i]] != epoch) {
+                        target[targets[i]] = epoch;
+                        remaining++;
+                    }
+                }
+                stamp[source] = epoch;
+                dist[source] = 0.0;
+                heap.push(source, 0.0);
+                int settled = 0;
+                while (!heap.isEmpty() && settled < settleLimit) {
+                    if (heap.peekKey() > maxDistance) break;
+                    int u = heap.poll();
+                    settled++;
+                    if (target[u] == epoch && --remaining == 0) break;
+                    for (int k = 0; k < size[u]; k++) {
+                        int v = to[u][k];
+                        if (v == excluded || inRound[v]) continue;
+                        double nd = dist[u] + w[u][k];
+                        if (stamp[v] != epoch || nd < dist[v]) {
+                            stamp[v] = epoch;
+                            dist[v] = nd;
+                            heap.push(v, nd);
+                        }
+                    }
+                }
+            }
+
+            double distance(int v) {
+                return stamp[v] == epoch ? dist[v] : Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+}
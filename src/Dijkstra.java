@@ -1,128 +1,411 @@
 import java.util.*;
 
+/*
+ * Shortest-path engine over a CompactGraph.
+ * Scratch arrays (distances, predecessors, heap) are allocated once per engine and
+ * reused by every query; an epoch stamp marks which entries belong to the current
+ * query so nothing has to be cleared between runs. Not thread-safe.
+ */
 public class Dijkstra {
     public static class Edge {
         public String to;
         public double weight;
-        
+
         public Edge(String to, double weight) {
             this.to = to;
             this.weight = weight;
         }
-        
+
         @Override
         public String toString() {
             return "-> " + to + " (" + weight + "km)";
         }
     }
 
+    // Thin view over the engine's arrays; only valid until the engine runs its next query
     public static class Result {
-        public Map<String, Double> dist = new HashMap<>();
-        public Map<String, String> prev = new HashMap<>();
-        
-        public Result() {
-            dist = new HashMap<>();
-            prev = new HashMap<>();
+        private final Dijkstra engine;
+        private final int source;
+        private final int epoch;
+
+        private Result(Dijkstra engine, int source, int epoch) {
+            this.engine = engine;
+            this.source = source;
+            this.epoch = epoch;
+        }
+
+        public String getSource() {
+            return source < 0 ? null : engine.graph.nameOf(source);
+        }
+
+        // Positive infinity when the node is unknown or unreachable
+        public double distanceTo(String node) {
+            return distanceTo(engine.graph.indexOf(node));
+        }
+
+        public double distanceTo(int node) {
+            checkCurrent();
+            if (node < 0 || engine.done[node] != epoch) return Double.POSITIVE_INFINITY;
+            return engine.dist[node];
+        }
+
+        public boolean isReachable(String node) {
+            return !Double.isInfinite(distanceTo(node));
+        }
+
+        public String previousOf(String node) {
+            int id = engine.graph.indexOf(node);
+            checkCurrent();
+            if (id < 0 || engine.done[id] != epoch || engine.prev[id] < 0) return null;
+            return engine.graph.nameOf(engine.prev[id]);
+        }
+
+        public List<String> pathTo(String node) {
+            checkCurrent();
+            int target = engine.graph.indexOf(node);
+            List<String> path = new ArrayList<>();
+            if (source < 0 || target < 0 || engine.done[target] != epoch) return path;
+            for (int v = target; v >= 0; v = engine.prev[v]) {
+                path.add(engine.graph.nameOf(v));
+            }
+            Collections.reverse(path);
+            return path;
+        }
+
+        public int settledCount() {
+            checkCurrent();
+            return engine.settled;
+        }
+
+        private void checkCurrent() {
+            if (engine.epoch != epoch) {
+                throw new IllegalStateException("Dijkstra result is stale; engine has run another query");
+            }
         }
     }
 
-    private Map<String, List<Edge>> graph;
+    // Point-to-point answer: node path plus how much of the graph the search touched
+    public static class Route {
+        private final List<String> path;
+        private final double distance;
+        private final int settledCount;
+
+        public Route(List<String> path, double distance, int settledCount) {
+            this.path = path;
+            this.distance = distance;
+            this.settledCount = settledCount;
+        }
+
+        static Route none(int settledCount) {
+            return new Route(new ArrayList<>(), Double.POSITIVE_INFINITY, settledCount);
+        }
+
+        public boolean isFound() { return !path.isEmpty(); }
+        public List<String> getPath() { return path; }
+        public double getDistance() { return distance; }
+        public int getSettledCount() { return settledCount; }
+    }
+
+    private final CompactGraph graph;
+    private final double[] dist;
+    private final int[] prev;
+    private final int[] stamp;   // epoch in which dist/prev were last written
+    private final int[] done;    // epoch in which the node was settled
+    private final int[] wanted;  // epoch in which the node was registered as a target
+    private final IndexedMinHeap heap;
+    private int epoch;
+    private int settled;
+
+    // Reverse-search scratch for the bidirectional variant, allocated on first use
+    private double[] distR;
+    private int[] prevR;
+    private int[] stampR;
+    private IndexedMinHeap heapR;
+
+    // Node coordinates for the A* heuristic (NaN when unknown) and the factor that keeps
+    // great-circle distance below every road length
+    private double[] lat;
+    private double[] lon;
+    private double heuristicScale;
+    private boolean fullCoverage;
 
     public Dijkstra(Map<String, List<Edge>> graph) {
-        this.graph = graph != null ? graph : new HashMap<>();
+        this(CompactGraph.fromAdjacency(graph));
+    }
+
+    public Dijkstra(CompactGraph graph) {
+        this.graph = graph;
+        int n = graph.nodeCount();
+        this.dist = new double[n];
+        this.prev = new int[n];
+        this.stamp = new int[n];
+        this.done = new int[n];
+        this.wanted = new int[n];
+        this.heap = new IndexedMinHeap(n);
+    }
+
+    // Another engine on the same graph: shares the heuristic data, has its own search state
+    public Dijkstra(Dijkstra other) {
+        this(other.graph);
+        this.lat = other.lat;
+        this.lon = other.lon;
+        this.heuristicScale = other.heuristicScale;
+        this.fullCoverage = other.fullCoverage;
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
     }
 
     public Result shortestPath(String start) {
-        Result result = new Result();
-        if (graph.isEmpty() || !graph.containsKey(start)) {
-            return result;
-        }
-
-        PriorityQueue<Node> pq = new PriorityQueue<>(Comparator.comparingDouble(n -> n.dist));
-        Set<String> visited = new HashSet<>();
-
-        // Initialize distances
-        for (String node : graph.keySet()) {
-            result.dist.put(node, Double.MAX_VALUE);
-        }
-        result.dist.put(start, 0.0);
-        pq.offer(new Node(start, 0.0));
-
-        while (!pq.isEmpty()) {
-            Node current = pq.poll();
-            if (visited.contains(current.id)) continue;
-            visited.add(current.id);
-
-            List<Edge> edges = graph.get(current.id);
-            if (edges == null) continue;
-
-            for (Edge edge : edges) {
-                if (!visited.contains(edge.to)) {
-                    double newDist = result.dist.get(current.id) + edge.weight;
-                    Double currentDist = result.dist.get(edge.to);
-                    if (currentDist == null || newDist < currentDist) {
-                        result.dist.put(edge.to, newDist);
-                        result.prev.put(edge.to, current.id);
-                        pq.offer(new Node(edge.to, newDist));
-                    }
-                }
+        return shortestPath(graph.indexOf(start));
+    }
+
+    public Result shortestPath(int source) {
+        beginQuery();
+        if (source < 0) return new Result(this, -1, epoch);
+        run(source, -1, Double.POSITIVE_INFINITY);
+        return new Result(this, source, epoch);
+    }
+
+    // One-to-many search: a single sweep from 'source' that stops once every target is
+    // settled or the frontier passes maxDistance. Targets outside the radius, unknown or
+    // unreachable report infinity in the result.
+    public Result shortestPathToTargets(String source, Collection<String> targets, double maxDistance) {
+        int[] ids = new int[targets.size()];
+        int k = 0;
+        for (String t : targets) ids[k++] = graph.indexOf(t);
+        return shortestPathToTargets(graph.indexOf(source), ids, maxDistance);
+    }
+
+    public Result shortestPathToTargets(int source, int[] targets, double maxDistance) {
+        beginQuery();
+        if (source < 0) return new Result(this, -1, epoch);
+
+        int remaining = 0;
+        for (int t : targets) {
+            if (t >= 0 && wanted[t] != epoch) {
+                wanted[t] = epoch;
+                remaining++;
             }
         }
-        return result;
+        if (remaining > 0) run(source, remaining, maxDistance);
+        return new Result(this, source, epoch);
     }
 
-    // Fixed: Proper path reconstruction with all intermediate nodes
-    public static List<String> reconstructPath(String from, String to, Map<String, String> prev) {
-        List<String> path = new ArrayList<>();
-        
-        if (from == null || to == null || prev == null) {
-            return path;
+    // remaining < 0 means no target set: settle everything within maxDistance
+    private void run(int source, int remaining, double maxDistance) {
+        relax(source, 0.0, -1);
+        while (!heap.isEmpty()) {
+            if (heap.peekKey() > maxDistance) break;
+            int u = heap.poll();
+            done[u] = epoch;
+            settled++;
+            if (remaining > 0 && wanted[u] == epoch && --remaining == 0) break;
+            double du = dist[u];
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                relax(graph.target(e), du + graph.weight(e), u);
+            }
         }
+    }
 
-        // If start and end are the same
-        if (from.equals(to)) {
-            path.add(from);
-            return path;
+    private void beginQuery() {
+        heap.clear();
+        settled = 0;
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            Arrays.fill(done, 0);
+            Arrays.fill(wanted, 0);
+            if (stampR != null) Arrays.fill(stampR, 0);
+            epoch = 1;
         }
+    }
 
-        // If no path exists
-        if (!prev.containsKey(to)) {
-            return path;
+    private void relax(int v, double d, int from) {
+        if (stamp[v] != epoch) {
+            stamp[v] = epoch;
+            dist[v] = d;
+            prev[v] = from;
+            heap.push(v, d);
+        } else if (d < dist[v]) {
+            dist[v] = d;
+            prev[v] = from;
+            heap.push(v, d);
         }
+    }
 
-        // Build path backwards from destination to start
-        Stack<String> stack = new Stack<>();
-        String current = to;
-        
-        while (current != null) {
-            stack.push(current);
-            current = prev.get(current);
-            if (current != null && current.equals(from)) {
-                stack.push(current);
-                break;
+    // Load coordinates from GeoDB so aStar/bidirectionalAStar can guide the search.
+    // Haversine is scaled by min(road km / great-circle km) over all edges, so the
+    // heuristic stays admissible even where a road is shorter than the coordinates suggest.
+    public void useGeoHeuristic() {
+        int n = graph.nodeCount();
+        lat = new double[n];
+        lon = new double[n];
+        fullCoverage = true;
+        for (int i = 0; i < n; i++) {
+            double[] c = GeoDB.get(graph.nameOf(i));
+            boolean known = c[0] != 0 || c[1] != 0;
+            lat[i] = known ? c[0] : Double.NaN;
+            lon[i] = known ? c[1] : Double.NaN;
+            fullCoverage &= known;
+        }
+
+        double scale = 1.0;
+        for (int u = 0; u < n; u++) {
+            if (!hasCoords(u)) continue;
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                int v = graph.target(e);
+                if (!hasCoords(v)) continue;
+                double h = GeoUtil.haversine(lat[u], lon[u], lat[v], lon[v]);
+                if (h > 0) scale = Math.min(scale, graph.weight(e) / h);
             }
         }
+        heuristicScale = Math.max(0.0, scale);
+    }
 
-        // If we didn't reach the start node, no valid path
-        if (stack.isEmpty() || !stack.peek().equals(from)) {
-            return new ArrayList<>();
+    // Plain point-to-point Dijkstra that stops as soon as the target is settled
+    public Route route(String from, String to) {
+        int s = graph.indexOf(from);
+        int t = graph.indexOf(to);
+        if (s < 0 || t < 0) return Route.none(0);
+        Result res = shortestPathToTargets(s, new int[]{t}, Double.POSITIVE_INFINITY);
+        if (done[t] != epoch) return Route.none(settled);
+        return new Route(res.pathTo(to), dist[t], settled);
+    }
+
+    // A* with a great-circle heuristic. The scale is only checked on edges with coordinates
+    // at both ends, so the heuristic is admissible only when every node has coordinates;
+    // otherwise (or without coordinates at either endpoint) this falls back to route().
+    public Route aStar(String from, String to) {
+        int s = graph.indexOf(from);
+        int t = graph.indexOf(to);
+        if (s < 0 || t < 0) return Route.none(0);
+        if (!fullCoverage || !hasCoords(s) || !hasCoords(t)) return route(from, to);
+
+        beginQuery();
+        stamp[s] = epoch;
+        dist[s] = 0.0;
+        prev[s] = -1;
+        heap.push(s, heuristic(s, t));
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled++;
+            if (u == t) return new Route(buildPath(prev, t, false), dist[t], settled);
+            double du = dist[u];
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                int v = graph.target(e);
+                double nd = du + graph.weight(e);
+                if (stamp[v] != epoch || nd < dist[v]) {
+                    stamp[v] = epoch;
+                    dist[v] = nd;
+                    prev[v] = u;
+                    heap.push(v, nd + heuristic(v, t));
+                }
+            }
+        }
+        return Route.none(settled);
+    }
+
+    // Bidirectional A* with the average potential pf(v) = (h_t(v) - h_s(v)) / 2, which is
+    // consistent for both directions. Needs coordinates for every node; otherwise the
+    // potential is zero and this is bidirectional Dijkstra. Assumes two-way roads, as
+    // FileUtil.loadGraph produces.
+    public Route bidirectionalAStar(String from, String to) {
+        int s = graph.indexOf(from);
+        int t = graph.indexOf(to);
+        if (s < 0 || t < 0) return Route.none(0);
+        if (s == t) return new Route(new ArrayList<>(List.of(graph.nameOf(s))), 0.0, 0);
+
+        boolean guided = fullCoverage && hasCoords(s) && hasCoords(t);
+        if (heapR == null) {
+            int n = graph.nodeCount();
+            distR = new double[n];
+            prevR = new int[n];
+            stampR = new int[n];
+            heapR = new IndexedMinHeap(n);
         }
+        beginQuery();
+        heapR.clear();
 
-        // Reverse the path to get start-to-end order
-        while (!stack.isEmpty()) {
-            path.add(stack.pop());
+        stamp[s] = epoch;
+        dist[s] = 0.0;
+        prev[s] = -1;
+        heap.push(s, potential(s, s, t, guided));
+        stampR[t] = epoch;
+        distR[t] = 0.0;
+        prevR[t] = -1;
+        heapR.push(t, -potential(t, s, t, guided));
+
+        double best = Double.POSITIVE_INFINITY;
+        int meetF = -1;
+        int meetR = -1;
+        while (!heap.isEmpty() && !heapR.isEmpty()) {
+            if (heap.peekKey() + heapR.peekKey() >= best) break;
+            boolean forward = heap.size() <= heapR.size();
+            IndexedMinHeap q = forward ? heap : heapR;
+            double[] d = forward ? dist : distR;
+            int[] p = forward ? prev : prevR;
+            int[] st = forward ? stamp : stampR;
+            double[] other = forward ? distR : dist;
+            int[] otherSt = forward ? stampR : stamp;
+
+            int u = q.poll();
+            settled++;
+            double du = d[u];
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                int v = graph.target(e);
+                double nd = du + graph.weight(e);
+                if (st[v] != epoch || nd < d[v]) {
+                    st[v] = epoch;
+                    d[v] = nd;
+                    p[v] = u;
+                    double pf = potential(v, s, t, guided);
+                    q.push(v, forward ? nd + pf : nd - pf);
+                }
+                if (otherSt[v] == epoch && nd + other[v] < best) {
+                    best = nd + other[v];
+                    meetF = forward ? u : v;
+                    meetR = forward ? v : u;
+                }
+            }
         }
+        if (meetF < 0) return Route.none(settled);
 
-        return path;
+        List<String> path = buildPath(prev, meetF, false);
+        path.addAll(buildPath(prevR, meetR, true));
+        return new Route(path, best, settled);
     }
 
-    private static class Node {
-        String id;
-        double dist;
+    private boolean hasCoords(int v) {
+        return lat != null && !Double.isNaN(lat[v]);
+    }
 
-        Node(String id, double dist) {
-            this.id = id;
-            this.dist = dist;
+    private double heuristic(int v, int t) {
+        if (!hasCoords(v)) return 0.0;
+        return heuristicScale * GeoUtil.haversine(lat[v], lon[v], lat[t], lon[t]);
+    }
+
+    private double potential(int v, int s, int t, boolean guided) {
+        if (!guided) return 0.0;
+        return (heuristic(v, t) - heuristic(v, s)) / 2.0;
+    }
+
+    // Walk a predecessor chain from 'end'; reversed=false yields source-to-end order
+    private List<String> buildPath(int[] pred, int end, boolean reversed) {
+        List<String> path = new ArrayList<>();
+        for (int v = end; v >= 0; v = pred[v]) path.add(graph.nameOf(v));
+        if (!reversed) Collections.reverse(path);
+        return path;
+    }
+
+    // Path from the query source to 'to'; empty when unreachable
+    public static List<String> reconstructPath(String from, String to, Result result) {
+        if (from == null || to == null || result == null) {
+            return new ArrayList<>();
+        }
+        if (!from.equalsIgnoreCase(String.valueOf(result.getSource()))) {
+            return new ArrayList<>();
         }
+        return result.pathTo(to);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+/*
+ * Pluggable cache of road distances between graph nodes.
+ * Keys are unordered pairs of CompactGraph node ids, so (a, b) and (b, a) share one
+ * entry. Ids are only meaningful for the graph they came from; owners must call
+ * invalidateAll() whenever the graph is replaced. Implementations must be thread-safe.
+ */
+public interface DistanceCache {
+    // Cached distance for the pair, or null on a miss
+    Double get(int a, int b);
+
+    void put(int a, int b, double distance);
+
+    void invalidateAll();
+
+    long size();
+
+    long hitCount();
+
+    long missCount();
+
+    long evictionCount();
+
+    // Symmetric key: smaller id in the high word, larger id in the low word
+    static long key(int a, int b) {
+        int lo = Math.min(a, b);
+        int hi = Math.max(a, b);
+        return ((long) lo << 32) | (hi & 0xffffffffL);
+    }
+}
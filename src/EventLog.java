@@ -0,0 +1,375 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/*
+ * Structured event log: fixed 48-byte records in numbered segment files, read back
+ * through memory maps. Times are forced non-decreasing on append so each segment can
+ * keep a sparse index (the time of every INDEX_EVERY-th record) for range scans, and a
+ * small bit filter of vehicle hashes lets history lookups skip segments.
+ * Sealed segments keep that metadata in a sidecar .idx file so opening a large log does
+ * not rescan it; only the active segment is scanned on open.
+ *
+ * Segment: header (magic "SPEV", version, record size, reserved), then records:
+ *   long epochMillis, short type, short reserved, int value, 16-byte vehicle, 16-byte lot
+ * Strings are UTF-8, zero-padded and cut to 16 bytes.
+ */
+public class EventLog implements AutoCloseable {
+    public enum Type {
+        PARK, FREE, TRANSFER, RESERVE_FAIL, WAITLIST_ADD, WAITLIST_ASSIGN,
+        EMERGENCY_FREE, SMART_RECOMMEND, OTHER;
+
+        public static Type of(String name) {
+            try {
+                return valueOf(name);
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return OTHER;
+            }
+        }
+    }
+
+    public static class Event {
+        private static final DateTimeFormatter FORMAT =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+        public final long time;
+        public final Type type;
+        public final String vehicle;
+        public final String lotId;
+        public final int value;
+
+        Event(long time, Type type, String vehicle, String lotId, int value) {
+            this.time = time;
+            this.type = type;
+            this.vehicle = vehicle;
+            this.lotId = lotId;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(FORMAT.format(Instant.ofEpochMilli(time)))
+                    .append(" | ").append(type);
+            if (!vehicle.isEmpty()) sb.append(" | ").append(vehicle);
+            if (!lotId.isEmpty()) sb.append(" | lot ").append(lotId);
+            if (value >= 0) sb.append(" | ").append(value);
+            return sb.toString();
+        }
+    }
+
+    private static final int MAGIC = 0x56455053; // "SPEV" read little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 48;
+    private static final int FIELD_BYTES = 16;
+    private static final int INDEX_EVERY = 1024;
+    private static final int FILTER_WORDS = 1024; // 65536-bit vehicle filter per segment
+    private static final int PENDING_RECORDS = 1024;
+
+    private static class Segment {
+        final Path file;
+        int count;
+        long firstTime = Long.MAX_VALUE;
+        long lastTime = Long.MIN_VALUE;
+        long[] sparse = new long[16];
+        final long[] filter = new long[FILTER_WORDS];
+        MappedByteBuffer map; // cached once the segment is sealed
+
+        Segment(Path file) {
+            this.file = file;
+        }
+
+        void note(long time, String vehicle) {
+            if (count % INDEX_EVERY == 0) {
+                int slot = count / INDEX_EVERY;
+                if (slot == sparse.length) sparse = Arrays.copyOf(sparse, slot * 2);
+                sparse[slot] = time;
+            }
+            if (count == 0) firstTime = time;
+            lastTime = time;
+            count++;
+            if (!vehicle.isEmpty()) {
+                int h = vehicle.hashCode();
+                filter[(h & 0xFFFF) >>> 6] |= 1L << h;
+                filter[(h >>> 16) >>> 6] |= 1L << (h >>> 16);
+            }
+        }
+
+        boolean mayContain(String vehicle) {
+            int h = vehicle.hashCode();
+            return (filter[(h & 0xFFFF) >>> 6] & (1L << h)) != 0
+                    && (filter[(h >>> 16) >>> 6] & (1L << (h >>> 16))) != 0;
+        }
+
+        Path indexFile() {
+            String name = file.getFileName().toString();
+            return file.resolveSibling(name.substring(0, name.length() - 4) + ".idx");
+        }
+    }
+
+    private final Path dir;
+    private final int segmentRecords;
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private FileChannel channel;
+    private final ByteBuffer pending = ByteBuffer.allocate(RECORD_BYTES * PENDING_RECORDS).order(ByteOrder.LITTLE_ENDIAN);
+    private long lastTime = Long.MIN_VALUE;
+
+    public EventLog(String directory) throws IOException {
+        this(directory, 1 << 20);
+    }
+
+    public EventLog(String directory, int segmentRecords) throws IOException {
+        this.dir = Paths.get(directory);
+        this.segmentRecords = Math.max(INDEX_EVERY, segmentRecords);
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "events-*.seg")) {
+            for (Path p : ds) files.add(p);
+        }
+        Collections.sort(files);
+        for (int i = 0; i < files.size(); i++) {
+            boolean last = i == files.size() - 1;
+            Segment seg = new Segment(files.get(i));
+            if (last || !loadIndex(seg)) {
+                scan(seg, last);
+                if (!last) writeIndex(seg);
+            }
+            segments.add(seg);
+            if (seg.count > 0) lastTime = Math.max(lastTime, seg.lastTime);
+        }
+        if (segments.isEmpty()) {
+            openNewSegment(1);
+        } else {
+            active = segments.get(segments.size() - 1);
+            channel = FileChannel.open(active.file, StandardOpenOption.WRITE);
+            channel.position(HEADER_BYTES + (long) active.count * RECORD_BYTES);
+        }
+    }
+
+    public synchronized void append(long time, Type type, String vehicle, String lotId, int value) throws IOException {
+        time = Math.max(time, lastTime);
+        lastTime = time;
+        vehicle = vehicle == null ? "" : vehicle;
+        lotId = lotId == null ? "" : lotId;
+        pending.putLong(time).putShort((short) type.ordinal()).putShort((short) 0).putInt(value);
+        putField(pending, vehicle);
+        putField(pending, lotId);
+        active.note(time, vehicle);
+        if (!pending.hasRemaining()) flush();
+        if (active.count >= segmentRecords) roll();
+    }
+
+    // Push buffered records to the active segment file
+    public synchronized void flush() throws IOException {
+        pending.flip();
+        while (pending.hasRemaining()) channel.write(pending);
+        pending.clear();
+    }
+
+    // Newest 'n' events, oldest first
+    public synchronized List<Event> tail(int n) throws IOException {
+        flush();
+        LinkedList<Event> out = new LinkedList<>();
+        for (int s = segments.size() - 1; s >= 0 && out.size() < n; s--) {
+            Segment seg = segments.get(s);
+            ByteBuffer map = map(seg);
+            for (int r = seg.count - 1; r >= 0 && out.size() < n; r--) out.addFirst(read(map, r));
+        }
+        return out;
+    }
+
+    // Events with fromMillis <= time <= toMillis, in time order
+    public synchronized List<Event> range(long fromMillis, long toMillis) throws IOException {
+        flush();
+        List<Event> out = new ArrayList<>();
+        for (Segment seg : segments) {
+            if (seg.count == 0 || seg.lastTime < fromMillis || seg.firstTime > toMillis) continue;
+            ByteBuffer map = map(seg);
+            // Last sparse entry strictly before 'from' marks a safe place to start
+            int lo = 0, hi = (seg.count - 1) / INDEX_EVERY;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (seg.sparse[mid] < fromMillis) lo = mid;
+                else hi = mid - 1;
+            }
+            for (int r = lo * INDEX_EVERY; r < seg.count; r++) {
+                long t = map.getLong(HEADER_BYTES + r * RECORD_BYTES);
+                if (t > toMillis) break;
+                if (t >= fromMillis) out.add(read(map, r));
+            }
+        }
+        return out;
+    }
+
+    // Every event recorded for one vehicle, in time order
+    public synchronized List<Event> history(String vehicle) throws IOException {
+        flush();
+        List<Event> out = new ArrayList<>();
+        byte[] key = fieldBytes(vehicle);
+        for (Segment seg : segments) {
+            if (seg.count == 0 || !seg.mayContain(vehicle)) continue;
+            ByteBuffer map = map(seg);
+            for (int r = 0; r < seg.count; r++) {
+                if (fieldEquals(map, HEADER_BYTES + r * RECORD_BYTES + 16, key)) out.add(read(map, r));
+            }
+        }
+        return out;
+    }
+
+    public synchronized long size() {
+        long n = 0;
+        for (Segment seg : segments) n += seg.count;
+        return n;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        channel.force(false);
+        channel.close();
+    }
+
+    private void roll() throws IOException {
+        flush();
+        channel.force(false);
+        channel.close();
+        writeIndex(active);
+        openNewSegment(segments.size() + 1);
+    }
+
+    private void openNewSegment(int number) throws IOException {
+        Segment seg = new Segment(dir.resolve(String.format("events-%08d.seg", number)));
+        channel = FileChannel.open(seg.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(0).flip();
+        while (header.hasRemaining()) channel.write(header);
+        segments.add(seg);
+        active = seg;
+    }
+
+    private ByteBuffer map(Segment seg) throws IOException {
+        if (seg.map != null) return seg.map;
+        long bytes = HEADER_BYTES + (long) seg.count * RECORD_BYTES;
+        MappedByteBuffer map;
+        try (FileChannel ch = FileChannel.open(seg.file, StandardOpenOption.READ)) {
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (seg != active) seg.map = map;
+        return map;
+    }
+
+    private Event read(ByteBuffer map, int record) {
+        int at = HEADER_BYTES + record * RECORD_BYTES;
+        int type = map.getShort(at + 8);
+        Type[] types = Type.values();
+        return new Event(map.getLong(at), type >= 0 && type < types.length ? types[type] : Type.OTHER,
+                getField(map, at + 16), getField(map, at + 32), map.getInt(at + 12));
+    }
+
+    // Rebuild a segment's metadata from its records; a torn last record is cut off
+    private void scan(Segment seg, boolean writable) throws IOException {
+        try (FileChannel ch = FileChannel.open(seg.file, writable
+                ? EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : EnumSet.of(StandardOpenOption.READ))) {
+            long size = ch.size();
+            int count = size < HEADER_BYTES ? 0 : (int) ((size - HEADER_BYTES) / RECORD_BYTES);
+            if (size < HEADER_BYTES && writable) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(0).flip();
+                ch.truncate(0);
+                while (header.hasRemaining()) ch.write(header, HEADER_BYTES - header.remaining());
+            } else if (writable && size != HEADER_BYTES + (long) count * RECORD_BYTES) {
+                ch.truncate(HEADER_BYTES + (long) count * RECORD_BYTES);
+            }
+            if (count == 0) return;
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES + (long) count * RECORD_BYTES);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            for (int r = 0; r < count; r++) {
+                int at = HEADER_BYTES + r * RECORD_BYTES;
+                seg.note(map.getLong(at), getField(map, at + 16));
+            }
+        }
+    }
+
+    // .idx: magic, count, firstTime, lastTime, filter words, sparse entries
+    private void writeIndex(Segment seg) throws IOException {
+        int sparseCount = (seg.count + INDEX_EVERY - 1) / INDEX_EVERY;
+        ByteBuffer buf = ByteBuffer.allocate(24 + FILTER_WORDS * 8 + 4 + sparseCount * 8).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(seg.count).putLong(seg.firstTime).putLong(seg.lastTime);
+        for (long w : seg.filter) buf.putLong(w);
+        buf.putInt(sparseCount);
+        for (int i = 0; i < sparseCount; i++) buf.putLong(seg.sparse[i]);
+        buf.flip();
+        Path tmp = Paths.get(seg.indexFile() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+        Files.move(tmp, seg.indexFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // False when the sidecar is missing or does not match the segment file
+    private boolean loadIndex(Segment seg) {
+        try {
+            if (!Files.exists(seg.indexFile())) return false;
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(seg.indexFile())).order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt() != MAGIC) return false;
+            int count = buf.getInt();
+            if (Files.size(seg.file) != HEADER_BYTES + (long) count * RECORD_BYTES) return false;
+            seg.count = count;
+            seg.firstTime = buf.getLong();
+            seg.lastTime = buf.getLong();
+            for (int i = 0; i < FILTER_WORDS; i++) seg.filter[i] = buf.getLong();
+            seg.sparse = new long[Math.max(1, buf.getInt())];
+            for (int i = 0; i < seg.sparse.length && buf.hasRemaining(); i++) seg.sparse[i] = buf.getLong();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static void putField(ByteBuffer buf, String value) {
+        byte[] bytes = fieldBytes(value);
+        buf.put(bytes).put(new byte[FIELD_BYTES - bytes.length]);
+    }
+
+    // UTF-8, cut to FIELD_BYTES without splitting a character
+    private static byte[] fieldBytes(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= FIELD_BYTES) return bytes;
+        int len = FIELD_BYTES;
+        while (len > 0 && (bytes[len] & 0xC0) == 0x80) len--;
+        return Arrays.copyOf(bytes, len);
+    }
+
+    private static String getField(ByteBuffer map, int at) {
+        int len = 0;
+        while (len < FIELD_BYTES && map.get(at + len) != 0) len++;
+        byte[] bytes = new byte[len];
+        map.get(at, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean fieldEquals(ByteBuffer map, int at, byte[] key) {
+        for (int i = 0; i < FIELD_BYTES; i++) {
+            byte b = map.get(at + i);
+            if (i < key.length ? b != key[i] : b != 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/*
+ * Versioned binary snapshot of the facilities/pricing table, read back through FileChannel.map.
+ * Layout (little-endian):
+ *   header   magic "SPFS", version, lotCount, pad, crc32 of body, source file length,
+ *            source file mtime (0 when written without a source)
+ *   records  per lot: int id length + UTF-8 id, double costPerHour, int amenity bits, int facilityScore
+ */
+public class FacilitySnapshot {
+    private static final int MAGIC = 0x53465053; // "SPFS" read little-endian
+    private static final int VERSION = 2; // 1 had no source stamp
+    private static final int HEADER_BYTES = 40;
+
+    public static void write(Map<String, ParkingManager.ParkingFacilities> facilities, String filepath) throws Exception {
+        write(facilities, filepath, null);
+    }
+
+    // 'source' is the CSV the table was parsed from; its length and mtime are recorded
+    // so read() can tell when the snapshot no longer matches it
+    public static void write(Map<String, ParkingManager.ParkingFacilities> facilities, String filepath, File source) throws Exception {
+        byte[][] ids = new byte[facilities.size()][];
+        ParkingManager.ParkingFacilities[] rows = new ParkingManager.ParkingFacilities[ids.length];
+        long total = HEADER_BYTES;
+        int n = 0;
+        for (Map.Entry<String, ParkingManager.ParkingFacilities> e : facilities.entrySet()) {
+            ids[n] = e.getKey().getBytes(StandardCharsets.UTF_8);
+            rows[n++] = e.getValue();
+            total += 4 + ids[n - 1].length + 8 + 4 + 4;
+        }
+        if (total > Integer.MAX_VALUE) throw new IOException("Facility table too large for snapshot: " + total + " bytes");
+
+        ByteBuffer buf = ByteBuffer.allocate((int) total).order(ByteOrder.LITTLE_ENDIAN);
+        buf.position(HEADER_BYTES);
+        for (int i = 0; i < n; i++) {
+            buf.putInt(ids[i].length).put(ids[i]);
+            buf.putDouble(rows[i].costPerHour).putInt(rows[i].amenities).putInt(rows[i].facilityScore);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), HEADER_BYTES, (int) total - HEADER_BYTES);
+        buf.position(0);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(0).putLong(crc.getValue());
+        buf.putLong(source == null ? 0 : source.length()).putLong(source == null ? 0 : source.lastModified());
+        buf.position(0);
+
+        Path tmp = Paths.get(filepath + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, Paths.get(filepath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static Map<String, ParkingManager.ParkingFacilities> read(String filepath) throws Exception {
+        return read(filepath, null);
+    }
+
+    // Returns null when the file is missing, has the wrong magic/version, fails its checksum
+    // or (given a source) was not written from that file at its current length and mtime
+    public static Map<String, ParkingManager.ParkingFacilities> read(String filepath, File source) throws Exception {
+        Path path = Paths.get(filepath);
+        if (!Files.exists(path)) return null;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES) return null;
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) return null;
+            int n = map.getInt(8);
+            long checksum = map.getLong(16);
+            if (source != null && (map.getLong(24) != source.length() || map.getLong(32) != source.lastModified())) return null;
+
+            CRC32 crc = new CRC32();
+            crc.update(map.duplicate().position(HEADER_BYTES));
+            if (crc.getValue() != checksum) return null;
+
+            Map<String, ParkingManager.ParkingFacilities> facilities = new HashMap<>(n * 2);
+            map.position(HEADER_BYTES);
+            byte[] scratch = new byte[16];
+            for (int i = 0; i < n; i++) {
+                int len = map.getInt();
+                if (len > scratch.length) scratch = new byte[len];
+                map.get(scratch, 0, len);
+                String id = new String(scratch, 0, len, StandardCharsets.UTF_8);
+                double cost = map.getDouble();
+                int amenities = map.getInt();
+                int score = map.getInt();
+                facilities.put(id, new ParkingManager.ParkingFacilities(cost, amenities, score));
+            }
+            return facilities;
+        }
+    }
+
+    // Converter: java FacilitySnapshot <facilities.txt> <facilities.bin>
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java FacilitySnapshot <facilities file> <snapshot file>");
+            return;
+        }
+        Map<String, ParkingManager.ParkingFacilities> facilities = FileUtil.loadFacilityTable(args[0]);
+        write(facilities, args[1], new File(args[0]));
+        System.out.printf("Wrote %d lots -> %s%n", facilities.size(), args[1]);
+    }
+}
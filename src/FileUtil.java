@@ -2,7 +2,7 @@ import java.io.*;
 import java.util.*;
 
 /*
- * Helper functions to load parking data, graph, waitlist and save back.
+ * Helper functions to load parking data and the graph and save them back.
  */
 
 public class FileUtil {
@@ -29,15 +29,9 @@ public class FileUtil {
                 double rating = Double.parseDouble(p[4].trim());
                 double lat = Double.parseDouble(p[5].trim());
                 double lon = Double.parseDouble(p[6].trim());
-                double costPerHour = 0.0; // default cost
-                boolean secure = false;
-                boolean covered = false;
-                boolean evCharging = false;
-                boolean valet = false;
-
-                list.add(new ParkingLot(id, loc, total, avail, rating, 
-                        costPerHour, secure, covered, evCharging, valet,
-                        lat, lon));
+                // cost and amenities come from the facilities file
+                list.add(new ParkingLot(id, loc, total, avail, rating,
+                        ParkingLot.DEFAULT_COST_PER_HOUR, 0, lat, lon));
 
             }
         }
@@ -68,35 +62,80 @@ public class FileUtil {
         return map;
     }
 
-    // waitlist lines: vehicleNumber,timestamp
-    public static Queue<String> loadWaitlist(String filepath) throws Exception {
-        Queue<String> q = new LinkedList<>();
+    // Prefer the binary snapshot when it was written from the CSV as it is now (same length
+    // and mtime) and passes its checksum; otherwise parse the CSV and refresh the snapshot.
+    public static CompactGraph loadCompactGraph(String csvPath, String snapshotPath) throws Exception {
+        File csv = new File(csvPath);
+        File snap = new File(snapshotPath);
+        if (snap.exists()) {
+            try {
+                CompactGraph g = GraphSnapshot.read(snapshotPath, csv.exists() ? csv : null);
+                if (g != null) return g;
+                System.out.println("Warning: graph snapshot stale or invalid, reparsing " + csvPath);
+            } catch (Exception ex) {
+                System.out.println("Warning: graph snapshot unreadable (" + ex.getMessage() + "), reparsing " + csvPath);
+            }
+        }
+        CompactGraph g = CompactGraph.fromAdjacency(loadGraph(csvPath));
+        if (csv.exists()) {
+            try { GraphSnapshot.write(g, snapshotPath, csv); }
+            catch (Exception ex) { System.out.println("Warning: could not write graph snapshot: " + ex.getMessage()); }
+        }
+        return g;
+    }
+
+    // facilities file: LotId,CostPerHour,Amenities,FacilityScore where Amenities is letters
+    // S/E/C/V (security, EV charging, covered, valet) or "-" for none; '#' starts a comment
+    public static Map<String, ParkingManager.ParkingFacilities> loadFacilityTable(String filepath) throws Exception {
+        Map<String, ParkingManager.ParkingFacilities> map = new HashMap<>();
         File f = new File(filepath);
-        if (!f.exists()) return q;
+        if (!f.exists()) return map;
         try (BufferedReader br = new BufferedReader(new FileReader(f))) {
             String line;
             while ((line = br.readLine()) != null) {
                 line = line.trim();
-                if (line.isEmpty()) continue;
+                if (line.isEmpty() || line.startsWith("#")) continue;
                 String[] p = line.split(",");
-                q.add(p[0].trim().toUpperCase());
+                if (p.length < 4) continue;
+                String id = p[0].trim();
+                double cost = Double.parseDouble(p[1].trim());
+                int amenities = AvailabilityStats.parseAmenities(p[2]);
+                int score = Integer.parseInt(p[3].trim());
+                map.put(id, new ParkingManager.ParkingFacilities(cost, amenities, score));
             }
         }
-        return q;
+        return map;
     }
 
-    public static void saveParkingData(String filepath, List<ParkingLot> lots) throws Exception {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(filepath, false))) {
-            for (ParkingLot pl : lots) {
-                bw.write(String.format("%s,%s,%d,%d,%.1f,%.6f,%.6f\n",
-                        pl.id, pl.locationName, pl.totalSlots, pl.availableSlots, pl.rating, pl.lat, pl.lon));
+    // Same snapshot rule as the graph: the binary form only when it was written from the CSV as it is now
+    public static Map<String, ParkingManager.ParkingFacilities> loadFacilities(String csvPath, String snapshotPath) throws Exception {
+        File csv = new File(csvPath);
+        File snap = new File(snapshotPath);
+        if (snap.exists()) {
+            try {
+                Map<String, ParkingManager.ParkingFacilities> table = FacilitySnapshot.read(snapshotPath, csv.exists() ? csv : null);
+                if (table != null) return table;
+                System.out.println("Warning: facility snapshot stale or invalid, reparsing " + csvPath);
+            } catch (Exception ex) {
+                System.out.println("Warning: facility snapshot unreadable (" + ex.getMessage() + "), reparsing " + csvPath);
             }
         }
+        if (!csv.exists()) {
+            System.out.println("Warning: facilities file not found: " + csvPath);
+            return new HashMap<>();
+        }
+        Map<String, ParkingManager.ParkingFacilities> table = loadFacilityTable(csvPath);
+        try { FacilitySnapshot.write(table, snapshotPath, csv); }
+        catch (Exception ex) { System.out.println("Warning: could not write facility snapshot: " + ex.getMessage()); }
+        return table;
     }
 
-    public static void saveWaitlist(String filepath, Queue<String> q) throws Exception {
+    public static void saveParkingData(String filepath, List<ParkingLot> lots) throws Exception {
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(filepath, false))) {
-            for (String v : q) bw.write(v + "," + (System.currentTimeMillis()/1000) + "\n");
+            for (ParkingLot pl : lots) {
+                bw.write(String.format("%s,%s,%d,%d,%.1f,%.6f,%.6f\n",
+                        pl.id, pl.locationName, pl.totalSlots, pl.availableSlots(), pl.rating, pl.lat, pl.lon));
+            }
         }
     }
 
@@ -27,6 +27,11 @@ public class GeoDB {
         }
     }
 
+    // Register or move a location without a file (generated or runtime-added nodes)
+    public static void put(String name, double lat, double lon) {
+        db.put(name.toUpperCase(), new double[]{lat, lon});
+    }
+
     public static double[] get(String name) {
         if (name == null) return new double[]{0,0};
         return db.getOrDefault(name.toUpperCase(), new double[]{0,0});
@@ -0,0 +1,135 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.CRC32;
+
+/*
+ * Versioned binary snapshot of a CompactGraph, read back through FileChannel.map.
+ * Layout (little-endian):
+ *   header   magic "SPGS", version, nodeCount, edgeCount, nameBytes, crc32 of body, pad,
+ *            source file length, source file mtime (0 when written without a source)
+ *   names    per node: int length + UTF-8 bytes, padded to 8 bytes
+ *   offsets  int[nodeCount + 1]
+ *   targets  int[edgeCount], padded to 8 bytes
+ *   weights  double[edgeCount]
+ */
+public class GraphSnapshot {
+    private static final int MAGIC = 0x53475053; // "SPGS" read little-endian
+    private static final int VERSION = 2; // 1 had no source stamp
+    private static final int HEADER_BYTES = 48;
+
+    public static void write(CompactGraph graph, String filepath) throws Exception {
+        write(graph, filepath, null);
+    }
+
+    // 'source' is the CSV the graph was parsed from; its length and mtime are recorded
+    // so read() can tell when the snapshot no longer matches it
+    public static void write(CompactGraph graph, String filepath, File source) throws Exception {
+        int n = graph.nodeCount();
+        int m = graph.edgeCount();
+        byte[][] names = new byte[n][];
+        int nameBytes = 0;
+        for (int i = 0; i < n; i++) {
+            names[i] = graph.nameOf(i).getBytes(StandardCharsets.UTF_8);
+            nameBytes += 4 + names[i].length;
+        }
+        nameBytes = pad8(nameBytes);
+        int intBytes = pad8((n + 1 + m) * 4);
+        long total = (long) HEADER_BYTES + nameBytes + intBytes + (long) m * 8;
+        if (total > Integer.MAX_VALUE) throw new IOException("Graph too large for snapshot: " + total + " bytes");
+
+        ByteBuffer buf = ByteBuffer.allocate((int) total).order(ByteOrder.LITTLE_ENDIAN);
+        buf.position(HEADER_BYTES);
+        for (byte[] name : names) {
+            buf.putInt(name.length);
+            buf.put(name);
+        }
+        buf.position(HEADER_BYTES + nameBytes);
+        buf.asIntBuffer().put(graph.offsets()).put(graph.targets());
+        buf.position(HEADER_BYTES + nameBytes + intBytes);
+        buf.asDoubleBuffer().put(graph.weights());
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), HEADER_BYTES, (int) total - HEADER_BYTES);
+        buf.position(0);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(nameBytes).putLong(crc.getValue()).putInt(0);
+        buf.putLong(source == null ? 0 : source.length()).putLong(source == null ? 0 : source.lastModified());
+        buf.position(0);
+
+        Path tmp = Paths.get(filepath + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, Paths.get(filepath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static CompactGraph read(String filepath) throws Exception {
+        return read(filepath, null);
+    }
+
+    // Returns null when the file is missing, has the wrong magic/version, fails its checksum
+    // or (given a source) was not written from that file at its current length and mtime
+    public static CompactGraph read(String filepath, File source) throws Exception {
+        Path path = Paths.get(filepath);
+        if (!Files.exists(path)) return null;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES) return null;
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) return null;
+            int n = map.getInt(8);
+            int m = map.getInt(12);
+            int nameBytes = map.getInt(16);
+            long checksum = map.getLong(20);
+            if (source != null && (map.getLong(32) != source.length() || map.getLong(40) != source.lastModified())) return null;
+            int intBytes = pad8((n + 1 + m) * 4);
+            if (size != (long) HEADER_BYTES + nameBytes + intBytes + (long) m * 8) return null;
+
+            CRC32 crc = new CRC32();
+            crc.update(map.duplicate().position(HEADER_BYTES));
+            if (crc.getValue() != checksum) return null;
+
+            String[] names = new String[n];
+            ByteBuffer nb = map.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(HEADER_BYTES);
+            byte[] scratch = new byte[64];
+            for (int i = 0; i < n; i++) {
+                int len = nb.getInt();
+                if (len > scratch.length) scratch = new byte[len];
+                nb.get(scratch, 0, len);
+                names[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+            }
+
+            int[] offsets = new int[n + 1];
+            int[] targets = new int[m];
+            double[] weights = new double[m];
+            map.position(HEADER_BYTES + nameBytes);
+            map.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(offsets).get(targets);
+            map.position(HEADER_BYTES + nameBytes + intBytes);
+            map.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(weights);
+            return new CompactGraph(names, offsets, targets, weights);
+        }
+    }
+
+    private static int pad8(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    // Converter: java GraphSnapshot <city_graph.txt> <city_graph.bin>
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java GraphSnapshot <graph file> <snapshot file>");
+            return;
+        }
+        CompactGraph graph = CompactGraph.fromAdjacency(FileUtil.loadGraph(args[0]));
+        write(graph, args[1], new File(args[0]));
+        System.out.printf("Wrote %d nodes, %d edges -> %s%n", graph.nodeCount(), graph.edgeCount(), args[1]);
+    }
+}
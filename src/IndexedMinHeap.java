@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+/*
+ * Binary min-heap over int ids 0..capacity-1 with double keys and decrease-key.
+ * All storage is primitive and reused across clear() calls, so a search engine
+ * can keep one heap for its whole lifetime.
+ */
+public class IndexedMinHeap {
+    private final int[] heap;     // heap slot -> node id
+    private final int[] pos;      // node id -> heap slot, -1 if absent
+    private final double[] keys;  // node id -> key
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        this.heap = new int[Math.max(1, capacity)];
+        this.pos = new int[Math.max(1, capacity)];
+        this.keys = new double[Math.max(1, capacity)];
+        Arrays.fill(pos, -1);
+    }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public int size() { return size; }
+
+    public boolean contains(int id) { return pos[id] >= 0; }
+
+    public double peekKey() { return keys[heap[0]]; }
+
+    public double keyOf(int id) { return keys[id]; }
+
+    // Insert id, or lower its key if already queued with a larger one
+    public void push(int id, double key) {
+        int p = pos[id];
+        if (p < 0) {
+            keys[id] = key;
+            heap[size] = id;
+            pos[id] = size;
+            siftUp(size++);
+        } else if (key < keys[id]) {
+            keys[id] = key;
+            siftUp(p);
+        }
+    }
+
+    public int poll() {
+        int top = heap[0];
+        pos[top] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            pos[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    // Only touches the slots that are still queued, so cost is O(size) not O(capacity)
+    public void clear() {
+        for (int i = 0; i < size; i++) pos[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        double k = keys[id];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int pid = heap[parent];
+            if (keys[pid] <= k) break;
+            heap[i] = pid;
+            pos[pid] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        double k = keys[id];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) child = right;
+            int cid = heap[child];
+            if (k <= keys[cid]) break;
+            heap[i] = cid;
+            pos[cid] = i;
+            i = child;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+}
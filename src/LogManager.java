@@ -1,47 +1,290 @@
-import java.io.RandomAccessFile;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Asynchronous event log. Callers only drop an entry into a bounded lock-free ring;
+ * a single writer thread keeps the file open, formats timestamps (cached per second)
+ * and writes in batches once FLUSH_BYTES pile up or flushMillis pass.
+ * When the ring is full the policy decides: BLOCK waits for space, DROP discards the
+ * event, SAMPLE keeps every SAMPLE_EVERY-th event once the ring is three quarters full.
+ * Entries logged through event() are also appended, by the same writer, to an optional
+ * structured EventLog.
+ */
+public class LogManager implements AutoCloseable {
+    public enum Backpressure { BLOCK, DROP, SAMPLE }
+
+    private static final int FLUSH_BYTES = 64 * 1024;
+    private static final int SAMPLE_EVERY = 10;
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private static class Entry {
+        final long time;
+        final String event;
+        final String details;
+        final EventLog.Type type; // null for text-only entries
+        final String vehicle;
+        final String lotId;
+        final int value;
+        final String[] vehicles; // batch entries: one structured record per vehicle
+        final int[] values;
+
+        Entry(long time, String event, String details, EventLog.Type type, String vehicle, String lotId, int value) {
+            this(time, event, details, type, vehicle, lotId, value, null, null);
+        }
+
+        Entry(long time, String event, String details, EventLog.Type type, String vehicle, String lotId, int value,
+              String[] vehicles, int[] values) {
+            this.time = time;
+            this.event = event;
+            this.details = details;
+            this.type = type;
+            this.vehicle = vehicle;
+            this.lotId = lotId;
+            this.value = value;
+            this.vehicles = vehicles;
+            this.values = values;
+        }
+    }
 
-public class LogManager {
     private String filepath;
+    private final EventLog events;
+    private final Backpressure policy;
+    private final long flushNanos;
+
+    // Multi-producer, single-consumer ring: producers CAS 'tail', only the writer moves 'head'
+    private final AtomicReferenceArray<Entry> ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private volatile long written;
+    private volatile boolean flushRequested;
+    private volatile boolean closed;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+    private final Thread writer;
 
-    public LogManager(String filepath) { 
-        this.filepath = filepath; 
+    // Writer-thread only
+    private long stampSecond = Long.MIN_VALUE;
+    private String stamp;
+
+    public LogManager(String filepath) {
+        this(filepath, 8192, Backpressure.BLOCK, 200, null);
+    }
+
+    public LogManager(String filepath, int capacity, Backpressure policy, long flushMillis, EventLog events) {
+        this.filepath = filepath;
+        this.events = events;
+        this.policy = policy;
+        this.flushNanos = Math.max(1, flushMillis) * 1_000_000L;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.writer = new Thread(this::runWriter, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
     }
 
     public void log(String event, String details) {
+        enqueue(new Entry(System.currentTimeMillis(), event, details, null, null, null, -1));
+    }
+
+    // Text line plus a structured record; 'value' is an event-specific number (slots left,
+    // bay, count) or -1
+    public void event(EventLog.Type type, String vehicle, String lotId, int value, String details) {
+        enqueue(new Entry(System.currentTimeMillis(), type.name(), details, type, vehicle, lotId, value));
+    }
+
+    // One text line summarising a bulk operation plus a structured record per vehicle,
+    // all through a single ring slot; values[i] belongs to vehicles[i] (null for all -1)
+    public void events(EventLog.Type type, String lotId, List<String> vehicles, int[] values, String summary) {
+        if (vehicles.isEmpty()) return;
+        enqueue(new Entry(System.currentTimeMillis(), type.name(), summary, type, null, lotId, -1,
+                vehicles.toArray(new String[0]), values));
+    }
+
+    // Structured log, or null when none is attached
+    public EventLog events() {
+        flush();
+        return events;
+    }
+
+    private void enqueue(Entry e) {
+        if (closed) {
+            writeDirect(e);
+            return;
+        }
+        if (policy == Backpressure.SAMPLE && tail.get() - head >= ring.length() * 3L / 4
+                && sampled.incrementAndGet() % SAMPLE_EVERY != 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+        while (!offer(e)) {
+            if (policy != Backpressure.BLOCK || closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(50_000);
+        }
+        // Wake the writer early rather than let the ring fill up between timed flushes
+        if (tail.get() - head >= ring.length() / 2) LockSupport.unpark(writer);
+    }
+
+    private boolean offer(Entry e) {
+        while (true) {
+            long t = tail.get();
+            if (t - head >= ring.length()) return false;
+            if (tail.compareAndSet(t, t + 1)) {
+                ring.set((int) (t & mask), e);
+                return true;
+            }
+        }
+    }
+
+    // Block until everything logged before this call is in the file
+    public void flush() {
+        long target = tail.get();
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (written < target && writer.isAlive() && System.nanoTime() < deadline) {
+            flushRequested = true;
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    // Drain the ring, write everything out and stop the writer
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
         try {
-            String time = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date());
-            FileUtil.appendLog(filepath, String.format("%s | %s | %s", time, event, details));
-        } catch (Exception ex) {
-            System.out.println("Log error: " + ex.getMessage());
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    // Print last N lines
-    public void printLastLines(int n) {
-        try (RandomAccessFile raf = new RandomAccessFile(filepath, "r")) {
-            long fileLength = raf.length();
-            long pointer = fileLength - 1;
-            int lines = 0;
-            StringBuilder sb = new StringBuilder();
-
-            while (pointer >= 0 && lines < n) {
-                raf.seek(pointer);
-                char c = (char) raf.read();
-                if (c == '\n') lines++;
-                sb.append(c);
-                pointer--;
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    private void runWriter() {
+        StringBuilder batch = new StringBuilder(FLUSH_BYTES);
+        try (FileChannel ch = FileChannel.open(Paths.get(filepath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long lastWrite = System.nanoTime();
+            while (true) {
+                int drained = 0;
+                Entry e;
+                while (batch.length() < FLUSH_BYTES && (e = poll()) != null) {
+                    format(e, batch);
+                    record(e);
+                    drained++;
+                }
+                long now = System.nanoTime();
+                boolean idle = drained == 0;
+                if (batch.length() > 0 && (batch.length() >= FLUSH_BYTES || flushRequested || closed
+                        || now - lastWrite >= flushNanos)) {
+                    write(ch, batch);
+                    lastWrite = now;
+                }
+                if (batch.length() == 0) {
+                    written = head;
+                    flushRequested = false;
+                }
+                if (idle) {
+                    if (closed && head == tail.get()) break;
+                    LockSupport.parkNanos(closed ? 10_000 : flushNanos);
+                }
+            }
+        } catch (IOException ex) {
+            System.out.println("Log error: " + ex.getMessage());
+        }
+        if (events != null) {
+            try {
+                events.close();
+            } catch (IOException ex) {
+                System.out.println("Event log error: " + ex.getMessage());
             }
+        }
+    }
+
+    private Entry poll() {
+        long h = head;
+        int idx = (int) (h & mask);
+        Entry e = ring.get(idx);
+        if (e == null) return null; // empty, or a producer has claimed the slot but not filled it yet
+        ring.lazySet(idx, null);
+        head = h + 1;
+        return e;
+    }
+
+    private void write(FileChannel ch, StringBuilder batch) throws IOException {
+        ByteBuffer buf = StandardCharsets.UTF_8.encode(batch.toString());
+        while (buf.hasRemaining()) ch.write(buf);
+        batch.setLength(0);
+        if (events != null) events.flush();
+    }
 
-            // reverse the string to correct order
-            sb.reverse();
-            String[] outputLines = sb.toString().split("\n");
-            int start = Math.max(0, outputLines.length - n);
-            for (int i = start; i < outputLines.length; i++) {
-                System.out.println(outputLines[i]);
+    private void record(Entry e) {
+        if (events == null || e.type == null) return;
+        try {
+            if (e.vehicles != null) {
+                for (int i = 0; i < e.vehicles.length; i++) {
+                    events.append(e.time, e.type, e.vehicles[i], e.lotId, e.values == null ? -1 : e.values[i]);
+                }
+                return;
             }
+            events.append(e.time, e.type, e.vehicle, e.lotId, e.value);
+        } catch (IOException ex) {
+            System.out.println("Event log error: " + ex.getMessage());
+        }
+    }
+
+    private void format(Entry e, StringBuilder out) {
+        long second = Math.floorDiv(e.time, 1000);
+        if (second != stampSecond) {
+            stampSecond = second;
+            stamp = TIME_FORMAT.format(Instant.ofEpochSecond(second));
+        }
+        out.append(stamp).append(" | ").append(e.event).append(" | ").append(e.details).append('\n');
+    }
+
+    // After close() there is no writer; fall back to a synchronous append of the text line
+    private void writeDirect(Entry e) {
+        try {
+            FileUtil.appendLog(filepath, String.format("%s | %s | %s",
+                    TIME_FORMAT.format(Instant.ofEpochMilli(e.time)), e.event, e.details));
+        } catch (Exception ex) {
+            System.out.println("Log error: " + ex.getMessage());
+        }
+    }
 
+    // Print last N lines
+    public void printLastLines(int n) {
+        flush();
+        try {
+            LogTail.lastLines(filepath, n, System.out::println);
         } catch (Exception e) {
             System.out.println("No logs or error reading logs: " + e.getMessage());
         }
     }
+
+    // Stream new log lines to 'sink' until the returned handle is closed
+    public LogTail.Follower follow(java.util.function.Consumer<String> sink) throws IOException {
+        flush();
+        return LogTail.follow(filepath, 250, sink);
+    }
 }
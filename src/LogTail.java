@@ -0,0 +1,189 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * tail for text logs. lastLines reads backwards in BLOCK_BYTES chunks through a
+ * FileChannel and only decodes the bytes of the lines it returns; '\n' never occurs
+ * inside a multi-byte UTF-8 sequence, so splitting on raw bytes is safe.
+ * follow streams lines appended after the current end of file until closed.
+ */
+public class LogTail {
+    private static final int BLOCK_BYTES = 64 * 1024;
+
+    // Last n lines, oldest first
+    public static List<String> lastLines(String filepath, int n) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lastLines(filepath, n, lines::add);
+        return lines;
+    }
+
+    // Streams the last n lines to 'sink', oldest first
+    public static void lastLines(String filepath, int n, Consumer<String> sink) throws IOException {
+        if (n <= 0) return;
+        try (FileChannel ch = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            long end = ch.size();
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_BYTES);
+            Deque<byte[]> found = new ArrayDeque<>();
+            byte[] carry = new byte[0]; // start of the current line lies in an earlier block
+            long pos = end;
+
+            while (pos > 0 && found.size() < n) {
+                int len = (int) Math.min(BLOCK_BYTES, pos);
+                pos -= len;
+                block.clear().limit(len);
+                while (block.hasRemaining()) {
+                    if (ch.read(block, pos + block.position()) < 0) break;
+                }
+                byte[] bytes = block.array();
+                int lineEnd = len;
+                for (int i = len - 1; i >= 0 && found.size() < n; i--) {
+                    if (bytes[i] != '\n') continue;
+                    if (pos + i == end - 1) { // trailing newline ends the last line, it does not start a new one
+                        lineEnd = i;
+                        continue;
+                    }
+                    found.addFirst(concat(bytes, i + 1, lineEnd, carry));
+                    carry = new byte[0];
+                    lineEnd = i;
+                }
+                if (found.size() < n) carry = concat(bytes, 0, lineEnd, carry);
+            }
+            if (pos == 0 && found.size() < n && carry.length > 0) found.addFirst(carry);
+            for (byte[] line : found) sink.accept(decode(line));
+        }
+    }
+
+    private static byte[] concat(byte[] bytes, int from, int to, byte[] tail) {
+        byte[] out = new byte[to - from + tail.length];
+        System.arraycopy(bytes, from, out, 0, to - from);
+        System.arraycopy(tail, 0, out, to - from, tail.length);
+        return out;
+    }
+
+    private static String decode(byte[] line) {
+        int len = line.length;
+        if (len > 0 && line[len - 1] == '\r') len--;
+        return new String(line, 0, len, StandardCharsets.UTF_8);
+    }
+
+    // Handle for a running follow; close() stops it
+    public static class Follower implements AutoCloseable {
+        private final Thread thread;
+        private volatile boolean running = true;
+        private volatile WatchService watcher;
+
+        private Follower(Path path, long offset, long pollMillis, Consumer<String> sink) {
+            this.thread = new Thread(() -> run(path, offset, pollMillis, sink), "log-follow");
+            thread.setDaemon(true);
+        }
+
+        private void run(Path path, long offset, long pollMillis, Consumer<String> sink) {
+            Path dir = path.toAbsolutePath().getParent();
+            try (WatchService watcher = dir.getFileSystem().newWatchService()) {
+                this.watcher = watcher;
+                if (!running) return;
+                dir.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+                ByteArrayOutputStream partial = new ByteArrayOutputStream();
+                ByteBuffer block = ByteBuffer.allocate(BLOCK_BYTES);
+                while (running) {
+                    // The watch event is only a hint; the timeout also covers missed or coalesced events
+                    WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        key.pollEvents();
+                        key.reset();
+                    }
+                    if (!Files.exists(path)) continue;
+                    try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                        long size = ch.size();
+                        if (size < offset) { // truncated or replaced: start over
+                            offset = 0;
+                            partial.reset();
+                        }
+                        while (offset < size) {
+                            block.clear();
+                            int read = ch.read(block, offset);
+                            if (read <= 0) break;
+                            offset += read;
+                            byte[] bytes = block.array();
+                            int lineStart = 0;
+                            for (int i = 0; i < read; i++) {
+                                if (bytes[i] != '\n') continue;
+                                partial.write(bytes, lineStart, i - lineStart);
+                                sink.accept(decode(partial.toByteArray()));
+                                partial.reset();
+                                lineStart = i + 1;
+                            }
+                            partial.write(bytes, lineStart, read - lineStart);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | ClosedWatchServiceException e) {
+                // close() shuts the watch service to wake us; only report real failures
+                if (running) System.out.println("Follow error: " + e);
+            }
+        }
+
+        // Stops without interrupting, so a read in progress finishes normally; closing the
+        // watch service wakes a follower blocked in poll()
+        @Override
+        public void close() {
+            running = false;
+            WatchService w = watcher;
+            if (w != null) {
+                try {
+                    w.close();
+                } catch (IOException ignored) {
+                }
+            }
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Stream lines appended to the file from now on; pollMillis bounds the delay when
+    // file-system events are missed
+    public static Follower follow(String filepath, long pollMillis, Consumer<String> sink) throws IOException {
+        Path path = Paths.get(filepath);
+        Follower f = new Follower(path, Files.exists(path) ? Files.size(path) : 0, pollMillis, sink);
+        f.thread.start();
+        return f;
+    }
+
+    // Console: java LogTail [-n lines] [-f] <file>
+    public static void main(String[] args) throws Exception {
+        int n = 50;
+        boolean follow = false;
+        String file = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-n" -> n = Integer.parseInt(args[++i]);
+                case "-f" -> follow = true;
+                default -> file = args[i];
+            }
+        }
+        if (file == null) {
+            System.out.println("Usage: java LogTail [-n lines] [-f] <file>");
+            return;
+        }
+        lastLines(file, n, System.out::println);
+        if (follow) {
+            follow(file, 500, System.out::println);
+            Thread.currentThread().join();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.IntStream;
+
+/*
+ * Precomputed road distances from every graph node to every parking-lot node.
+ * One column per distinct lot node, filled by a Dijkstra sweep from that node (roads
+ * are two-way, so this is the reverse search). Stored node-major in a dense float[]
+ * so a recommendation reads one contiguous row.
+ * Lookups are optimistic reads that never block unless addLot/onEdgeAdded is reshaping
+ * the table at that moment. Sizes are computed in long and never exceed maxEntries, which
+ * is itself clamped to what one Java array can hold.
+ */
+public class LotDistanceTable {
+    public static final long MAX_ENTRIES = Integer.MAX_VALUE - 8;
+
+    private final long maxEntries;
+    private CompactGraph graph;
+    private final List<String> columns = new ArrayList<>();
+    private final Map<String, Integer> columnOf = new ConcurrentHashMap<>();
+    private final StampedLock lock = new StampedLock();
+    private float[] table;
+    private int stride;
+
+    public LotDistanceTable(CompactGraph graph, Collection<ParkingLot> lots) {
+        this(graph, lots, MAX_ENTRIES);
+    }
+
+    // Throws IllegalArgumentException when the lots already need more than maxEntries
+    public LotDistanceTable(CompactGraph graph, Collection<ParkingLot> lots, long maxEntries) {
+        this.maxEntries = Math.min(maxEntries, MAX_ENTRIES);
+        this.graph = graph;
+        for (ParkingLot lot : lots) {
+            if (graph.contains(lot.locationName) && !columnOf.containsKey(lot.locationName)) {
+                columnOf.put(lot.locationName, columns.size());
+                columns.add(lot.locationName);
+            }
+        }
+        this.stride = Math.max(1, columns.size());
+        this.table = new float[size(graph.nodeCount(), stride)];
+        computeColumns(IntStream.range(0, columns.size()).toArray());
+    }
+
+    // Entries a table for these lots would hold: one per graph node per distinct lot node
+    public static long entriesFor(CompactGraph graph, Collection<ParkingLot> lots) {
+        Set<String> nodes = new HashSet<>();
+        for (ParkingLot lot : lots) {
+            if (graph.contains(lot.locationName)) nodes.add(lot.locationName);
+        }
+        return (long) graph.nodeCount() * Math.max(1, nodes.size());
+    }
+
+    // Road distance from 'from' to the lot node, or +infinity if unknown or unreachable
+    public double distance(String from, String lotNode) {
+        if (lotNode == null) return Double.POSITIVE_INFINITY;
+        String key = lotNode.toUpperCase();
+        long stamp = lock.tryOptimisticRead();
+        double d = lookup(from, key);
+        if (lock.validate(stamp)) return d;
+        stamp = lock.readLock();
+        try {
+            return lookup(from, key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // May see a table mid-change; distance() only trusts it if the stamp still validates
+    private double lookup(String from, String key) {
+        CompactGraph g = graph;
+        float[] t = table;
+        int s = stride;
+        int node = g.indexOf(from);
+        Integer col = columnOf.get(key);
+        if (node < 0 || col == null || col >= s) return Double.POSITIVE_INFINITY;
+        long i = (long) node * s + col;
+        return i < t.length ? t[(int) i] : Double.POSITIVE_INFINITY;
+    }
+
+    public boolean covers(String lotNode) {
+        return lotNode != null && columnOf.containsKey(lotNode.toUpperCase());
+    }
+
+    public int columnCount() { return columns.size(); }
+
+    // New lot (or a lot moved to a new node): compute only its column. Columns grow by
+    // doubling, clamped to maxEntries; false (table unchanged) when there is no room left.
+    public boolean addLot(ParkingLot lot) {
+        String node = lot.locationName;
+        long stamp = lock.writeLock();
+        try {
+            if (!graph.contains(node) || columnOf.containsKey(node)) return true;
+            if (columns.size() == stride) {
+                int nodes = graph.nodeCount();
+                long room = maxEntries / Math.max(1, nodes);
+                int grown = (int) Math.min((long) stride * 2, room);
+                if (grown <= stride) return false;
+                resize(nodes, grown);
+            }
+            columnOf.put(node, columns.size());
+            columns.add(node);
+            computeColumns(new int[]{columns.size() - 1});
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // A road u-v was added and 'newGraph' already contains it. Only columns where the
+    // new edge is a shortcut for one endpoint can change; everything else is kept.
+    // Returns the columns recomputed, or -1 (table unchanged) if its new nodes would take
+    // it past maxEntries.
+    public int onEdgeAdded(CompactGraph newGraph, String from, String to, double weight) {
+        long stamp = lock.writeLock();
+        try {
+            if ((long) newGraph.nodeCount() * stride > maxEntries) return -1;
+            return refreshColumns(newGraph, from, to, weight);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int refreshColumns(CompactGraph newGraph, String from, String to, double weight) {
+        int oldNodes = graph.nodeCount();
+        this.graph = newGraph;
+        if (newGraph.nodeCount() != oldNodes) resize(newGraph.nodeCount(), stride);
+
+        int u = newGraph.indexOf(from);
+        int v = newGraph.indexOf(to);
+        List<Integer> affected = new ArrayList<>();
+        for (int c = 0; c < columns.size(); c++) {
+            double du = table[u * stride + c];
+            double dv = table[v * stride + c];
+            if (du + weight < dv || dv + weight < du) affected.add(c);
+        }
+        computeColumns(affected.stream().mapToInt(Integer::intValue).toArray());
+        return affected.size();
+    }
+
+    private void resize(int nodes, int newStride) {
+        float[] grown = new float[size(nodes, newStride)];
+        Arrays.fill(grown, Float.POSITIVE_INFINITY);
+        int oldNodes = table.length / stride;
+        for (int n = 0; n < oldNodes; n++) {
+            System.arraycopy(table, n * stride, grown, n * newStride, columns.size());
+        }
+        this.table = grown;
+        this.stride = newStride;
+    }
+
+    private int size(int nodes, int columnsPerNode) {
+        long entries = (long) nodes * columnsPerNode;
+        if (entries > maxEntries) {
+            throw new IllegalArgumentException("Lot distance table needs " + entries + " entries (limit " + maxEntries + ")");
+        }
+        return (int) entries;
+    }
+
+    // Sweeps are independent, so columns are filled in parallel with one engine per worker
+    private void computeColumns(int[] cols) {
+        ThreadLocal<Dijkstra> engines = ThreadLocal.withInitial(() -> new Dijkstra(graph));
+        IntStream.of(cols).parallel().forEach(c -> {
+            Dijkstra.Result res = engines.get().shortestPath(columns.get(c));
+            for (int n = 0; n < graph.nodeCount(); n++) {
+                table[n * stride + c] = (float) res.distanceTo(n);
+            }
+        });
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * Single source of truth for which lots exist.
+ * id -> lot and location -> lots are hash lookups, and every lot gets a dense int handle
+ * (reused after removal) so hot paths can keep per-lot state in plain arrays indexed by
+ * handle. Reads are lock-free; add/remove/rename are serialized and touch only the
+ * affected entries.
+ */
+public class LotRegistry {
+    private final Map<String, ParkingLot> byId = new ConcurrentHashMap<>();
+    private final Map<String, List<ParkingLot>> byLocation = new ConcurrentHashMap<>();
+    private final Map<String, Integer> handles = new ConcurrentHashMap<>();
+    private final List<ParkingLot> ordered = new CopyOnWriteArrayList<>();
+    private final ArrayDeque<Integer> freeHandles = new ArrayDeque<>();
+    private volatile ParkingLot[] byHandle = new ParkingLot[16];
+    private int nextHandle;
+
+    public LotRegistry(Collection<ParkingLot> lots) {
+        if (lots != null) for (ParkingLot lot : lots) add(lot);
+    }
+
+    // Returns the new lot's handle
+    public synchronized int add(ParkingLot lot) {
+        if (byId.containsKey(lot.id)) throw new IllegalArgumentException("Duplicate lot id: " + lot.id);
+        int handle = freeHandles.isEmpty() ? nextHandle++ : freeHandles.poll();
+        if (handle >= byHandle.length) byHandle = Arrays.copyOf(byHandle, byHandle.length * 2);
+        byHandle[handle] = lot;
+        handles.put(lot.id, handle);
+        byId.put(lot.id, lot);
+        byLocation.computeIfAbsent(lot.locationName, k -> new CopyOnWriteArrayList<>()).add(lot);
+        ordered.add(lot);
+        return handle;
+    }
+
+    // The removed lot, or null if unknown; its handle may be reused by a later add
+    public synchronized ParkingLot remove(String lotId) {
+        ParkingLot lot = byId.remove(lotId);
+        if (lot == null) return null;
+        int handle = handles.remove(lotId);
+        byHandle[handle] = null;
+        freeHandles.add(handle);
+        List<ParkingLot> atLocation = byLocation.get(lot.locationName);
+        if (atLocation != null) {
+            atLocation.remove(lot);
+            if (atLocation.isEmpty()) byLocation.remove(lot.locationName);
+        }
+        ordered.remove(lot);
+        return lot;
+    }
+
+    // Changes the lot's id in place; its handle stays the same
+    public synchronized boolean rename(String oldId, String newId) {
+        if (byId.containsKey(newId)) return false;
+        ParkingLot lot = byId.remove(oldId);
+        if (lot == null) return false;
+        lot.id = newId;
+        byId.put(newId, lot);
+        handles.put(newId, handles.remove(oldId));
+        return true;
+    }
+
+    public ParkingLot get(String lotId) {
+        return lotId == null ? null : byId.get(lotId);
+    }
+
+    public List<ParkingLot> atLocation(String locationName) {
+        if (locationName == null) return Collections.emptyList();
+        return byLocation.getOrDefault(locationName.toUpperCase(), Collections.emptyList());
+    }
+
+    // Dense handle for the lot, or -1 if unknown
+    public int handleOf(String lotId) {
+        Integer h = lotId == null ? null : handles.get(lotId);
+        return h == null ? -1 : h;
+    }
+
+    public ParkingLot lot(int handle) {
+        ParkingLot[] table = byHandle;
+        return handle >= 0 && handle < table.length ? table[handle] : null;
+    }
+
+    // Upper bound on handles handed out so far; size per-handle arrays with this
+    public synchronized int handleCapacity() {
+        return nextHandle;
+    }
+
+    // Live read-only view in registration order; safe to iterate while lots change
+    public List<ParkingLot> all() {
+        return Collections.unmodifiableList(ordered);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/*
+ * Keeps every lot with a free slot in an indexed binary heap ordered by the assign
+ * policy, so auto-assign reads the best lot in O(1) and a lot whose availability
+ * changed is re-keyed in O(log n). Heap positions are indexed by registry handle;
+ * full lots drop out of the heap and come back when a slot frees up.
+ */
+public class LotSelector {
+
+    // Lower key wins; tieBreak orders lots with equal keys, then the registry handle
+    public interface Policy {
+        double key(ParkingLot lot);
+
+        double tieBreak(ParkingLot lot);
+    }
+
+    public static final Policy MOST_FREE = new Policy() {
+        public double key(ParkingLot lot) { return -lot.availableSlots(); }
+        public double tieBreak(ParkingLot lot) { return -lot.rating; }
+    };
+
+    public static final Policy BEST_RATED = new Policy() {
+        public double key(ParkingLot lot) { return -lot.rating; }
+        public double tieBreak(ParkingLot lot) { return -lot.availableSlots(); }
+    };
+
+    public static final Policy CHEAPEST = new Policy() {
+        public double key(ParkingLot lot) { return lot.costPerHour; }
+        public double tieBreak(ParkingLot lot) { return -lot.rating; }
+    };
+
+    // 'distance' gives each lot's distance from the entry gate; unreachable lots sort last
+    public static Policy nearestTo(ToDoubleFunction<ParkingLot> distance) {
+        return new Policy() {
+            public double key(ParkingLot lot) {
+                double d = distance.applyAsDouble(lot);
+                return d < 0 || Double.isNaN(d) ? Double.POSITIVE_INFINITY : d;
+            }
+            public double tieBreak(ParkingLot lot) { return -lot.availableSlots(); }
+        };
+    }
+
+    private final LotRegistry registry;
+    private Policy policy;
+    private int[] heap = new int[16];    // heap slot -> lot handle
+    private int[] pos = new int[16];     // lot handle -> heap slot, -1 if full or unknown
+    private double[] keys = new double[16];
+    private double[] ties = new double[16];
+    private int size;
+    private volatile ParkingLot best;
+
+    public LotSelector(LotRegistry registry, Policy policy) {
+        this.registry = registry;
+        Arrays.fill(pos, -1);
+        setPolicy(policy);
+    }
+
+    // Re-key every lot under a new policy
+    public synchronized void setPolicy(Policy policy) {
+        this.policy = policy != null ? policy : MOST_FREE;
+        for (int i = 0; i < size; i++) pos[heap[i]] = -1;
+        size = 0;
+        for (ParkingLot lot : registry.all()) update(lot);
+        publish();
+    }
+
+    public synchronized Policy getPolicy() {
+        return policy;
+    }
+
+    // Best lot with a free slot under the current policy, or null when every lot is full
+    public ParkingLot best() {
+        return best;
+    }
+
+    // Best lot with a free slot that also passes 'filter'; this scans every such lot
+    public synchronized ParkingLot best(Predicate<ParkingLot> filter) {
+        int found = -1;
+        for (int i = 0; i < size; i++) {
+            int handle = heap[i];
+            if ((found < 0 || before(handle, found)) && filter.test(registry.lot(handle))) found = handle;
+        }
+        return found < 0 ? null : registry.lot(found);
+    }
+
+    // Call after a lot's availability (or anything the policy reads) may have changed
+    public synchronized void update(ParkingLot lot) {
+        if (lot == null) return;
+        int handle = registry.handleOf(lot.id);
+        if (handle < 0) return;
+        ensureCapacity(handle + 1);
+        int p = pos[handle];
+        if (lot.availableSlots() <= 0) {
+            if (p >= 0) removeAt(p);
+        } else if (p < 0) {
+            keys[handle] = policy.key(lot);
+            ties[handle] = policy.tieBreak(lot);
+            heap[size] = handle;
+            pos[handle] = size;
+            siftUp(size++);
+        } else {
+            keys[handle] = policy.key(lot);
+            ties[handle] = policy.tieBreak(lot);
+            siftUp(p);
+            siftDown(pos[handle]);
+        }
+        publish();
+    }
+
+    // Drop the lot holding 'handle'; call before the handle is released for reuse
+    public synchronized void remove(int handle) {
+        if (handle < 0 || handle >= pos.length || pos[handle] < 0) return;
+        removeAt(pos[handle]);
+        publish();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void publish() {
+        best = size == 0 ? null : registry.lot(heap[0]);
+    }
+
+    private void removeAt(int p) {
+        int handle = heap[p];
+        pos[handle] = -1;
+        if (--size == p) return;
+        int last = heap[size];
+        heap[p] = last;
+        pos[last] = p;
+        siftUp(p);
+        siftDown(pos[last]);
+    }
+
+    private boolean before(int a, int b) {
+        if (keys[a] != keys[b]) return keys[a] < keys[b];
+        if (ties[a] != ties[b]) return ties[a] < ties[b];
+        return a < b;
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int pid = heap[parent];
+            if (!before(id, pid)) break;
+            heap[i] = pid;
+            pos[pid] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && before(heap[right], heap[child])) child = right;
+            int cid = heap[child];
+            if (!before(cid, id)) break;
+            heap[i] = cid;
+            pos[cid] = i;
+            i = child;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= pos.length) return;
+        int cap = Math.max(n, pos.length * 2);
+        int old = pos.length;
+        heap = Arrays.copyOf(heap, cap);
+        pos = Arrays.copyOf(pos, cap);
+        Arrays.fill(pos, old, cap, -1);
+        keys = Arrays.copyOf(keys, cap);
+        ties = Arrays.copyOf(ties, cap);
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.*;
+
+/*
+ * Uniform lat/lon grid over parking lots for radius and k-nearest queries by
+ * straight-line (haversine) distance. Each cell also counts its currently available
+ * lots, so availability-filtered queries skip full cells without touching them;
+ * refresh(lot) keeps those counts current when a lot fills up or frees a slot.
+ */
+public class LotSpatialIndex {
+    private static final double KM_PER_DEGREE = 111.19;
+
+    // Query filter; unset flags match everything
+    public static class Filter {
+        public boolean availableOnly;
+        public boolean evCharging;
+        public boolean covered;
+        public boolean secure;
+        public boolean valet;
+        public String excludeLocation;
+
+        public static Filter available() {
+            Filter f = new Filter();
+            f.availableOnly = true;
+            return f;
+        }
+
+        // The amenity flags as AvailabilityStats amenity bits
+        public int required() {
+            return (secure ? 1 << AvailabilityStats.SECURE : 0) | (covered ? 1 << AvailabilityStats.COVERED : 0)
+                    | (evCharging ? 1 << AvailabilityStats.EV_CHARGING : 0) | (valet ? 1 << AvailabilityStats.VALET : 0);
+        }
+
+        public boolean matches(ParkingLot lot) {
+            return (!availableOnly || lot.availableSlots() > 0)
+                    && lot.hasAll(required())
+                    && (excludeLocation == null || !lot.locationName.equalsIgnoreCase(excludeLocation));
+        }
+    }
+
+    private static class Cell {
+        final List<ParkingLot> lots = new ArrayList<>();
+        int available;
+    }
+
+    private static class Entry {
+        long cell;
+        boolean available;
+    }
+
+    private final double cellDeg;
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private int minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+    private int minCol = Integer.MAX_VALUE, maxCol = Integer.MIN_VALUE;
+
+    public LotSpatialIndex(Collection<ParkingLot> lots, double cellDeg) {
+        this.cellDeg = cellDeg > 0 ? cellDeg : 0.01;
+        for (ParkingLot lot : lots) add(lot);
+    }
+
+    public synchronized void add(ParkingLot lot) {
+        if (entries.containsKey(lot.id)) remove(lot);
+        int row = row(lot.lat);
+        int col = col(lot.lon);
+        Entry e = new Entry();
+        e.cell = key(row, col);
+        e.available = lot.availableSlots() > 0;
+        entries.put(lot.id, e);
+        Cell cell = cells.computeIfAbsent(e.cell, k -> new Cell());
+        cell.lots.add(lot);
+        if (e.available) cell.available++;
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+    }
+
+    public synchronized void remove(ParkingLot lot) {
+        Entry e = entries.remove(lot.id);
+        if (e == null) return;
+        Cell cell = cells.get(e.cell);
+        cell.lots.removeIf(l -> l.id.equals(lot.id));
+        if (e.available) cell.available--;
+        if (cell.lots.isEmpty()) cells.remove(e.cell);
+    }
+
+    // The lot object keeps its cell; only the id key moves
+    public synchronized void rename(String oldId, String newId) {
+        Entry e = entries.remove(oldId);
+        if (e != null) entries.put(newId, e);
+    }
+
+    // Call after a lot's availability may have changed; O(1) unless the lot moved
+    public synchronized void refresh(ParkingLot lot) {
+        Entry e = entries.get(lot.id);
+        if (e == null || e.cell != key(row(lot.lat), col(lot.lon))) {
+            add(lot);
+            return;
+        }
+        boolean now = lot.availableSlots() > 0;
+        if (now != e.available) {
+            e.available = now;
+            cells.get(e.cell).available += now ? 1 : -1;
+        }
+    }
+
+    // Up to k lots matching 'filter', nearest first
+    public synchronized List<ParkingLot> kNearest(double lat, double lon, int k, Filter filter) {
+        List<ParkingLot> result = new ArrayList<>();
+        if (k <= 0 || cells.isEmpty()) return result;
+        PriorityQueue<double[]> best = new PriorityQueue<>((a, b) -> Double.compare(b[0], a[0])); // max-heap of {dist, seq}
+        List<ParkingLot> seen = new ArrayList<>();
+        int row0 = row(lat), col0 = col(lon);
+        double cellKm = minCellKm(lat);
+        int maxRing = Math.max(Math.max(Math.abs(row0 - minRow), Math.abs(row0 - maxRow)),
+                Math.max(Math.abs(col0 - minCol), Math.abs(col0 - maxCol)));
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Every lot in this ring or beyond is at least (ring - 1) cells away
+            if (best.size() == k && (ring - 1) * cellKm > best.peek()[0]) break;
+            for (int r = row0 - ring; r <= row0 + ring; r++) {
+                // Full top and bottom rows of the ring, only the two side cells in between
+                int step = (r == row0 - ring || r == row0 + ring) ? 1 : Math.max(1, 2 * ring);
+                for (int c = col0 - ring; c <= col0 + ring; c += step) {
+                    Cell cell = cells.get(key(r, c));
+                    if (cell == null || (filter != null && filter.availableOnly && cell.available == 0)) continue;
+                    for (ParkingLot lot : cell.lots) {
+                        if (filter != null && !filter.matches(lot)) continue;
+                        double d = GeoUtil.haversine(lat, lon, lot.lat, lot.lon);
+                        if (best.size() < k) {
+                            best.add(new double[]{d, seen.size()});
+                            seen.add(lot);
+                        } else if (d < best.peek()[0]) {
+                            best.poll();
+                            best.add(new double[]{d, seen.size()});
+                            seen.add(lot);
+                        }
+                    }
+                }
+            }
+        }
+        List<double[]> ordered = new ArrayList<>(best);
+        ordered.sort(Comparator.comparingDouble(a -> a[0]));
+        for (double[] a : ordered) result.add(seen.get((int) a[1]));
+        return result;
+    }
+
+    // Lots matching 'filter' within 'km' straight-line distance, nearest first
+    public synchronized List<ParkingLot> withinRadius(double lat, double lon, double km, Filter filter) {
+        List<ParkingLot> result = new ArrayList<>();
+        if (cells.isEmpty()) return result;
+        double dLat = km / KM_PER_DEGREE;
+        double dLon = km / (KM_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(Math.min(89, Math.abs(lat) + dLat)))));
+        int r0 = Math.max(minRow, row(lat - dLat)), r1 = Math.min(maxRow, row(lat + dLat));
+        int c0 = Math.max(minCol, col(lon - dLon)), c1 = Math.min(maxCol, col(lon + dLon));
+        Map<ParkingLot, Double> dist = new HashMap<>();
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                Cell cell = cells.get(key(r, c));
+                if (cell == null || (filter != null && filter.availableOnly && cell.available == 0)) continue;
+                for (ParkingLot lot : cell.lots) {
+                    if (filter != null && !filter.matches(lot)) continue;
+                    double d = GeoUtil.haversine(lat, lon, lot.lat, lot.lon);
+                    if (d <= km) {
+                        result.add(lot);
+                        dist.put(lot, d);
+                    }
+                }
+            }
+        }
+        result.sort(Comparator.comparingDouble(dist::get));
+        return result;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor(lat / cellDeg);
+    }
+
+    private int col(double lon) {
+        return (int) Math.floor(lon / cellDeg);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    // Narrowest cell dimension near 'lat' in km (longitude cells shrink away from the equator)
+    private double minCellKm(double lat) {
+        double widest = Math.min(89, Math.abs(lat) + 1);
+        return cellDeg * KM_PER_DEGREE * Math.cos(Math.toRadians(widest));
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Size-bounded LRU distance cache with optional TTL.
+ * Entries are spread over lock-striped segments, each an access-ordered LinkedHashMap,
+ * so concurrent callers only contend when they hash to the same segment.
+ */
+public class LruDistanceCache implements DistanceCache {
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final long ttlMillis;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static class Entry {
+        final double distance;
+        final long expiresAt;
+
+        Entry(double distance, long expiresAt) {
+            this.distance = distance;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private class Segment extends LinkedHashMap<Long, Entry> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    // ttlMillis <= 0 disables expiry
+    public LruDistanceCache(int maxEntries, long ttlMillis) {
+        int perSegment = Math.max(1, maxEntries / SEGMENTS);
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(perSegment);
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public Double get(int a, int b) {
+        long key = DistanceCache.key(a, b);
+        Segment seg = segmentFor(key);
+        synchronized (seg) {
+            Entry e = seg.get(key);
+            if (e != null && ttlMillis > 0 && e.expiresAt < System.currentTimeMillis()) {
+                seg.remove(key);
+                evictions.increment();
+                e = null;
+            }
+            if (e == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return e.distance;
+        }
+    }
+
+    @Override
+    public void put(int a, int b, double distance) {
+        long key = DistanceCache.key(a, b);
+        long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        Segment seg = segmentFor(key);
+        synchronized (seg) {
+            seg.put(key, new Entry(distance, expiresAt));
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                seg.clear();
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        long total = 0;
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                total += seg.size();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long hitCount() { return hits.sum(); }
+
+    @Override
+    public long missCount() { return misses.sum(); }
+
+    @Override
+    public long evictionCount() { return evictions.sum(); }
+
+    private Segment segmentFor(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (h >>> 60) & (SEGMENTS - 1)];
+    }
+}
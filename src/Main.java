@@ -1,3 +1,8 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 public class Main {
@@ -8,18 +13,72 @@ public class Main {
     private static final String WAITLIST_FILE = DATA_DIR + "/waitlist.txt";
     private static final String LOG_FILE = DATA_DIR + "/vehicle_log.txt";
     private static final String USER_FILE = DATA_DIR + "/users.txt";
+    private static final String CH_FILE = DATA_DIR + "/city_graph.ch";
+    private static final String GRAPH_SNAPSHOT_FILE = DATA_DIR + "/city_graph.bin";
+    private static final String FACILITY_FILE = DATA_DIR + "/facilities.txt";
+    private static final String FACILITY_SNAPSHOT_FILE = DATA_DIR + "/facilities.bin";
+    private static final String EVENT_DIR = DATA_DIR + "/events";
+    private static final String JOURNAL_FILE = DATA_DIR + "/reservations.journal";
+    private static final String RESERVATION_SNAPSHOT_FILE = DATA_DIR + "/reservations.snapshot";
 
     public static void main(String[] args) throws Exception {
         GeoDB.load(LOCATION_FILE);
         System.out.println("DEBUG: Locations loaded -> " + GeoDB.availableNames());
 
         List<ParkingLot> lots = FileUtil.loadParkingLots(PARKING_FILE);
-        Map<String, List<Dijkstra.Edge>> graph = FileUtil.loadGraph(GRAPH_FILE);
+        CompactGraph graph = FileUtil.loadCompactGraph(GRAPH_FILE, GRAPH_SNAPSHOT_FILE);
         WaitlistManager waitlist = new WaitlistManager(WAITLIST_FILE);
-        LogManager logger = new LogManager(LOG_FILE);
+        LogManager logger = new LogManager(LOG_FILE,
+                Integer.getInteger("parking.log.capacity", 8192),
+                LogManager.Backpressure.valueOf(System.getProperty("parking.log.policy", "BLOCK").toUpperCase()),
+                Long.getLong("parking.log.flushMillis", 200L),
+                new EventLog(EVENT_DIR));
         ParkingManager manager = new ParkingManager(lots, graph, waitlist, logger);
+        manager.setSearchRadiusKm(Double.parseDouble(System.getProperty("parking.searchRadiusKm", "0")));
+        manager.loadFacilities(FACILITY_FILE, FACILITY_SNAPSHOT_FILE);
+        manager.setCandidateLimit(Integer.getInteger("parking.recommend.candidates", 64));
+        manager.setScoreWeights(ScoringKernel.Weights.parse(
+                System.getProperty("parking.score.weights", ScoringKernel.DEFAULT_WEIGHTS.toString())));
+        manager.setDistanceCache(new LruDistanceCache(
+                Integer.getInteger("parking.distanceCache.maxEntries", 100_000),
+                Long.getLong("parking.distanceCache.ttlSeconds", 0L) * 1000));
+        ParkingManager.RoutingMode routing = ParkingManager.RoutingMode.valueOf(
+                System.getProperty("parking.routing", "ASTAR").toUpperCase());
+        manager.setRoutingMode(routing);
+        if (routing == ParkingManager.RoutingMode.CH) {
+            if (!manager.useContractionHierarchy(CH_FILE)) {
+                ConsolePresenter.warning("Contraction hierarchy unavailable, using A* (details in the log)");
+            }
+        }
+        manager.setLotDistanceLimit(Long.getLong("parking.precomputeLotDistances.maxEntries", 25_000_000L));
+        if (Boolean.parseBoolean(System.getProperty("parking.precomputeLotDistances", "true"))
+                && !manager.precomputeLotDistances()) {
+            ConsolePresenter.warning("Lot distance table over its entry limit; using the distance cache instead.");
+        }
+        ParkingManager.AssignPolicy policy = ParkingManager.AssignPolicy.valueOf(
+                System.getProperty("parking.assignPolicy", "MOST_FREE").toUpperCase());
+        String gate = System.getProperty("parking.gate");
+        if (manager.setAssignPolicy(policy, gate) != policy) {
+            ConsolePresenter.warning("NEAREST_GATE needs a gate node on the road graph (got " + gate + "); using MOST_FREE");
+        }
+        int replayed = manager.recoverFromJournal(new ReservationJournal(JOURNAL_FILE, RESERVATION_SNAPSHOT_FILE,
+                Long.getLong("parking.journal.syncMillis", 50L),
+                Integer.getInteger("parking.journal.compactEvery", 10_000)));
+        ConsolePresenter.recovery(manager, replayed);
         UserManager userManager = new UserManager(USER_FILE);
 
+        // Headless service mode: --server [port] or -Dparking.server.port=8080
+        int serverPort = Integer.getInteger("parking.server.port", -1);
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--server")) {
+                serverPort = i + 1 < args.length ? Integer.parseInt(args[i + 1]) : 8080;
+            }
+        }
+        if (serverPort >= 0) {
+            runServer(manager, waitlist, logger, serverPort);
+            return;
+        }
+
         Scanner sc = new Scanner(System.in);
         System.out.println("\n=== 🅿️ SMART PARKING SYSTEM 🚗 ===\n");
 
@@ -36,11 +95,12 @@ public class Main {
             switch (choice) {
                 case "1" -> login(sc, userManager, manager, waitlist, logger);
                 case "2" -> register(sc, userManager);
-                case "3" -> manager.printStatistics();
+                case "3" -> ConsolePresenter.statistics(manager);
                 case "4" -> {
                     System.out.println("👋 Exiting Smart Parking System.");
-                    manager.persistParkingData(PARKING_FILE);
-                    waitlist.persist();
+                    saveState(manager);
+                    waitlist.close();
+                    logger.close();
                     running = false;
                 }
                 default -> System.out.println("❌ Invalid choice. Please enter 1, 2, 3, or 4.");
@@ -49,6 +109,26 @@ public class Main {
         sc.close();
     }
 
+    // Serve the HTTP API until the process is stopped; state is saved by a shutdown hook
+    private static void runServer(ParkingManager manager, WaitlistManager waitlist, LogManager logger,
+                                  int port) throws Exception {
+        ParkingServer server = new ParkingServer(manager, port, Boolean.getBoolean("parking.server.admin"));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("👋 Stopping parking service.");
+            server.stop(2);
+            saveState(manager);
+            waitlist.close();
+            logger.close();
+        }));
+        server.start();
+        Thread.currentThread().join(); // the HTTP threads do the work
+    }
+
+    private static void saveState(ParkingManager manager) {
+        ConsolePresenter.dataSaved(manager.persistParkingData(PARKING_FILE));
+        if (!manager.closeJournal()) ConsolePresenter.error("Error closing journal (details in the log)");
+    }
+
     private static void login(Scanner sc, UserManager userManager, ParkingManager manager,
                               WaitlistManager waitlist, LogManager logger) {
         System.out.print("Enter username: ");
@@ -108,9 +188,9 @@ public class Main {
                 case "1" -> {
                     System.out.print("Enter vehicle number to search: ");
                     String vnSearch = sc.nextLine().trim().toUpperCase();
-                    int slot = manager.searchVehicle(vnSearch);
+                    int slot = ConsolePresenter.vehicle(manager, vnSearch);
                     if (slot == -1) System.out.println("❌ Vehicle not found.");
-                    else System.out.println("🚗 Vehicle found at slot: " + slot);
+                    else System.out.println("🚗 Vehicle found at bay: " + slot);
                 }
 
                 case "2" -> smartParkingRecommendation(sc, manager, logger);
@@ -134,35 +214,37 @@ public class Main {
                     for (int i = 0; i < availableLots.size(); i++) {
                         ParkingLot lot = availableLots.get(i);
                         System.out.printf("%d. %s | %s | Available: %d/%d | Rating: %.1f%n",
-                            i + 1, lot.id, lot.locationName, lot.availableSlots, 
+                            i + 1, lot.id, lot.locationName, lot.availableSlots(), 
                             lot.totalSlots, lot.rating);
                     }
                     
                     System.out.print("Enter parking lot ID to reserve at (or press Enter for auto-assign): ");
                     String lotId = sc.nextLine().trim();
                     
-                    boolean ok;
+                    ParkingManager.ReservationResult result;
                     if (lotId.isEmpty()) {
-                        ok = manager.reserveVehicle(vnBook);
+                        System.out.print("Required amenities - S=Security E=EV-Charging C=Covered V=Valet (Enter for none): ");
+                        result = manager.reserveVehicle(vnBook, AvailabilityStats.parseAmenities(sc.nextLine()));
                     } else {
-                        ok = manager.reserveVehicleAtLot(vnBook, lotId);
+                        result = manager.reserveVehicleAtLot(vnBook, lotId);
                     }
+                    ConsolePresenter.reservation(manager, result);
                     
-                    System.out.println(ok ? "✅ Vehicle reserved successfully." : "❌ No available slots. Added to waitlist.");
-                    manager.persistParkingData(PARKING_FILE);
+                    System.out.println(result.ok() ? "✅ Vehicle reserved successfully." : "❌ No available slots. Added to waitlist.");
                 }
 
                 case "4" -> {
                     System.out.print("Enter vehicle number to free: ");
                     String vnCancel = sc.nextLine().trim().toUpperCase();
-                    boolean okFree = manager.freeByVehicle(vnCancel);
+                    ParkingManager.ReservationResult freed = manager.freeByVehicle(vnCancel);
+                    ConsolePresenter.reservation(manager, freed);
+                    boolean okFree = freed.ok();
                     System.out.println(okFree ? "✅ Vehicle freed successfully." : "❌ Vehicle not found or already free.");
-                    manager.persistParkingData(PARKING_FILE);
                 }
 
                 case "5" -> getDirections(sc, manager);
 
-                case "6" -> manager.printParkingStatus();
+                case "6" -> ConsolePresenter.parkingStatus(manager);
 
                 case "7" -> {
                     System.out.println("👋 Logging out from User panel.");
@@ -185,9 +267,9 @@ public class Main {
         }
 
         System.out.println("\n🎯 Finding best parking options...");
-        ParkingManager.RouteDetails routeDetails = manager.getDetailedRoute(currentLoc, "ANY_PARKING");
-        
-        ParkingLot recommendedLot = manager.recommendNearestFromLocation(currentLoc);
+        ParkingManager.Recommendation recommendation = manager.recommend(currentLoc);
+        ConsolePresenter.recommendation(recommendation);
+        ParkingLot recommendedLot = recommendation.lot();
         
         if (recommendedLot == null) {
             System.out.println("❌ No suitable parking found.");
@@ -197,11 +279,9 @@ public class Main {
         // Show detailed route to the recommended parking
         System.out.print("\nDo you want detailed directions to this parking? (Y/N): ");
         if (sc.nextLine().trim().equalsIgnoreCase("Y")) {
-            List<String> directions = manager.getDirections(currentLoc, recommendedLot.locationName);
             System.out.println("\n" + "═".repeat(60));
-            for (String direction : directions) {
-                System.out.println(direction);
-            }
+            ConsolePresenter.directions(currentLoc, recommendedLot.locationName,
+                    manager.getDetailedRoute(currentLoc, recommendedLot.locationName));
             System.out.println("═".repeat(60));
         }
 
@@ -209,26 +289,26 @@ public class Main {
         if (sc.nextLine().trim().equalsIgnoreCase("Y")) {
             System.out.print("Enter vehicle number: ");
             String vnBook = sc.nextLine().trim().toUpperCase();
-            if (!vnBook.isEmpty() && manager.reserveVehicleAtLot(vnBook, recommendedLot.id)) {
+            ParkingManager.ReservationResult booked = vnBook.isEmpty() ? null : manager.reserveVehicleAtLot(vnBook, recommendedLot.id);
+            if (booked != null) ConsolePresenter.reservation(manager, booked);
+            if (booked != null && booked.ok()) {
                 System.out.println("✅ Parking booked successfully at " + recommendedLot.locationName);
-                manager.persistParkingData(PARKING_FILE);
                 
                 // Show confirmation with route
                 System.out.print("Show route to parking? (Y/N): ");
                 if (sc.nextLine().trim().equalsIgnoreCase("Y")) {
-                    List<String> finalRoute = manager.getDirections(currentLoc, recommendedLot.locationName);
                     System.out.println("\n" + "🚗 YOUR ROUTE TO PARKING:");
                     System.out.println("═".repeat(50));
-                    for (String step : finalRoute) {
-                        System.out.println(step);
-                    }
+                    ConsolePresenter.directions(currentLoc, recommendedLot.locationName,
+                            manager.getDetailedRoute(currentLoc, recommendedLot.locationName));
                 }
             } else {
                 System.out.println("❌ Failed to book parking. Slot may be taken.");
             }
         }
 
-        logger.log("SMART_RECOMMEND", "User@" + currentLoc + " -> " + recommendedLot.locationName);
+        logger.event(EventLog.Type.SMART_RECOMMEND, null, recommendedLot.id, -1,
+                "User@" + currentLoc + " -> " + recommendedLot.locationName);
     }
 
     private static void getDirections(Scanner sc, ParkingManager manager) {
@@ -237,7 +317,8 @@ public class Main {
         String from = sc.nextLine().trim().toUpperCase();
         System.out.print("Enter destination: ");
         String to = sc.nextLine().trim().toUpperCase();
-        manager.printShortestPathNodes(from, to);
+        ParkingManager.RouteDetails route = manager.getDetailedRoute(from, to);
+        ConsolePresenter.shortestPath(from, to, route);
 
         if (!GeoDB.availableNames().contains(from) || !GeoDB.availableNames().contains(to)) {
             System.out.println("❌ Invalid location(s). Available: " + GeoDB.availableNames());
@@ -245,21 +326,73 @@ public class Main {
         }
 
         System.out.println("\n" + "═".repeat(60));
-        List<String> directions = manager.getDirections(from, to);
-        for (String direction : directions) {
-            System.out.println(direction);
-        }
+        ConsolePresenter.directions(from, to, route);
         System.out.println("═".repeat(60));
         
         // Also show detailed route using RouteDetails
         System.out.print("\nShow detailed route analysis? (Y/N): ");
         if (sc.nextLine().trim().equalsIgnoreCase("Y")) {
-            ParkingManager.RouteDetails routeDetails = manager.getDetailedRoute(from, to);
-            if (!routeDetails.hasError()) {
-                routeDetails.printDetailedRoute();
-            } else {
-                System.out.println("❌ " + routeDetails.getError());
+            ConsolePresenter.routeDetails(route);
+        }
+    }
+
+    private static String amenityNames(int bits) {
+        List<String> names = new ArrayList<>();
+        if ((bits & (1 << AvailabilityStats.SECURE)) != 0) names.add("Security");
+        if ((bits & (1 << AvailabilityStats.EV_CHARGING)) != 0) names.add("EV-Charging");
+        if ((bits & (1 << AvailabilityStats.COVERED)) != 0) names.add("Covered");
+        if ((bits & (1 << AvailabilityStats.VALET)) != 0) names.add("Valet");
+        return String.join(", ", names);
+    }
+
+    private static void viewEventLog(Scanner sc, LogManager logger) {
+        EventLog events = logger.events();
+        if (events == null) {
+            System.out.println("\n--- 📊 RECENT LOGS ---");
+            logger.printLastLines(50);
+            return;
+        }
+        System.out.println("\n--- 📊 EVENT LOG (" + events.size() + " events) ---");
+        System.out.println("1. Last 50 events  2. Time range  3. Vehicle history  4. Follow live log");
+        System.out.print("Choice (Enter for 1): ");
+        String choice = sc.nextLine().trim();
+        try {
+            List<EventLog.Event> result;
+            switch (choice) {
+                case "2" -> {
+                    DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+                    System.out.print("From (yyyy-MM-dd HH:mm): ");
+                    long from = LocalDateTime.parse(sc.nextLine().trim(), fmt)
+                            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    System.out.print("To (yyyy-MM-dd HH:mm, Enter for now): ");
+                    String toText = sc.nextLine().trim();
+                    long to = toText.isEmpty() ? System.currentTimeMillis()
+                            : LocalDateTime.parse(toText, fmt).atZone(ZoneId.systemDefault())
+                                    .toInstant().toEpochMilli() + 59_999;
+                    result = events.range(from, to);
+                }
+                case "3" -> {
+                    System.out.print("Vehicle number: ");
+                    result = events.history(sc.nextLine().trim().toUpperCase());
+                }
+                case "4" -> {
+                    System.out.println("Following live log, press Enter to stop...");
+                    LogTail.Follower follower = logger.follow(System.out::println);
+                    try {
+                        sc.nextLine();
+                    } finally {
+                        follower.close();
+                    }
+                    return;
+                }
+                default -> result = events.tail(50);
             }
+            if (result.isEmpty()) System.out.println("No matching events");
+            for (EventLog.Event e : result) System.out.println(e);
+        } catch (DateTimeParseException e) {
+            System.out.println("❌ Invalid date: " + e.getParsedString());
+        } catch (Exception e) {
+            System.out.println("❌ Error reading event log: " + e.getMessage());
         }
     }
 
@@ -272,11 +405,12 @@ public class Main {
             System.out.println("3️⃣ Display Parking Status");
             System.out.println("4️⃣ Emergency Free Slot");
             System.out.println("5️⃣ View Waitlist");
-            System.out.println("6️⃣ View Logs (last 50 lines)");
+            System.out.println("6️⃣ View Event Log");
             System.out.println("7️⃣ Add New User/Admin");
             System.out.println("8️⃣ System Statistics");
             System.out.println("9️⃣ Clear Distance Cache");
             System.out.println("🔟 Get Directions (Admin)");
+            System.out.println("1️⃣1️⃣ Reload Facilities & Pricing");
             System.out.println("⏸️ Logout");
             System.out.print("Choice: ");
             String choice = sc.nextLine().trim();
@@ -289,43 +423,60 @@ public class Main {
                     System.out.print("Enter specific parking lot ID (or press Enter for auto-assign): ");
                     String lotId = sc.nextLine().trim();
                     
-                    boolean added;
+                    ParkingManager.ReservationResult result;
                     if (lotId.isEmpty()) {
-                        added = manager.reserveVehicle(vnAdd);
+                        result = manager.reserveVehicle(vnAdd);
                     } else {
-                        added = manager.reserveVehicleAtLot(vnAdd, lotId);
+                        result = manager.reserveVehicleAtLot(vnAdd, lotId);
                     }
+                    ConsolePresenter.reservation(manager, result);
                     
-                    System.out.println(added ? "✅ Vehicle added successfully." : "❌ No available slots.");
-                    manager.persistParkingData(PARKING_FILE);
+                    System.out.println(result.ok() ? "✅ Vehicle added successfully." : "❌ No available slots.");
                 }
                 
                 case "2" -> {
                     System.out.print("Enter vehicle number to free: ");
                     String vnFree = sc.nextLine().trim().toUpperCase();
-                    boolean freed = manager.freeByVehicle(vnFree);
-                    System.out.println(freed ? "✅ Vehicle freed successfully." : "❌ Vehicle not found.");
-                    manager.persistParkingData(PARKING_FILE);
+                    ParkingManager.ReservationResult freed = manager.freeByVehicle(vnFree);
+                    ConsolePresenter.reservation(manager, freed);
+                    System.out.println(freed.ok() ? "✅ Vehicle freed successfully." : "❌ Vehicle not found.");
                 }
                 
-                case "3" -> manager.printParkingStatus();
+                case "3" -> ConsolePresenter.parkingStatus(manager);
                 
-                case "4" -> manager.emergencyFreeSlot(sc);
+                case "4" -> {
+                    System.out.print("Enter parking lot ID to emergency free: ");
+                    String lotId = sc.nextLine().trim();
+                    ConsolePresenter.emergency(lotId, manager.emergencyFree(lotId));
+                }
                 
                 case "5" -> {
                     System.out.println("\n--- 📋 WAITLIST STATUS ---");
-                    System.out.println("Waitlisted vehicles: " + (waitlist.isEmpty() ? "None" : waitlist.snapshot()));
-                    System.out.println("Waitlist size: " + waitlist.snapshot().size());
+                    List<WaitlistManager.Entry> entries = waitlist.entries();
+                    if (entries.isEmpty()) System.out.println("Waitlisted vehicles: None");
+                    DateTimeFormatter waitFmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+                    for (int i = 0; i < entries.size(); i++) {
+                        WaitlistManager.Entry e = entries.get(i);
+                        String target = e.lotId() != null ? "lot " + e.lotId()
+                                : e.amenities() != 0 ? "any lot with " + amenityNames(e.amenities()) : "any lot";
+                        System.out.printf("%d. %s | waiting for %s | since %s%n", i + 1, e.vehicle, target,
+                                waitFmt.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(e.enqueuedAt), ZoneId.systemDefault())));
+                    }
+                    System.out.println("Waitlist size: " + entries.size());
+                    if (!entries.isEmpty()) {
+                        System.out.print("Enter vehicle number to cancel (or press Enter to go back): ");
+                        String vnCancel = sc.nextLine().trim();
+                        if (!vnCancel.isEmpty()) {
+                            System.out.println(manager.cancelWaitlist(vnCancel) ? "✅ Removed from waitlist." : "❌ Vehicle is not on the waitlist.");
+                        }
+                    }
                 }
                 
-                case "6" -> {
-                    System.out.println("\n--- 📊 RECENT LOGS ---");
-                    logger.printLastLines(50);
-                }
+                case "6" -> viewEventLog(sc, logger);
                 
                 case "7" -> register(sc, userManager);
                 
-                case "8" -> manager.printStatistics();
+                case "8" -> ConsolePresenter.statistics(manager);
                 
                 case "9" -> {
                     manager.clearCache();
@@ -334,12 +485,21 @@ public class Main {
                 
                 case "10" -> getDirections(sc, manager);
                 
+                case "11" -> {
+                    try {
+                        int lots = manager.reloadFacilities();
+                        System.out.println("✅ Facilities reloaded for " + lots + " lots.");
+                    } catch (Exception e) {
+                        System.out.println("❌ Could not reload facilities: " + e.getMessage());
+                    }
+                }
+                
                 case "0" -> {
                     System.out.println("👋 Logging out from Admin panel.");
                     return;
                 }
                 
-                default -> System.out.println("❌ Invalid choice. Enter 1-10 or 0 to logout.");
+                default -> System.out.println("❌ Invalid choice. Enter 1-11 or 0 to logout.");
             }
         }
     }
@@ -1,64 +1,79 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 public class ParkingLot {
+    public static final double DEFAULT_COST_PER_HOUR = 10.0; // until the facilities file says otherwise
+
+    // Atomic adds to availableSlots; only the lot's SlotMap changes it (see SlotMap)
+    private static final VarHandle AVAILABLE;
+    static {
+        try {
+            AVAILABLE = MethodHandles.lookup().findVarHandle(ParkingLot.class, "availableSlots", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     public String id;
     public String locationName; // Node name in graph (e.g., MGROAD)
     public int totalSlots;
-    public int availableSlots;
+    private volatile int availableSlots; // written only through the lot's SlotMap
     public double rating;
-    public double costPerHour;   // NEW: parking cost
-    public boolean secure;       // NEW: security
-    public boolean covered;      // NEW: covered parking
-    public boolean evCharging;   // NEW: EV charging
-    public boolean valet;        // NEW: valet service
+    public volatile double costPerHour;
+    public volatile int amenities; // bit per AvailabilityStats amenity constant; one write publishes the set
     public double lat, lon;
 
     public ParkingLot(String id, String locationName, int totalSlots, int availableSlots, 
-                      double rating, double costPerHour, boolean secure, boolean covered, 
-                      boolean evCharging, boolean valet, double lat, double lon) {
+                      double rating, double costPerHour, int amenities, double lat, double lon) {
         this.id = id;
         this.locationName = locationName.toUpperCase();
         this.totalSlots = totalSlots;
         this.availableSlots = availableSlots;
         this.rating = rating;
         this.costPerHour = costPerHour;
-        this.secure = secure;
-        this.covered = covered;
-        this.evCharging = evCharging;
-        this.valet = valet;
+        this.amenities = amenities;
         this.lat = lat;
         this.lon = lon;
     }
 
+    public int availableSlots() {
+        return availableSlots;
+    }
+
     public boolean isAvailable() {
         return availableSlots > 0;
     }
 
-    public void occupyOne() {
-        if (availableSlots > 0) availableSlots--;
+    // A bay bit flipped in the lot's SlotMap
+    void addAvailable(int delta) {
+        AVAILABLE.getAndAdd(this, delta);
+    }
+
+    // Free-bay popcount of a freshly built SlotMap
+    void publishAvailable(int available) {
+        availableSlots = available;
     }
 
-    public void freeOne() {
-        if (availableSlots < totalSlots) availableSlots++;
+    // 'amenity' is one of the AvailabilityStats amenity constants
+    public boolean has(int amenity) {
+        return (amenities & 1 << amenity) != 0;
     }
 
-    public void forceFreeAll() {
-        availableSlots = totalSlots;
+    public boolean hasAll(int bits) {
+        return (amenities & bits) == bits;
     }
 
     public double facilityScore() {
-        int score = 0;
-        if (secure) score++;
-        if (covered) score++;
-        if (evCharging) score++;
-        if (valet) score++;
-        return score / 4.0;
+        return Integer.bitCount(amenities) / 4.0;
     }
 
     public String amenities() {
+        int bits = amenities;
         StringBuilder sb = new StringBuilder();
-        if (secure) sb.append("Security ");
-        if (evCharging) sb.append("EV-Charging ");
-        if (covered) sb.append("Covered ");
-        if (valet) sb.append("Valet ");
+        if ((bits & 1 << AvailabilityStats.SECURE) != 0) sb.append("Security ");
+        if ((bits & 1 << AvailabilityStats.EV_CHARGING) != 0) sb.append("EV-Charging ");
+        if ((bits & 1 << AvailabilityStats.COVERED) != 0) sb.append("Covered ");
+        if ((bits & 1 << AvailabilityStats.VALET) != 0) sb.append("Valet ");
         return sb.toString().trim();
     }
 
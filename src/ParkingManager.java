@@ -1,254 +1,300 @@
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Computes and returns result objects (Recommendation, ReservationResult, RouteDetails,
+ * WaitlistDrain, EmergencyRelease) without console output; ConsolePresenter renders
+ * them for the interactive menu. Setup and admin calls report through return values and
+ * put the details in the log. Safe for concurrent callers: reservations, waitlist,
+ * indexes and aggregates are thread-safe structures, routing borrows per-thread engines
+ * from a RouterPool, and the rare structural changes (lots, roads, graph, routing setup)
+ * are synchronized and publish their results through volatile fields.
+ */
 public class ParkingManager {
-    private List<ParkingLot> lots;
-    private Map<String, List<Dijkstra.Edge>> graph;
-    private Map<String, String> parkedVehicles;
+    private static final int ROUTING_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int RANKED_CANDIDATES = 5; // lots a Recommendation ranks (the top 3 share the odds)
+    // Scores a batch's origins; its own daemon threads so batches never queue behind common-pool work
+    private static final ExecutorService BATCH_SCORING = Executors.newFixedThreadPool(ROUTING_THREADS, r -> {
+        Thread t = new Thread(r, "batch-scoring");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private LotRegistry registry;
+    private volatile CompactGraph graph;
+    private volatile RouterPool routers;
+    private volatile RoutingMode routingMode = RoutingMode.ASTAR;
+    private volatile ContractionHierarchy hierarchy;
+    private String hierarchyFile;
+    private ReservationEngine reservations;
+    private volatile ReservationJournal journal; // reservation changes are journaled by the engine
     private WaitlistManager waitlist;
     private LogManager logger;
-    private Random random;
-    private Map<String, Map<String, Double>> distanceCache;
-
-    // Facility information storage
+    private volatile DistanceCache distanceCache;
+    private volatile LotDistanceTable lotDistances;
+    private volatile long lotDistanceMaxEntries = 25_000_000L; // 100 MB of floats
+    private volatile double searchRadiusKm = Double.POSITIVE_INFINITY;
+    private LotSpatialIndex lotIndex;
+    private AvailabilityStats stats;
+    private LotSelector selector;
+    private String assignGate; // gate node while NEAREST_GATE is in use; guarded by 'this'
+    private volatile int candidateLimit = 64;
+    private volatile ScoringKernel.Weights scoreWeights = ScoringKernel.DEFAULT_WEIGHTS;
+
+    // Facility information storage, kept in step with the lots' cost and amenity fields
     private Map<String, ParkingFacilities> facilityData;
+    private volatile String facilityFile, facilitySnapshotFile;
+
+    // Cost, amenities and base score of one lot, as read from the facilities file
+    public static class ParkingFacilities {
+        // Amenity part of the facility factor for every combination of amenity bits
+        private static final double[] AMENITY_BONUS = new double[1 << 4];
+        static {
+            for (int bits = 0; bits < AMENITY_BONUS.length; bits++) {
+                AMENITY_BONUS[bits] = ((bits & 1 << AvailabilityStats.SECURE) != 0 ? 0.15 : 0)
+                        + ((bits & 1 << AvailabilityStats.EV_CHARGING) != 0 ? 0.15 : 0)
+                        + ((bits & 1 << AvailabilityStats.COVERED) != 0 ? 0.10 : 0)
+                        + ((bits & 1 << AvailabilityStats.VALET) != 0 ? 0.10 : 0);
+            }
+        }
 
-    // Class to store facility information
-    private static class ParkingFacilities {
-        public double costPerHour;
-        public boolean hasSecurity;
-        public boolean hasEVCharging;
-        public boolean hasCoveredParking;
-        public boolean hasValet;
-        public int facilityScore;
-        
-        public ParkingFacilities(double costPerHour, boolean hasSecurity, 
-                               boolean hasEVCharging, boolean hasCoveredParking,
-                               boolean hasValet, int facilityScore) {
+        public final double costPerHour;
+        public final int amenities;     // bit per AvailabilityStats amenity constant
+        public final int facilityScore; // 0-10
+        private final double amenityScore;
+
+        public ParkingFacilities(double costPerHour, int amenities, int facilityScore) {
             this.costPerHour = costPerHour;
-            this.hasSecurity = hasSecurity;
-            this.hasEVCharging = hasEVCharging;
-            this.hasCoveredParking = hasCoveredParking;
-            this.hasValet = hasValet;
+            this.amenities = amenities & (AMENITY_BONUS.length - 1);
             this.facilityScore = facilityScore;
+            // Base score (0-0.5) plus amenity bonuses, capped at 1.0
+            this.amenityScore = Math.min(facilityScore * 0.05 + AMENITY_BONUS[this.amenities], 1.0);
+        }
+
+        // Facilities described by a lot's own cost and amenity fields
+        public static ParkingFacilities of(ParkingLot lot) {
+            return new ParkingFacilities(lot.costPerHour, lot.amenities, 5);
+        }
+
+        public boolean has(int amenity) {
+            return (amenities & 1 << amenity) != 0;
+        }
+
+        public boolean hasAll(int bits) {
+            return (amenities & bits) == bits;
+        }
+
+        // Facility factor for scoring (0-1)
+        public double amenityScore() {
+            return amenityScore;
         }
     }
 
+    private static final ParkingFacilities DEFAULT_FACILITIES = new ParkingFacilities(ParkingLot.DEFAULT_COST_PER_HOUR, 0, 5);
+
     public ParkingManager(List<ParkingLot> lots, Map<String, List<Dijkstra.Edge>> graph,
                           WaitlistManager waitlist, LogManager logger) {
-        this.lots = lots != null ? lots : new ArrayList<>();
-        this.graph = graph != null ? graph : new HashMap<>();
+        this(lots, CompactGraph.fromAdjacency(graph), waitlist, logger);
+    }
+
+    public ParkingManager(List<ParkingLot> lots, CompactGraph graph,
+                          WaitlistManager waitlist, LogManager logger) {
+        this.registry = new LotRegistry(lots);
+        this.graph = graph != null ? graph : CompactGraph.fromAdjacency(null);
+        this.routers = new RouterPool(buildRouter(this.graph), null, ROUTING_THREADS);
         this.waitlist = waitlist;
         this.logger = logger;
-        this.random = new Random();
-        this.distanceCache = new HashMap<>();
-        this.facilityData = new HashMap<>();
-        this.parkedVehicles = new HashMap<>(); // Initialize parkedVehicles
-        
-        // Initialize facility data for each parking lot
-        initializeFacilityData();
-    }
-
-    // Initialize facility data for parking lots
-    private void initializeFacilityData() {
-        // Sample facility data - you can load this from a file or database
-        facilityData.put("1", new ParkingFacilities(10.0, true, false, true, false, 7));
-        facilityData.put("2", new ParkingFacilities(15.0, true, true, true, true, 9));
-        facilityData.put("3", new ParkingFacilities(8.0, false, false, false, false, 4));
-        facilityData.put("4", new ParkingFacilities(12.0, true, false, true, false, 6));
-        facilityData.put("5", new ParkingFacilities(20.0, true, true, true, true, 10));
-        
-        // Add more lots as needed
-        for (ParkingLot lot : lots) {
-            if (!facilityData.containsKey(lot.id)) {
-                // Default facility data for lots not in our sample
-                facilityData.put(lot.id, new ParkingFacilities(
-                    10.0 + random.nextDouble() * 10, // $10-20 per hour
-                    random.nextBoolean(),            // Random security
-                    random.nextBoolean(),            // Random EV charging
-                    random.nextBoolean(),            // Random covered parking
-                    random.nextBoolean(),            // Random valet
-                    5 + random.nextInt(6)           // Score 5-10
-                ));
-            }
-        }
+        this.distanceCache = new LruDistanceCache(100_000, 0);
+        this.facilityData = new ConcurrentHashMap<>();
+        this.reservations = new ReservationEngine(registry);
+        this.lotIndex = new LotSpatialIndex(registry.all(), 0.01);
+        this.stats = new AvailabilityStats(registry);
+        this.selector = new LotSelector(registry, LotSelector.MOST_FREE);
+        for (ParkingLot lot : registry.all()) facilityData.put(lot.id, ParkingFacilities.of(lot));
     }
 
-    // Enhanced: Get directions with all intermediate nodes and actual distances
-    public List<String> getDirections(String from, String to) {
-        if (from == null || to == null) {
-            return Arrays.asList("❌ Invalid locations provided");
-        }
-        
-        if (from.equalsIgnoreCase(to)) {
-            return Arrays.asList("📍 " + from, "🎯 You are already at your destination!");
+    // Merge cost and amenities from the facilities file (or its binary snapshot) into the
+    // lots; lots the file does not list keep what they have. Returns how many lots matched.
+    // Call again after editing the file to apply it without a restart.
+    public synchronized int loadFacilities(String csvPath, String snapshotPath) throws Exception {
+        Map<String, ParkingFacilities> table = FileUtil.loadFacilities(csvPath, snapshotPath);
+        this.facilityFile = csvPath;
+        this.facilitySnapshotFile = snapshotPath;
+        int matched = 0;
+        for (ParkingLot lot : registry.all()) {
+            ParkingFacilities facilities = table.get(lot.id);
+            if (facilities == null) continue;
+            applyFacilities(lot, facilities);
+            matched++;
         }
+        logger.log("FACILITY_LOAD", matched + "/" + registry.size() + " lots from " + csvPath);
+        return matched;
+    }
 
-        try {
-            Dijkstra dj = new Dijkstra(graph);
-            Dijkstra.Result res = dj.shortestPath(from.toUpperCase());
-            
-            // Check if destination is reachable
-            Double totalDistance = res.dist.get(to.toUpperCase());
-            if (totalDistance == null || Double.isInfinite(totalDistance)) {
-                return Arrays.asList("📍 " + from, "❌ No route available to " + to, "🎯 " + to);
-            }
+    // Re-read the facilities file last given to loadFacilities
+    public int reloadFacilities() throws Exception {
+        String csv = facilityFile;
+        if (csv == null) throw new IllegalStateException("No facilities file loaded");
+        return loadFacilities(csv, facilitySnapshotFile);
+    }
 
-            List<String> path = Dijkstra.reconstructPath(from.toUpperCase(), to.toUpperCase(), res.prev);
-            
-            if (path != null && !path.isEmpty()) {
-                return enhancePathDisplayWithActualDistances(path, res.dist, graph);
-            } else {
-                return Arrays.asList("📍 " + from, "❌ No valid path found to " + to, "🎯 " + to);
-            }
-        } catch (Exception e) {
-            System.out.println("⚠️ Route calculation error: " + e.getMessage());
-            e.printStackTrace();
-        }
-        
-        return Arrays.asList("📍 " + from, "❌ Route calculation failed", "🎯 " + to);
+    // Copy facilities onto the lot and re-key everything that indexes cost or amenities.
+    // Scoring reads cost and amenities together from the immutable facilityData entry, so
+    // it is put first; the lot's two fields are single volatile writes for the filters.
+    private void applyFacilities(ParkingLot lot, ParkingFacilities facilities) {
+        facilityData.put(lot.id, facilities);
+        lot.costPerHour = facilities.costPerHour;
+        lot.amenities = facilities.amenities;
+        stats.track(lot);
+        selector.update(lot);
     }
 
-    // Enhanced path display with ALL nodes and ACTUAL distances between them
-    private List<String> enhancePathDisplayWithActualDistances(List<String> path, 
-                                                             Map<String, Double> distances,
-                                                             Map<String, List<Dijkstra.Edge>> graph) {
-        List<String> enhancedPath = new ArrayList<>();
-        
-        enhancedPath.add("🗺️  DETAILED ROUTE FROM " + path.get(0) + " TO " + path.get(path.size() - 1));
-        enhancedPath.add("══════════════════════════════════════════════════════════════");
-        
-        double totalDistance = distances.get(path.get(path.size() - 1));
-        double accumulatedDistance = 0.0;
-        
-        // Display starting point
-        enhancedPath.add("📍 START: " + path.get(0));
-        
-        // Display all intermediate nodes with actual distances
-        for (int i = 1; i < path.size(); i++) {
-            String currentNode = path.get(i);
-            String previousNode = path.get(i - 1);
-            
-            // Calculate actual distance between consecutive nodes
-            double segmentDistance = getActualSegmentDistance(previousNode, currentNode, graph, distances);
-            accumulatedDistance += segmentDistance;
-            
-            String directionArrow = getDirectionArrow(i, path.size());
-            String nodeType = getNodeType(i, path.size());
-            
-            enhancedPath.add(String.format("   %s %5.1f km", directionArrow, segmentDistance));
-            
-            if (i == path.size() - 1) {
-                enhancedPath.add("🎯 DESTINATION: " + currentNode);
-            } else {
-                enhancedPath.add(String.format("📍 %s %s", currentNode, nodeType));
-            }
-        }
-        
-        enhancedPath.add("══════════════════════════════════════════════════════════════");
-        enhancedPath.add("📊 ROUTE SUMMARY:");
-        enhancedPath.add("   📏 Total Distance: " + String.format("%.1f", totalDistance) + " km");
-        enhancedPath.add("   🛣️  Total Waypoints: " + (path.size() - 2));
-        enhancedPath.add("   ⏱️  Estimated Time: " + String.format("%.0f", (totalDistance / 40.0) * 60) + " min");
-        enhancedPath.add("   🚗 Average Speed: 40 km/h");
-        enhancedPath.add("   📍 Total Nodes: " + path.size());
-        
-        // Add turn-by-turn instructions
-        enhancedPath.addAll(generateTurnByTurnInstructions(path, graph));
-        
-        return enhancedPath;
+    // Point-to-point search strategy used by directions and route details
+    public enum RoutingMode { DIJKSTRA, ASTAR, BIDIRECTIONAL_ASTAR, CH }
+
+    public void setRoutingMode(RoutingMode mode) {
+        this.routingMode = mode != null ? mode : RoutingMode.ASTAR;
     }
 
-    // Get actual distance between two consecutive nodes in the path
-    private double getActualSegmentDistance(String from, String to, 
-                                          Map<String, List<Dijkstra.Edge>> graph,
-                                          Map<String, Double> distances) {
-        // First try to find the direct edge in the graph
-        if (graph.containsKey(from)) {
-            for (Dijkstra.Edge edge : graph.get(from)) {
-                if (edge.to.equals(to)) {
-                    return edge.weight;
+    // How auto-assign picks a lot when the driver does not choose one
+    public enum AssignPolicy { MOST_FREE, BEST_RATED, CHEAPEST, NEAREST_GATE }
+
+    // 'gateNode' is the graph node drivers enter from; only NEAREST_GATE uses it.
+    // Returns the policy in effect, MOST_FREE when the gate is not on the road graph.
+    public synchronized AssignPolicy setAssignPolicy(AssignPolicy policy, String gateNode) {
+        switch (policy != null ? policy : AssignPolicy.MOST_FREE) {
+            case BEST_RATED -> selector.setPolicy(LotSelector.BEST_RATED);
+            case CHEAPEST -> selector.setPolicy(LotSelector.CHEAPEST);
+            case NEAREST_GATE -> {
+                String gate = gateNode != null ? gateNode.trim().toUpperCase() : null;
+                RouterPool r = routers;
+                if (gate == null || !r.graph().contains(gate)) {
+                    logger.log("ASSIGN_POLICY", "NEAREST_GATE needs a gate node on the road graph (got "
+                            + gateNode + "); using MOST_FREE");
+                    selector.setPolicy(LotSelector.MOST_FREE);
+                    assignGate = null;
+                    return AssignPolicy.MOST_FREE;
                 }
+                // A dedicated engine: the policy reads this result until the graph is swapped,
+                // when reloadGraph/addRoad rebuild it
+                Dijkstra.Result fromGate = r.dedicated().shortestPath(gate);
+                selector.setPolicy(LotSelector.nearestTo(lot -> fromGate.distanceTo(lot.locationName)));
+                assignGate = gate;
+                return AssignPolicy.NEAREST_GATE;
             }
+            default -> selector.setPolicy(LotSelector.MOST_FREE);
         }
-        
-        // Fallback: calculate distance from Dijkstra results
-        if (distances.containsKey(from) && distances.containsKey(to)) {
-            double fromDist = distances.get(from);
-            double toDist = distances.get(to);
-            return Math.abs(toDist - fromDist);
-        }
-        
-        // Final fallback: use cached distance
-        return getCachedDistance(from, to);
+        assignGate = null;
+        return policy != null ? policy : AssignPolicy.MOST_FREE;
     }
 
-    // Generate turn-by-turn instructions
-    private List<String> generateTurnByTurnInstructions(List<String> path, Map<String, List<Dijkstra.Edge>> graph) {
-        List<String> instructions = new ArrayList<>();
-        instructions.add("🔄 TURN-BY-TURN DIRECTIONS:");
-        
-        for (int i = 0; i < path.size() - 1; i++) {
-            String current = path.get(i);
-            String next = path.get(i + 1);
-            
-            if (i == 0) {
-                instructions.add("   🚦 Start at " + current);
-            }
-            
-            if (i < path.size() - 2) {
-                String afterNext = path.get(i + 2);
-                instructions.add("   → Continue from " + current + " to " + next);
-                
-                // Add intersection information if available
-                if (graph.containsKey(next) && graph.get(next).size() > 2) {
-                    instructions.add("     ⚠️ Intersection ahead - stay on route to " + afterNext);
-                }
-            } else if (i == path.size() - 2) {
-                instructions.add("   🏁 Arrive at destination: " + path.get(path.size() - 1));
-            }
+    public synchronized void setAssignPolicy(LotSelector.Policy policy) {
+        selector.setPolicy(policy);
+        assignGate = null;
+    }
+
+    // Re-run the gate search on the current graph; the old result names stale node ids
+    private void refreshGatePolicy() {
+        if (assignGate != null) setAssignPolicy(AssignPolicy.NEAREST_GATE, assignGate);
+    }
+
+    private Dijkstra buildRouter(CompactGraph g) {
+        Dijkstra dj = new Dijkstra(g);
+        dj.useGeoHeuristic();
+        return dj;
+    }
+
+    // Load the contraction hierarchy for the current graph from 'filepath', or build it
+    // (in parallel) and write it there when the file is missing or stale. Returns whether
+    // CH routing is available; otherwise the CH mode falls back to A*.
+    public synchronized boolean useContractionHierarchy(String filepath) {
+        this.hierarchyFile = filepath;
+        try {
+            hierarchy = ContractionHierarchy.load(filepath, graph);
+            if (hierarchy == null) rebuildHierarchy();
+            else logger.log("CH_LOAD", filepath + " | Shortcuts: " + hierarchy.shortcutCount());
+        } catch (Exception e) {
+            logger.log("CH_ERROR", "Contraction hierarchy unavailable, using A*: " + e.getMessage());
+            hierarchy = null;
         }
-        
-        return instructions;
+        routers = routers.withHierarchy(hierarchy, ROUTING_THREADS);
+        return hierarchy != null;
     }
 
-    // Helper method to get direction arrows
-    private String getDirectionArrow(int currentIndex, int totalSize) {
-        if (currentIndex == totalSize - 1) return "🏁";
-        if (currentIndex % 3 == 0) return "↘️";
-        if (currentIndex % 3 == 1) return "➡️";
-        return "↙️";
+    private void rebuildHierarchy() throws Exception {
+        hierarchy = ContractionHierarchy.build(graph, Runtime.getRuntime().availableProcessors());
+        if (hierarchyFile != null) hierarchy.save(hierarchyFile);
+        logger.log("CH_BUILD", "Nodes: " + graph.nodeCount() + " | Shortcuts: " + hierarchy.shortcutCount());
     }
 
-    // Helper method to get node type description
-    private String getNodeType(int index, int totalSize) {
-        if (index == 0) return "[Start]";
-        if (index == totalSize - 1) return "[Destination]";
+    private Dijkstra.Route findRoute(String from, String to) {
+        String a = from.toUpperCase();
+        String b = to.toUpperCase();
+        RoutingMode mode = routingMode;
+        return routers.query(e -> switch (mode) {
+            case DIJKSTRA -> e.dijkstra.route(a, b);
+            case BIDIRECTIONAL_ASTAR -> e.dijkstra.bidirectionalAStar(a, b);
+            case CH -> e.hierarchy != null ? e.hierarchy.route(a, b) : e.dijkstra.aStar(a, b);
+            default -> e.dijkstra.aStar(a, b);
+        });
+    }
+
+    // Get actual distance between two consecutive nodes in the path
+    private double getActualSegmentDistance(String from, String to) {
+        // First try to find the direct edge in the graph
+        int u = graph.indexOf(from);
+        int v = graph.indexOf(to);
+        if (u >= 0 && v >= 0) {
+            double weight = graph.edgeWeight(u, v);
+            if (!Double.isNaN(weight)) {
+                return weight;
+            }
+        }
         
-        String[] types = {"[Intersection]", "[Landmark]", "[Checkpoint]", "[Waypoint]"};
-        return types[index % types.length];
+        // Fallback: use cached distance
+        return getCachedDistance(from, to);
     }
 
-    // Alternative method that returns detailed route information as object
+    // Route plan from 'from' to 'to': path, per-segment distances, time estimate and the
+    // road degree of each node (for intersection hints), or an error
     public RouteDetails getDetailedRoute(String from, String to) {
         RouteDetails routeDetails = new RouteDetails();
         
+        if (from == null || to == null) {
+            routeDetails.setError("Invalid locations provided");
+            return routeDetails;
+        }
+        if (!graph.contains(from) || !graph.contains(to)) {
+            routeDetails.setError("Invalid start or destination node");
+            return routeDetails;
+        }
+
         try {
-            Dijkstra dj = new Dijkstra(graph);
-            Dijkstra.Result res = dj.shortestPath(from.toUpperCase());
+            Dijkstra.Route route = findRoute(from, to);
             
-            Double totalDistance = res.dist.get(to.toUpperCase());
-            if (totalDistance == null || Double.isInfinite(totalDistance)) {
-                routeDetails.setError("No route available");
+            double totalDistance = route.getDistance();
+            if (!route.isFound()) {
+                routeDetails.setError("No route available to " + to);
                 return routeDetails;
             }
 
-            List<String> path = Dijkstra.reconstructPath(from.toUpperCase(), to.toUpperCase(), res.prev);
+            List<String> path = route.getPath();
             
             if (path != null && !path.isEmpty()) {
                 routeDetails.setPath(path);
                 routeDetails.setTotalDistance(totalDistance);
-                routeDetails.setSegmentDistances(calculateSegmentDistances(path, graph, res.dist));
+                routeDetails.setSegmentDistances(calculateSegmentDistances(path));
                 routeDetails.setEstimatedTime((totalDistance / 40.0) * 60); // 40 km/h average
+                routeDetails.setNodeDegrees(nodeDegrees(path));
+                routeDetails.setSettledCount(route.getSettledCount());
+                routeDetails.setRoutingMode(routingMode);
+            } else {
+                routeDetails.setError("No valid path found to " + to);
             }
         } catch (Exception e) {
             routeDetails.setError("Route calculation failed: " + e.getMessage());
@@ -257,16 +303,23 @@ public class ParkingManager {
         return routeDetails;
     }
 
+    private List<Integer> nodeDegrees(List<String> path) {
+        List<Integer> degrees = new ArrayList<>(path.size());
+        for (String node : path) {
+            int id = graph.indexOf(node);
+            degrees.add(id >= 0 ? graph.degree(id) : 0);
+        }
+        return degrees;
+    }
+
     // Calculate actual distances for each segment
-    private List<Double> calculateSegmentDistances(List<String> path, 
-                                                 Map<String, List<Dijkstra.Edge>> graph,
-                                                 Map<String, Double> distances) {
+    private List<Double> calculateSegmentDistances(List<String> path) {
         List<Double> segmentDistances = new ArrayList<>();
         
         for (int i = 0; i < path.size() - 1; i++) {
             String from = path.get(i);
             String to = path.get(i + 1);
-            double distance = getActualSegmentDistance(from, to, graph, distances);
+            double distance = getActualSegmentDistance(from, to);
             segmentDistances.add(distance);
         }
         
@@ -278,15 +331,13 @@ public class ParkingManager {
         if (from.equalsIgnoreCase(to)) return 0.0;
         
         try {
-            Dijkstra dj = new Dijkstra(graph);
-            Dijkstra.Result res = dj.shortestPath(from.toUpperCase());
-            Double dist = res.dist.get(to.toUpperCase());
+            double dist = routers.query(e -> e.dijkstra.route(from.toUpperCase(), to.toUpperCase()).getDistance());
             
-            if (dist != null && !dist.isInfinite()) {
+            if (!Double.isInfinite(dist)) {
                 return dist;
             }
         } catch (Exception e) {
-            System.out.println("⚠️ Distance calculation error: " + e.getMessage());
+            logger.log("ROUTE_ERROR", from + " -> " + to + ": " + e.getMessage());
         }
         
         // Fallback: calculate approximate distance
@@ -295,232 +346,216 @@ public class ParkingManager {
 
     // Enhanced recommendation considering multiple factors
     public ParkingLot recommendNearestFromLocation(String userLocation) {
-        List<ParkingLot> availableLots = getAvailableParkingLots(userLocation);
-        
-        if (availableLots.isEmpty()) {
-            System.out.println("🔍 No available parking lots found");
-            return null;
-        }
+        return recommend(userLocation).lot();
+    }
 
-        System.out.println("🎯 Found " + availableLots.size() + " available parking lots");
+    // Score the candidate lots around 'userLocation' and pick one of the best three,
+    // weighted by score; the result carries the ranking and selection odds
+    public Recommendation recommend(String userLocation) {
+        List<ParkingLot> availableLots = findCandidateLots(userLocation);
+        if (availableLots.isEmpty()) return new Recommendation(userLocation, 0, List.of(), new double[0], null);
 
         // Calculate comprehensive scores considering all factors
-        List<ParkingScore> scoredLots = calculateComprehensiveScores(userLocation, availableLots);
+        List<ParkingScore> scoredLots = calculateComprehensiveScores(userLocation, availableLots, RANKED_CANDIDATES);
+        if (scoredLots.isEmpty()) return new Recommendation(userLocation, availableLots.size(), scoredLots, new double[0], null);
+
+        // Select using weighted probability from top candidates
+        double[] probabilities = selectionProbabilities(scoredLots);
+        ParkingScore selected = scoredLots.get(pickWeighted(probabilities));
         
-        if (scoredLots.isEmpty()) {
-            return null;
+        logger.event(EventLog.Type.SMART_RECOMMEND, null, selected.lot.id, (int) Math.round(selected.distance * 1000), String.format(
+            "User selected %s | Score: %.3f | Distance: %.1fkm | Cost: $%.2f | Facilities: %.1f",
+            selected.lot.locationName, selected.score, selected.distance,
+            selected.facilities.costPerHour, selected.facilityFactor
+        ));
+        return new Recommendation(userLocation, availableLots.size(), scoredLots, probabilities, selected);
+    }
+
+    // Outcome of one recommendation: the best few scored lots best first, the selection
+    // odds of the leading candidates, and the pick (null when no lot was reachable)
+    public static class Recommendation {
+        public final String location;
+        public final int candidatesConsidered;
+        public final List<ParkingScore> ranked;
+        public final double[] probabilities; // for ranked.get(0..probabilities.length-1)
+        public final ParkingScore selected;
+
+        Recommendation(String location, int candidatesConsidered, List<ParkingScore> ranked,
+                       double[] probabilities, ParkingScore selected) {
+            this.location = location;
+            this.candidatesConsidered = candidatesConsidered;
+            this.ranked = ranked;
+            this.probabilities = probabilities;
+            this.selected = selected;
         }
 
-        // Display top candidates with all factors
-        displayTopCandidatesWithDetails(scoredLots);
+        public ParkingLot lot() {
+            return selected == null ? null : selected.lot;
+        }
+    }
 
-        // Select using weighted probability from top candidates
-        ParkingLot selected = selectWeightedParking(scoredLots);
-        
-        // Display why this parking was selected
-        displaySelectionReason(selected, scoredLots);
-        
-        return selected;
+    // Lots for a burst of arrivals; origins.get(i) is where arrival i starts. Each distinct
+    // origin scores every available lot once (one one-to-many search) on the batch-scoring
+    // threads, then arrivals take, in order, their origin's best lot that still has room in
+    // this batch. Null or blank origins are left unassigned. Nothing is reserved: callers
+    // follow up with reserveVehicleAtLot.
+    public BatchRecommendation recommendBatch(List<String> origins) {
+        long start = System.nanoTime();
+        String[] keys = new String[origins.size()];
+        Map<String, List<Integer>> byOrigin = new LinkedHashMap<>();
+        for (int i = 0; i < origins.size(); i++) {
+            String origin = origins.get(i);
+            if (origin == null || origin.isBlank()) continue;
+            keys[i] = origin.trim().toUpperCase();
+            byOrigin.computeIfAbsent(keys[i], k -> new ArrayList<>()).add(i);
+        }
+
+        List<ParkingLot> availableLots = getAvailableParkingLots();
+        Map<String, Future<List<ParkingScore>>> scoring = new HashMap<>();
+        for (String origin : byOrigin.keySet()) {
+            scoring.put(origin, BATCH_SCORING.submit(() -> calculateComprehensiveScores(origin, availableLots, availableLots.size())));
+        }
+
+        // Capacity left in this batch
+        Map<ParkingLot, Integer> room = new IdentityHashMap<>();
+        for (ParkingLot lot : availableLots) room.put(lot, lot.availableSlots());
+
+        BatchRecommendation batch = new BatchRecommendation(origins.size(), byOrigin.size());
+        Map<String, List<ParkingScore>> ranked = new HashMap<>();
+        Map<String, Integer> next = new HashMap<>(); // per origin: first ranked lot that may have room
+        for (int i = 0; i < origins.size(); i++) {
+            String origin = keys[i];
+            if (origin == null) {
+                batch.unassigned++;
+                continue;
+            }
+            List<ParkingScore> scores = ranked.computeIfAbsent(origin, o -> join(scoring.get(o)));
+            int k = next.getOrDefault(origin, 0);
+            while (k < scores.size() && room.get(scores.get(k).lot) == 0) k++;
+            next.put(origin, k);
+            if (k == scores.size()) {
+                batch.unassigned++;
+                continue;
+            }
+            ParkingScore pick = scores.get(k);
+            room.merge(pick.lot, -1, Integer::sum);
+            batch.lots[i] = pick.lot;
+            batch.distances[i] = pick.distance;
+        }
+        batch.elapsedNanos = System.nanoTime() - start;
+        logger.log("BATCH_RECOMMEND", "Arrivals: " + origins.size() + " | Origins: " + byOrigin.size()
+                + " | Unassigned: " + batch.unassigned + " | " + batch.elapsedNanos / 1_000_000 + " ms");
+        return batch;
+    }
+
+    private static <T> T join(Future<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scoring a batch", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // Outcome of recommendBatch, index-aligned with its input
+    public static class BatchRecommendation {
+        public final ParkingLot[] lots;     // null where no lot had room left
+        public final double[] distances;    // km from the arrival's origin
+        public final int origins;
+        public int unassigned;
+        public long elapsedNanos;
+
+        BatchRecommendation(int size, int origins) {
+            this.lots = new ParkingLot[size];
+            this.distances = new double[size];
+            this.origins = origins;
+        }
     }
 
     // Get facility information for a parking lot
-    private ParkingFacilities getFacilities(ParkingLot lot) {
-        return facilityData.getOrDefault(lot.id, 
-            new ParkingFacilities(10.0, false, false, false, false, 5));
+    public ParkingFacilities getFacilities(ParkingLot lot) {
+        return facilityData.getOrDefault(lot.id, DEFAULT_FACILITIES);
     }
 
-    // Get facility string for display
-    private String getFacilityString(ParkingLot lot) {
-        ParkingFacilities facilities = getFacilities(lot);
-        StringBuilder facilityStr = new StringBuilder();
-        if (facilities.hasSecurity) facilityStr.append("🔒");
-        if (facilities.hasEVCharging) facilityStr.append("⚡");
-        if (facilities.hasCoveredParking) facilityStr.append("🏢");
-        if (facilities.hasValet) facilityStr.append("🚗");
-        return facilityStr.toString();
+    // Comprehensive scoring considering all factors: the best 'k' reachable lots, best first
+    private List<ParkingScore> calculateComprehensiveScores(String userLocation, List<ParkingLot> availableLots, int k) {
+        ScoringKernel.Batch batch = ScoringKernel.acquire();
+        try {
+            return scoreLots(batch, userLocation, availableLots, k);
+        } finally {
+            ScoringKernel.release(batch);
+        }
     }
 
-    // Comprehensive scoring considering all factors
-    private List<ParkingScore> calculateComprehensiveScores(String userLocation, List<ParkingLot> availableLots) {
-        List<ParkingScore> scoredLots = new ArrayList<>();
-        
-        // First, calculate all distances
-        Map<ParkingLot, Double> distances = new HashMap<>();
+    private List<ParkingScore> scoreLots(ScoringKernel.Batch batch, String userLocation,
+                                         List<ParkingLot> availableLots, int k) {
+        // Distances: table lookups when precomputed, otherwise cache hits directly and
+        // misses (NaN for now) in one shared sweep
+        LotDistanceTable table = lotDistances;
+        int misses = 0;
         for (ParkingLot lot : availableLots) {
-            double distance = getCachedDistance(userLocation, lot.locationName);
-            if (distance >= 0) {
-                distances.put(lot, distance);
+            double distance;
+            if (table != null && table.covers(lot.locationName)) {
+                distance = table.distance(userLocation, lot.locationName);
+            } else {
+                Double cached = lookupCachedDistance(userLocation, lot.locationName);
+                distance = cached == null ? Double.NaN : cached >= 0 ? cached : Double.POSITIVE_INFINITY;
+                if (cached == null) misses++;
             }
+            ParkingFacilities facilities = getFacilities(lot);
+            batch.add(lot, distance, lot.availableSlots() / (double) lot.totalSlots, lot.rating,
+                      facilities.costPerHour, facilities.amenityScore());
         }
-        
-        if (distances.isEmpty()) return scoredLots;
-        
-        // Calculate normalization factors
-        double maxDistance = distances.values().stream().max(Double::compare).get();
-        double minDistance = distances.values().stream().min(Double::compare).get();
-        double distanceRange = maxDistance - minDistance;
-        
-        // Find cost range for normalization
-        double maxCost = availableLots.stream()
-            .mapToDouble(lot -> getFacilities(lot).costPerHour)
-            .max().orElse(20.0);
-        double minCost = availableLots.stream()
-            .mapToDouble(lot -> getFacilities(lot).costPerHour)
-            .min().orElse(5.0);
-        double costRange = maxCost - minCost;
-        
-        for (ParkingLot lot : availableLots) {
-            Double distance = distances.get(lot);
-            if (distance == null) continue;
-
-            // Normalize factors to 0-1 scale (higher is better)
-            double normalizedDistance = distanceRange > 0 ? 
-                1.0 - ((distance - minDistance) / distanceRange) : 0.5;
-            
-            double normalizedAvailability = lot.availableSlots / (double) lot.totalSlots;
-            double normalizedRating = (lot.rating - 1.0) / 4.0; // Convert 1-5 to 0-1
-            
-            // Cost factor (lower cost is better)
-            double cost = getFacilities(lot).costPerHour;
-            double normalizedCost = costRange > 0 ? 
-                1.0 - ((cost - minCost) / costRange) : 0.5;
-            
-            // Facility factor
-            double facilityFactor = calculateFacilityScore(lot);
-            
-            // Calculate final weighted score (higher is better)
-            double finalScore = 
-                normalizedDistance * 0.25 +        // 25% to distance
-                normalizedAvailability * 0.20 +    // 20% to availability
-                normalizedRating * 0.15 +          // 15% to user rating
-                normalizedCost * 0.20 +            // 20% to cost
-                facilityFactor * 0.20;             // 20% to facilities
-            
-            scoredLots.add(new ParkingScore(lot, finalScore, distance, normalizedCost, facilityFactor));
+        if (misses > 0) fillMissingDistances(userLocation, batch);
+        
+        int count = ScoringKernel.score(batch, scoreWeights, k);
+        List<ParkingScore> scoredLots = new ArrayList<>(count);
+        for (int r = 0; r < count; r++) {
+            int i = batch.top[r];
+            ParkingLot lot = batch.lots[i];
+            scoredLots.add(new ParkingScore(lot, batch.score[i], batch.distance[i], batch.costFactor(i),
+                                            batch.facility[i], getFacilities(lot)));
         }
-        
-        // Sort by score (descending - higher scores are better)
-        scoredLots.sort((a, b) -> Double.compare(b.score, a.score));
-        
         return scoredLots;
     }
 
-    // Calculate facility score based on available amenities
-    private double calculateFacilityScore(ParkingLot lot) {
-        ParkingFacilities facilities = getFacilities(lot);
-        double score = 0.0;
-        
-        // Base facility score
-        score += facilities.facilityScore * 0.05; // 0-0.5 points
-        
-        // Bonus points for specific amenities
-        if (facilities.hasSecurity) score += 0.15;
-        if (facilities.hasEVCharging) score += 0.15;
-        if (facilities.hasCoveredParking) score += 0.10;
-        if (facilities.hasValet) score += 0.10;
-        
-        return Math.min(score, 1.0); // Cap at 1.0
-    }
-
-    // Display detailed information about top candidates
-    private void displayTopCandidatesWithDetails(List<ParkingScore> scoredLots) {
-        System.out.println("\n🏆 TOP PARKING CANDIDATES (Ranked by Overall Score)");
-        System.out.println("=================================================================");
-        
-        for (int i = 0; i < Math.min(5, scoredLots.size()); i++) {
-            ParkingScore ps = scoredLots.get(i);
-            ParkingFacilities facilities = getFacilities(ps.lot);
-            String facilityStr = getFacilityString(ps.lot);
-            
-            System.out.printf("%d. %s | %s | Available: %d/%d | Rating: %.1f | Cost: $%.2f/hr %s%n", 
-                i + 1, ps.lot.id, ps.lot.locationName, ps.lot.availableSlots, 
-                ps.lot.totalSlots, ps.lot.rating, facilities.costPerHour, facilityStr);
-            
-            System.out.printf("   📊 Overall Score: %.3f | 📏 Distance: %.1f km%n", 
-                            ps.score, ps.distance);
-            System.out.printf("   💰 Cost Factor: %.1f/1.0 | 🏆 Facility Score: %.1f/1.0%n",
-                            ps.costFactor, ps.facilityFactor);
-            
-            // Display amenities
-            StringBuilder amenities = new StringBuilder("   🎯 Amenities: ");
-            if (facilities.hasSecurity) amenities.append("Security ");
-            if (facilities.hasEVCharging) amenities.append("EV-Charging ");
-            if (facilities.hasCoveredParking) amenities.append("Covered ");
-            if (facilities.hasValet) amenities.append("Valet ");
-            System.out.println(amenities.toString());
-            System.out.println();
-        }
+    // Factor weights for recommendation scoring
+    public void setScoreWeights(ScoringKernel.Weights weights) {
+        this.scoreWeights = weights != null ? weights : ScoringKernel.DEFAULT_WEIGHTS;
     }
 
-    // Weighted selection from top candidates
-    private ParkingLot selectWeightedParking(List<ParkingScore> scoredLots) {
+    // Selection odds for the top three candidates
+    private double[] selectionProbabilities(List<ParkingScore> scoredLots) {
         int candidateCount = Math.min(3, scoredLots.size());
-        List<ParkingScore> candidates = scoredLots.subList(0, candidateCount);
         
         // Use exponential weights (better scores get higher weights)
         double[] weights = new double[candidateCount];
         double totalWeight = 0;
         
         for (int i = 0; i < candidateCount; i++) {
-            weights[i] = Math.exp(candidates.get(i).score * 3); // Exponential weighting
+            weights[i] = Math.exp(scoredLots.get(i).score * 3); // Exponential weighting
             totalWeight += weights[i];
         }
-        
-        // Display selection probabilities
-        System.out.println("⚖️ SELECTION PROBABILITIES:");
-        for (int i = 0; i < candidateCount; i++) {
-            double probability = (weights[i] / totalWeight) * 100;
-            System.out.printf("   %s: %.1f%% chance%n", 
-                            candidates.get(i).lot.locationName, probability);
-        }
-        
-        // Select based on weights
-        double randomValue = random.nextDouble() * totalWeight;
-        double cumulativeWeight = 0;
-        
-        for (int i = 0; i < candidateCount; i++) {
-            cumulativeWeight += weights[i];
-            if (randomValue <= cumulativeWeight) {
-                return candidates.get(i).lot;
-            }
-        }
-        
-        return candidates.get(0).lot;
+        for (int i = 0; i < candidateCount; i++) weights[i] /= totalWeight;
+        return weights;
     }
 
-    // Display why a particular parking was selected
-    private void displaySelectionReason(ParkingLot selected, List<ParkingScore> scoredLots) {
-        ParkingScore selectedScore = scoredLots.stream()
-            .filter(ps -> ps.lot == selected)
-            .findFirst()
-            .orElse(null);
-            
-        if (selectedScore == null) return;
-        
-        ParkingFacilities facilities = getFacilities(selected);
-        
-        System.out.println("\n✅ SELECTED: " + selected.locationName);
-        System.out.println("📋 SELECTION REASONS:");
-        System.out.printf("   📊 Overall Score: %.3f/1.0%n", selectedScore.score);
-        System.out.printf("   📏 Distance: %.1f km%n", selectedScore.distance);
-        System.out.printf("   🅿️ Availability: %d/%d slots%n", 
-                         selected.availableSlots, selected.totalSlots);
-        System.out.printf("   ⭐ User Rating: %.1f/5.0%n", selected.rating);
-        System.out.printf("   💰 Cost: $%.2f per hour%n", facilities.costPerHour);
-        System.out.printf("   🏆 Facilities: %.1f/1.0%n", selectedScore.facilityFactor);
+    // Weighted selection from top candidates
+    private int pickWeighted(double[] probabilities) {
+        double randomValue = ThreadLocalRandom.current().nextDouble();
+        double cumulative = 0;
         
-        StringBuilder reasons = new StringBuilder("   🎯 Key Features: ");
-        if (facilities.hasSecurity) reasons.append("Secure ");
-        if (facilities.hasEVCharging) reasons.append("EV-Friendly ");
-        if (facilities.hasCoveredParking) reasons.append("Covered ");
-        if (facilities.hasValet) reasons.append("Valet-Service ");
-        System.out.println(reasons.toString());
+        for (int i = 0; i < probabilities.length; i++) {
+            cumulative += probabilities[i];
+            if (randomValue <= cumulative) return i;
+        }
         
-        logger.log("SMART_RECOMMEND", String.format(
-            "User selected %s | Score: %.3f | Distance: %.1fkm | Cost: $%.2f | Facilities: %.1f",
-            selected.locationName, selectedScore.score, selectedScore.distance,
-            facilities.costPerHour, selectedScore.facilityFactor
-        ));
+        return 0;
     }
 
     // Fallback distance calculation when no route is found
@@ -531,20 +566,22 @@ public class ParkingManager {
     }
 
     // Enhanced ParkingScore class with additional factors
-    private static class ParkingScore {
-        ParkingLot lot;
-        double score;           // Overall score (0-1, higher is better)
-        double distance;        // Distance in km
-        double costFactor;      // Cost factor (0-1, higher means cheaper)
-        double facilityFactor;  // Facility factor (0-1, higher means better facilities)
+    public static class ParkingScore {
+        public final ParkingLot lot;
+        public final double score;           // Overall score (0-1, higher is better)
+        public final double distance;        // Distance in km
+        public final double costFactor;      // Cost factor (0-1, higher means cheaper)
+        public final double facilityFactor;  // Facility factor (0-1, higher means better facilities)
+        public final ParkingFacilities facilities;
         
         ParkingScore(ParkingLot lot, double score, double distance, 
-                    double costFactor, double facilityFactor) {
+                    double costFactor, double facilityFactor, ParkingFacilities facilities) {
             this.lot = lot;
             this.score = score;
             this.distance = distance;
             this.costFactor = costFactor;
             this.facilityFactor = facilityFactor;
+            this.facilities = facilities;
         }
     }
 
@@ -554,6 +591,9 @@ public class ParkingManager {
         private List<Double> segmentDistances;
         private double totalDistance;
         private double estimatedTime;
+        private List<Integer> nodeDegrees;
+        private int settledCount;
+        private RoutingMode routingMode;
         private String error;
         
         public RouteDetails() {
@@ -574,54 +614,61 @@ public class ParkingManager {
         public double getEstimatedTime() { return estimatedTime; }
         public void setEstimatedTime(double estimatedTime) { this.estimatedTime = estimatedTime; }
         
+        public List<Integer> getNodeDegrees() { return nodeDegrees; }
+        public void setNodeDegrees(List<Integer> nodeDegrees) { this.nodeDegrees = nodeDegrees; }
+        
+        public int getSettledCount() { return settledCount; }
+        public void setSettledCount(int settledCount) { this.settledCount = settledCount; }
+        
+        public RoutingMode getRoutingMode() { return routingMode; }
+        public void setRoutingMode(RoutingMode routingMode) { this.routingMode = routingMode; }
+        
         public String getError() { return error; }
         public void setError(String error) { this.error = error; }
         
         public boolean hasError() { return error != null && !error.isEmpty(); }
-        
-        public void printDetailedRoute() {
-            if (hasError()) {
-                System.out.println("❌ " + error);
-                return;
-            }
-            
-            System.out.println("🗺️  COMPREHENSIVE ROUTE DETAILS");
-            System.out.println("══════════════════════════════════════════════════════════════");
-            System.out.printf("📍 START: %s\n", path.get(0));
-            System.out.printf("🎯 DESTINATION: %s\n", path.get(path.size() - 1));
-            System.out.printf("📏 TOTAL DISTANCE: %.1f km\n", totalDistance);
-            System.out.printf("⏱️  ESTIMATED TIME: %.0f minutes\n", estimatedTime);
-            System.out.println("══════════════════════════════════════════════════════════════");
-            
-            double accumulated = 0;
-            for (int i = 0; i < path.size() - 1; i++) {
-                double segment = segmentDistances.get(i);
-                accumulated += segment;
-                
-                if (i == 0) {
-                    System.out.printf("🚦 START: %s\n", path.get(i));
-                }
-                
-                System.out.printf("   ↓ %.1f km\n", segment);
-                
-                if (i == path.size() - 2) {
-                    System.out.printf("🏁 ARRIVE: %s\n", path.get(i + 1));
-                } else {
-                    System.out.printf("📍 %s [Waypoint %d]\n", path.get(i + 1), i + 1);
-                }
-            }
-            
-            System.out.println("══════════════════════════════════════════════════════════════");
-            System.out.printf("📊 SUMMARY: %d nodes, %.1f km total, %.0f min estimated\n", 
-                            path.size(), totalDistance, estimatedTime);
+    }
+
+    // Spatial prefilter before any graph search: lots within the search radius (straight-line
+    // distance never exceeds road distance) or the candidateLimit nearest available lots.
+    // Falls back to every available lot when the user's coordinates are unknown.
+    private List<ParkingLot> findCandidateLots(String userLocation) {
+        double[] coords = GeoDB.get(userLocation);
+        if (coords[0] == 0 && coords[1] == 0) return getAvailableParkingLots(userLocation);
+        LotSpatialIndex.Filter filter = LotSpatialIndex.Filter.available();
+        filter.excludeLocation = userLocation;
+        if (!Double.isInfinite(searchRadiusKm)) {
+            return lotIndex.withinRadius(coords[0], coords[1], searchRadiusKm, filter);
         }
+        return lotIndex.kNearest(coords[0], coords[1], candidateLimit, filter);
+    }
+
+    // Number of nearest lots scored per recommendation when no search radius is set
+    public void setCandidateLimit(int limit) {
+        this.candidateLimit = Math.max(1, limit);
+    }
+
+    public LotSpatialIndex getLotIndex() {
+        return lotIndex;
+    }
+
+    public AvailabilityStats getStats() {
+        return stats;
+    }
+
+    // Keep availability-derived indexes in step after a lot's slot count changes
+    private void availabilityChanged(ParkingLot lot) {
+        if (lot == null) return;
+        lotIndex.refresh(lot);
+        stats.update(lot);
+        selector.update(lot);
     }
 
     // Get available parking lots with filtering options
     public List<ParkingLot> getAvailableParkingLots(String excludeLocation) {
         List<ParkingLot> available = new ArrayList<>();
-        for (ParkingLot lot : lots) {
-            if (lot.availableSlots > 0 && 
+        for (ParkingLot lot : registry.all()) {
+            if (lot.availableSlots() > 0 && 
                 (excludeLocation == null || !lot.locationName.equalsIgnoreCase(excludeLocation))) {
                 available.add(lot);
             }
@@ -633,338 +680,567 @@ public class ParkingManager {
         return getAvailableParkingLots(null);
     }
 
+    // What a reserve, free or transfer call did; 'drain' lists waiters handed the freed slot
+    public static class ReservationResult {
+        public enum Status { PARKED, FREED, TRANSFERRED, ALREADY_PARKED, NOT_PARKED, UNKNOWN_LOT, LOT_FULL, WAITLISTED, ALREADY_WAITLISTED }
+
+        public final Status status;
+        public final String vehicle;
+        public final String lotId;      // lot parked at, freed from, moved to or waited for (null: any lot)
+        public String fromLotId;        // TRANSFERRED: where the vehicle came from
+        public ParkingLot lot;
+        public String bay;
+        public int availableSlots;      // of 'lot' right after the change
+        public WaitlistDrain drain;
+
+        public ReservationResult(Status status, String vehicle, String lotId) {
+            this.status = status;
+            this.vehicle = vehicle;
+            this.lotId = lotId;
+        }
+
+        public boolean ok() {
+            return status == Status.PARKED || status == Status.FREED || status == Status.TRANSFERRED;
+        }
+    }
+
     // Reserve at specific lot
-    public boolean reserveVehicleAtLot(String vehicleNumber, String lotId) {
+    public ReservationResult reserveVehicleAtLot(String vehicleNumber, String lotId) {
         vehicleNumber = vehicleNumber.toUpperCase();
 
-        if (parkedVehicles.containsKey(vehicleNumber)) {
-            String currentLot = parkedVehicles.get(vehicleNumber);
-            System.out.println("❌ Vehicle already parked at lot: " + currentLot);
-            logger.log("RESERVE_FAIL", vehicleNumber + " - Already at lot " + currentLot);
-            return false;
+        ReservationEngine.Outcome outcome = reservations.reserve(vehicleNumber, lotId);
+        if (outcome != ReservationEngine.Outcome.LOT_FULL) return reserveResult(vehicleNumber, lotId, outcome);
+
+        if (!waitlist.add(vehicleNumber, lotId, 0)) {
+            return new ReservationResult(ReservationResult.Status.ALREADY_WAITLISTED, vehicleNumber, lotId);
         }
+        journal(ReservationJournal.Type.WAITLIST_ADD, vehicleNumber, lotId, -1);
+        logger.event(EventLog.Type.WAITLIST_ADD, vehicleNumber, lotId, -1, vehicleNumber + " for lot " + lotId);
+        return new ReservationResult(ReservationResult.Status.WAITLISTED, vehicleNumber, lotId);
+    }
 
-        ParkingLot targetLot = getParkingById(lotId);
-        if (targetLot == null) {
-            System.out.println("❌ Parking lot " + lotId + " not found");
-            return false;
+    // Result of a reserve attempt at 'lotId' that did not find the lot full
+    private ReservationResult reserveResult(String vehicleNumber, String lotId, ReservationEngine.Outcome outcome) {
+        if (outcome == ReservationEngine.Outcome.ALREADY_PARKED) {
+            String currentLot = reservations.lotOf(vehicleNumber);
+            logger.event(EventLog.Type.RESERVE_FAIL, vehicleNumber, currentLot, -1, vehicleNumber + " - Already at lot " + currentLot);
+            return new ReservationResult(ReservationResult.Status.ALREADY_PARKED, vehicleNumber, currentLot);
         }
 
-        if (targetLot.availableSlots > 0) {
-            targetLot.availableSlots--;
-            parkedVehicles.put(vehicleNumber, lotId);
-            logger.log("PARK", vehicleNumber + " at lot " + lotId + " | Slots left: " + targetLot.availableSlots);
-            
-            // Display parking cost and facilities
-            ParkingFacilities facilities = getFacilities(targetLot);
-            System.out.println("✅ Vehicle " + vehicleNumber + " parked at " + targetLot.locationName);
-            System.out.println("   💰 Parking cost: $" + facilities.costPerHour + " per hour");
-            if (facilities.hasSecurity) System.out.println("   🔒 Secure parking available");
-            if (facilities.hasEVCharging) System.out.println("   ⚡ EV charging available");
-            if (facilities.hasCoveredParking) System.out.println("   🏢 Covered parking available");
-            if (facilities.hasValet) System.out.println("   🚗 Valet service available");
-            
-            return true;
+        if (outcome == ReservationEngine.Outcome.UNKNOWN_LOT) {
+            return new ReservationResult(ReservationResult.Status.UNKNOWN_LOT, vehicleNumber, lotId);
         }
 
-        System.out.println("❌ Lot " + lotId + " is full - added to waitlist");
-        waitlist.add(vehicleNumber);
-        logger.log("WAITLIST_ADD", vehicleNumber + " for lot " + lotId);
-        return false;
+        ParkingLot targetLot = reservations.lot(lotId);
+        ReservationEngine.Spot spot = reservations.spotOf(vehicleNumber);
+        availabilityChanged(targetLot);
+        waitlist.cancel(vehicleNumber);
+        String bay = spot == null ? "?" : reservations.slots(spot.lotId).label(spot.bay);
+        logger.event(EventLog.Type.PARK, vehicleNumber, lotId, spot == null ? -1 : spot.bay + 1, vehicleNumber + " at lot " + lotId + " bay " + bay + " | Slots left: " + targetLot.availableSlots());
+
+        ReservationResult result = new ReservationResult(ReservationResult.Status.PARKED, vehicleNumber, lotId);
+        result.lot = targetLot;
+        result.bay = bay;
+        result.availableSlots = targetLot.availableSlots();
+        return result;
     }
 
-    // ✅ Prints the nodes in the shortest path from start to destination
-public void printShortestPathNodes(String start, String destination) {
-    if (!graph.containsKey(start) || !graph.containsKey(destination)) {
-        System.out.println("❌ Invalid start or destination node.");
-        return;
+    // Cached distance calculation
+    private double getCachedDistance(String from, String to) {
+        Double cached = lookupCachedDistance(from, to);
+        if (cached != null) return cached;
+        
+        return calculateDistance(from, to);
+    }
+
+    // Cached distance or null on a miss
+    private Double lookupCachedDistance(String from, String to) {
+        if (from.equalsIgnoreCase(to)) return 0.0;
+        
+        CompactGraph g = graph;
+        int a = g.indexOf(from);
+        int b = g.indexOf(to);
+        if (a < 0 || b < 0) return null;
+        return distanceCache.get(a, b);
     }
 
-    try {
-        // Run Dijkstra
-        Dijkstra dijkstra = new Dijkstra(graph);
-        Dijkstra.Result result = dijkstra.shortestPath(start);
+    // Cache a distance found by a search on 'searched'. Ids are only valid for that graph,
+    // so the write is dropped once reloadGraph/addRoad has swapped it out; a swap that
+    // lands during the put is caught by the second check and the cache cleared again.
+    private void cacheDistance(CompactGraph searched, String from, String to, double distance) {
+        if (searched != graph) return;
+        int a = searched.indexOf(from);
+        int b = searched.indexOf(to);
+        if (a < 0 || b < 0) return;
+        distanceCache.put(a, b, distance);
+        if (searched != graph) distanceCache.invalidateAll();
+    }
+
+    // Swap in a freshly loaded road graph; cached distances refer to the old node ids
+    public void reloadGraph(Map<String, List<Dijkstra.Edge>> newGraph) {
+        reloadGraph(CompactGraph.fromAdjacency(newGraph));
+    }
 
-        // Reconstruct shortest path
-        List<String> path = Dijkstra.reconstructPath(start, destination, result.prev);
+    public synchronized void reloadGraph(CompactGraph newGraph) {
+        this.graph = newGraph;
+        this.routers = new RouterPool(buildRouter(newGraph), null, ROUTING_THREADS);
+        distanceCache.invalidateAll();
+        if (lotDistances != null) precomputeLotDistances();
+        if (hierarchy != null) useContractionHierarchy(hierarchyFile);
+        refreshGatePolicy();
+        logger.log("GRAPH_RELOAD", "Nodes: " + graph.nodeCount() + " | Edges: " + graph.edgeCount());
+    }
 
-        if (path == null || path.isEmpty()) {
-            System.out.println("❌ No path found from " + start + " to " + destination);
-            return;
+    // Add a two-way road at runtime; only lot-distance columns it shortens are recomputed
+    public synchronized void addRoad(String from, String to, double km) {
+        this.graph = graph.withEdge(from, to, km);
+        this.routers = new RouterPool(buildRouter(graph), null, ROUTING_THREADS);
+        distanceCache.invalidateAll();
+        int refreshed = lotDistances != null ? lotDistances.onEdgeAdded(graph, from, to, km) : 0;
+        if (refreshed < 0) {
+            this.lotDistances = null;
+            logger.log("LOT_TABLE_SKIP", "Entry limit reached adding road " + from.toUpperCase() + " <-> "
+                    + to.toUpperCase() + "; using the distance cache instead");
         }
+        if (hierarchy != null) useContractionHierarchy(hierarchyFile);
+        refreshGatePolicy();
+        logger.log("ROAD_ADD", from.toUpperCase() + " <-> " + to.toUpperCase() + " | " + km
+                  + " km | Lot columns refreshed: " + refreshed);
+    }
 
-        // Print all nodes (in order)
-        System.out.println("\n🚗 Shortest Path from " + start + " to " + destination + ":");
-        System.out.println(String.join(" → ", path));
+    // Precompute distances from every node to every lot so recommendations skip graph search.
+    // The table is dense (nodes x lot nodes), so past the entry limit recommendations stay
+    // on the distance cache instead. Returns whether a table is in use.
+    public synchronized boolean precomputeLotDistances() {
+        long entries = LotDistanceTable.entriesFor(graph, registry.all());
+        long limit = Math.min(lotDistanceMaxEntries, LotDistanceTable.MAX_ENTRIES);
+        if (entries > limit) {
+            this.lotDistances = null;
+            logger.log("LOT_TABLE_SKIP", "Would need " + entries + " entries (limit "
+                    + limit + "); using the distance cache instead");
+            return false;
+        }
+        this.lotDistances = new LotDistanceTable(graph, registry.all(), limit);
+        return true;
+    }
 
-        // Optionally show total distance
-        System.out.printf("📏 Total Distance: %.2f km%n", result.dist.get(destination));
+    public void setLotDistanceLimit(long maxEntries) {
+        this.lotDistanceMaxEntries = maxEntries;
+    }
 
-    } catch (Exception e) {
-        System.out.println("⚠️ Error finding shortest path: " + e.getMessage());
+    // Register a lot added at runtime
+    public synchronized void addParkingLot(ParkingLot lot) {
+        registry.add(lot);
+        reservations.registerLot(lot);
+        lotIndex.add(lot);
+        stats.track(lot);
+        selector.update(lot);
+        facilityData.putIfAbsent(lot.id, ParkingFacilities.of(lot));
+        LotDistanceTable table = lotDistances;
+        if (table != null && !table.addLot(lot)) {
+            this.lotDistances = null;
+            logger.log("LOT_TABLE_SKIP", "Entry limit reached adding lot " + lot.id + "; using the distance cache instead");
+        }
     }
-}
 
+    // Remove an empty lot at runtime; refused while vehicles are parked there
+    public synchronized boolean removeParkingLot(String lotId) {
+        ParkingLot lot = registry.get(lotId);
+        int handle = registry.handleOf(lotId);
+        if (lot == null || !reservations.unregisterLot(lotId)) {
+            logger.log("LOT_REMOVE_FAIL", "Lot " + lotId + (lot == null ? ": not found" : ": vehicles still parked"));
+            return false;
+        }
+        journal(ReservationJournal.Type.LOT_REMOVE, null, lotId, -1);
+        lotIndex.remove(lot);
+        stats.untrack(handle);
+        selector.remove(handle);
+        waitlist.dropLot(lotId);
+        facilityData.remove(lotId);
+        logger.log("LOT_REMOVE", "Lot " + lotId + " (" + lot.locationName + ")");
+        return true;
+    }
 
-    // Cached distance calculation
-    private double getCachedDistance(String from, String to) {
-        if (from.equalsIgnoreCase(to)) return 0.0;
-        
-        if (distanceCache.containsKey(from) && distanceCache.get(from).containsKey(to)) {
-            return distanceCache.get(from).get(to);
+    // Rename a lot at runtime; parked vehicles follow it
+    public synchronized boolean renameParkingLot(String oldId, String newId) {
+        ParkingLot lot = registry.get(oldId);
+        if (lot == null || !reservations.renameLot(oldId, newId)) {
+            logger.log("LOT_RENAME_FAIL", oldId + " -> " + newId);
+            return false;
         }
-        if (distanceCache.containsKey(to) && distanceCache.get(to).containsKey(from)) {
-            return distanceCache.get(to).get(from);
+        journal(ReservationJournal.Type.LOT_RENAME, newId, oldId, -1);
+        lotIndex.rename(oldId, newId);
+        waitlist.renameLot(oldId, newId);
+        ParkingFacilities facilities = facilityData.remove(oldId);
+        if (facilities != null) facilityData.put(newId, facilities);
+        logger.log("LOT_RENAME", oldId + " -> " + newId);
+        return true;
+    }
+
+    public synchronized void setDistanceCache(DistanceCache cache) {
+        this.distanceCache = cache;
+    }
+
+    // One early-exit sweep from the user's node that stops once every lot node still
+    // missing a distance (NaN) is settled or the search radius is exceeded. Lots outside
+    // the radius or unreachable get an infinite distance.
+    private void fillMissingDistances(String from, ScoringKernel.Batch batch) {
+        Set<String> targets = new HashSet<>();
+        for (int i = 0; i < batch.size; i++) {
+            if (Double.isNaN(batch.distance[i])) targets.add(batch.lots[i].locationName);
         }
         
-        double distance = calculateDistance(from, to);
-        
-        distanceCache.computeIfAbsent(from, k -> new HashMap<>()).put(to, distance);
-        distanceCache.computeIfAbsent(to, k -> new HashMap<>()).put(from, distance);
-        
-        return distance;
+        try {
+            routers.query(e -> {
+                Dijkstra.Result res = e.dijkstra.shortestPathToTargets(from.toUpperCase(), targets, searchRadiusKm);
+                for (int i = 0; i < batch.size; i++) {
+                    if (!Double.isNaN(batch.distance[i])) continue;
+                    String node = batch.lots[i].locationName;
+                    double distance = node.equalsIgnoreCase(from) ? 0.0 : res.distanceTo(node);
+                    batch.distance[i] = distance;
+                    if (!Double.isInfinite(distance)) cacheDistance(e.dijkstra.getGraph(), from, node, distance);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            logger.log("ROUTE_ERROR", from + " -> lots: " + e.getMessage());
+        }
+    }
+
+    // Limit recommendation searches to lots within this road distance (km)
+    public void setSearchRadiusKm(double radiusKm) {
+        this.searchRadiusKm = radiusKm > 0 ? radiusKm : Double.POSITIVE_INFINITY;
     }
 
-    // Distance calculation with error handling
+    public double getSearchRadiusKm() {
+        return searchRadiusKm;
+    }
+
+    // Distance calculation with error handling; the answer (-1 if unreachable) is cached
     private double calculateDistance(String from, String to) {
         try {
-            Dijkstra dj = new Dijkstra(graph);
-            Dijkstra.Result res = dj.shortestPath(from.toUpperCase());
-            Double dist = res.dist.get(to.toUpperCase());
-            return (dist != null && !dist.isInfinite()) ? dist : -1.0;
+            return routers.query(e -> {
+                double dist = e.dijkstra.route(from.toUpperCase(), to.toUpperCase()).getDistance();
+                if (Double.isInfinite(dist)) dist = -1.0;
+                cacheDistance(e.dijkstra.getGraph(), from, to, dist);
+                return dist;
+            });
         } catch (Exception e) {
-            System.out.println("⚠️ Distance calculation error: " + e.getMessage());
+            logger.log("ROUTE_ERROR", from + " -> " + to + ": " + e.getMessage());
             return -1.0;
         }
     }
 
     // Reserve vehicle with automatic waitlist assignment
-    public boolean reserveVehicle(String vehicleNumber) {
+    public ReservationResult reserveVehicle(String vehicleNumber) {
+        return reserveVehicle(vehicleNumber, 0);
+    }
+
+    // Auto-assign to a lot offering every amenity in 'amenities' (AvailabilityStats bits),
+    // or queue for the first such lot to free up
+    public ReservationResult reserveVehicle(String vehicleNumber, int amenities) {
         vehicleNumber = vehicleNumber.toUpperCase();
 
-        if (parkedVehicles.containsKey(vehicleNumber)) {
-            System.out.println("❌ Vehicle already parked at lot: " + parkedVehicles.get(vehicleNumber));
-            return false;
+        if (reservations.isParked(vehicleNumber)) {
+            return new ReservationResult(ReservationResult.Status.ALREADY_PARKED, vehicleNumber, reservations.lotOf(vehicleNumber));
         }
 
-        ParkingLot bestLot = findBestAvailableLot();
-        if (bestLot != null) {
-            return reserveVehicleAtLot(vehicleNumber, bestLot.id);
+        // The chosen lot can fill up (or be removed) before we claim a bay in it; drop it
+        // from the selector and choose again, so we only queue once no lot qualifies
+        ParkingLot bestLot;
+        while ((bestLot = amenities == 0 ? findBestAvailableLot() : selector.best(lot -> lot.hasAll(amenities))) != null) {
+            ReservationEngine.Outcome outcome = reservations.reserve(vehicleNumber, bestLot.id);
+            if (outcome == ReservationEngine.Outcome.LOT_FULL) availabilityChanged(bestLot);
+            else if (outcome != ReservationEngine.Outcome.UNKNOWN_LOT) return reserveResult(vehicleNumber, bestLot.id, outcome);
         }
 
-        System.out.println("❌ No slots available - added to waitlist");
-        waitlist.add(vehicleNumber);
-        logger.log("WAITLIST_ADD", vehicleNumber);
-        return false;
+        if (!waitlist.add(vehicleNumber, null, amenities)) {
+            return new ReservationResult(ReservationResult.Status.ALREADY_WAITLISTED, vehicleNumber, null);
+        }
+        journal(ReservationJournal.Type.WAITLIST_ADD, vehicleNumber, null, -1);
+        logger.event(EventLog.Type.WAITLIST_ADD, vehicleNumber, null, -1, vehicleNumber);
+        return new ReservationResult(ReservationResult.Status.WAITLISTED, vehicleNumber, null);
     }
 
-    // Find best available lot considering multiple factors
+    // Best lot with a free slot under the configured assign policy
     private ParkingLot findBestAvailableLot() {
-        List<ParkingLot> available = getAvailableParkingLots();
-        if (available.isEmpty()) return null;
-        
-        return available.stream()
-                .max(Comparator.comparingDouble((ParkingLot lot) -> lot.availableSlots)
-                        .thenComparingDouble(lot -> lot.rating))
-                .orElse(null);
+        return selector.best();
     }
 
     // Free vehicle with automatic waitlist processing
-    public boolean freeByVehicle(String vehicleNumber) {
+    public ReservationResult freeByVehicle(String vehicleNumber) {
         vehicleNumber = vehicleNumber.toUpperCase();
 
-        if (!parkedVehicles.containsKey(vehicleNumber)) {
-            System.out.println("❌ Vehicle " + vehicleNumber + " not found in parking system");
-            return false;
+        String lotId = reservations.free(vehicleNumber);
+        if (lotId == null) {
+            return new ReservationResult(ReservationResult.Status.NOT_PARKED, vehicleNumber, null);
         }
 
-        String lotId = parkedVehicles.remove(vehicleNumber);
-        ParkingLot lot = getParkingById(lotId);
+        ParkingLot lot = reservations.lot(lotId);
+        availabilityChanged(lot);
 
+        ReservationResult result = new ReservationResult(ReservationResult.Status.FREED, vehicleNumber, lotId);
         if (lot != null) {
-            int previousSlots = lot.availableSlots;
-            lot.availableSlots++;
-            int freedSlots = lot.availableSlots - previousSlots;
-            
-            logger.log("FREE", vehicleNumber + " from lot " + lotId + 
-                      " | Freed slots: " + freedSlots + " | Total available: " + lot.availableSlots);
-            System.out.println("✅ Vehicle " + vehicleNumber + " freed from lot " + lotId + 
-                             " | Slots now: " + lot.availableSlots + "/" + lot.totalSlots);
+            logger.event(EventLog.Type.FREE, vehicleNumber, lotId, lot.availableSlots(), vehicleNumber + " from lot " + lotId + 
+                      " | Freed slots: 1 | Total available: " + lot.availableSlots());
+            result.lot = lot;
+            result.availableSlots = lot.availableSlots();
+            result.drain = processWaitlist(lot);
+        }
+        return result;
+    }
 
-            processWaitlist();
-            return true;
+    // Move a parked vehicle to another lot without ever holding zero or two slots visibly
+    public ReservationResult transferVehicle(String vehicleNumber, String toLotId) {
+        vehicleNumber = vehicleNumber.toUpperCase();
+        String fromLotId = reservations.lotOf(vehicleNumber);
+        ReservationEngine.Outcome outcome = reservations.transfer(vehicleNumber, toLotId);
+        ReservationEngine.Spot spot = outcome == ReservationEngine.Outcome.TRANSFERRED ? reservations.spotOf(vehicleNumber) : null;
+        if (outcome != ReservationEngine.Outcome.TRANSFERRED) {
+            ReservationResult.Status status = switch (outcome) {
+                case NOT_PARKED -> ReservationResult.Status.NOT_PARKED;
+                case UNKNOWN_LOT -> ReservationResult.Status.UNKNOWN_LOT;
+                case ALREADY_PARKED -> ReservationResult.Status.ALREADY_PARKED;
+                default -> ReservationResult.Status.LOT_FULL;
+            };
+            return new ReservationResult(status, vehicleNumber, toLotId);
         }
+        availabilityChanged(reservations.lot(fromLotId));
+        availabilityChanged(reservations.lot(toLotId));
+        logger.event(EventLog.Type.TRANSFER, vehicleNumber, toLotId, spot == null ? -1 : spot.bay + 1, vehicleNumber + " from lot " + fromLotId + " to lot " + toLotId);
+        ReservationResult result = new ReservationResult(ReservationResult.Status.TRANSFERRED, vehicleNumber, toLotId);
+        result.fromLotId = fromLotId;
+        result.lot = reservations.lot(toLotId);
+        result.bay = spot == null ? "?" : reservations.slots(toLotId).label(spot.bay);
+        result.availableSlots = result.lot.availableSlots();
+        result.drain = processWaitlist(reservations.lot(fromLotId));
+        return result;
+    }
 
-        System.out.println("❌ Could not find parking lot for vehicle: " + vehicleNumber);
-        return false;
+    // Outcome of one waitlist drain into a lot
+    public static class WaitlistDrain {
+        public final String lotId;
+        public final List<String> vehicles = new ArrayList<>();
+        public final List<String> bays = new ArrayList<>();
+        public boolean filledUp; // the lot ran out of slots before every waiter it could serve was placed
+        public int remaining;
+        public long totalWaitMillis;
+        public long elapsedNanos;
+
+        public WaitlistDrain(String lotId) {
+            this.lotId = lotId;
+        }
     }
 
-    // Automatic waitlist processing
-    private void processWaitlist() {
-        int assignedCount = 0;
-        while (!waitlist.isEmpty() && hasAvailableSlots()) {
-            String nextVehicle = waitlist.pop();
-            if (reserveVehicle(nextVehicle)) {
-                assignedCount++;
-                logger.log("WAITLIST_ASSIGN", "Auto-assigned " + nextVehicle);
-            } else {
-                break;
+    // Match as many waiters as 'lot' has free slots in one pass: a single waitlist write,
+    // one batched log entry and one availability update however many are assigned.
+    // A waiter leaves the queue only once its reservation is decided, and its pop is
+    // journaled right after the engine's PARK; if the lot fills up meanwhile the waiter
+    // keeps its place in the queue.
+    public WaitlistDrain drainWaitlist(ParkingLot lot) {
+        long start = System.nanoTime();
+        WaitlistDrain drain = new WaitlistDrain(lot.id);
+        int max = lot.availableSlots();
+        int[] bayNumbers = new int[Math.max(0, max)];
+        long now = System.currentTimeMillis();
+        waitlist.serve(lot, max, e -> {
+            ReservationEngine.Outcome outcome = reservations.reserve(e.vehicle, lot.id);
+            if (outcome == ReservationEngine.Outcome.LOT_FULL || outcome == ReservationEngine.Outcome.UNKNOWN_LOT) {
+                drain.filledUp = true;
+                return false;
             }
+            if (outcome == ReservationEngine.Outcome.RESERVED) {
+                ReservationEngine.Spot spot = reservations.spotOf(e.vehicle);
+                bayNumbers[drain.vehicles.size()] = spot == null ? -1 : spot.bay + 1;
+                drain.vehicles.add(e.vehicle);
+                drain.bays.add(spot == null ? "?" : reservations.slots(lot.id).label(spot.bay));
+                drain.totalWaitMillis += now - e.enqueuedAt;
+            }
+            // ALREADY_PARKED: it found a spot some other way while queued; it just leaves the queue
+            journal(ReservationJournal.Type.WAITLIST_POP, e.vehicle, lot.id, -1);
+            return true;
+        });
+        if (!drain.vehicles.isEmpty()) {
+            availabilityChanged(lot);
+            logger.events(EventLog.Type.WAITLIST_ASSIGN, lot.id, drain.vehicles,
+                    Arrays.copyOf(bayNumbers, drain.vehicles.size()),
+                    "Auto-assigned " + drain.vehicles.size() + " vehicles to lot " + lot.id + ": " + String.join(", ", drain.vehicles));
         }
-        
-        if (assignedCount > 0) {
-            System.out.println("🔄 Automatically assigned " + assignedCount + " vehicles from waitlist");
-        }
+        drain.remaining = waitlist.size();
+        drain.elapsedNanos = System.nanoTime() - start;
+        return drain;
     }
 
-    // Emergency free slot with detailed reporting
-    public void emergencyFreeSlot(Scanner sc) {
-        System.out.print("Enter parking lot ID to emergency free: ");
-        String lotId = sc.nextLine().trim();
+    // Hand slots freed in 'lot' to the oldest waiters it can serve: those waiting for this
+    // lot, for any lot, or for amenities it offers. Null when there was nothing to hand out.
+    private WaitlistDrain processWaitlist(ParkingLot lot) {
+        if (lot == null || lot.availableSlots() <= 0 || waitlist.isEmpty()) return null;
+        return drainWaitlist(lot);
+    }
 
-        ParkingLot lot = getParkingById(lotId);
-        if (lot == null) {
-            System.out.println("❌ Invalid lot ID: " + lotId);
-            return;
-        }
+    // Outcome of an emergency clear-out of one lot
+    public static class EmergencyRelease {
+        public final ParkingLot lot;
+        public final List<String> vehicles;
+        public final int slotsFreed;
+        public final WaitlistDrain drain;
 
-        List<String> freedVehicles = new ArrayList<>();
-        Iterator<Map.Entry<String, String>> it = parkedVehicles.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, String> entry = it.next();
-            if (entry.getValue().equals(lotId)) {
-                freedVehicles.add(entry.getKey());
-                it.remove();
-                logger.log("EMERGENCY_FREE", entry.getKey() + " from lot " + lotId);
-            }
+        EmergencyRelease(ParkingLot lot, List<String> vehicles, int slotsFreed, WaitlistDrain drain) {
+            this.lot = lot;
+            this.vehicles = vehicles;
+            this.slotsFreed = slotsFreed;
+            this.drain = drain;
         }
+    }
 
-        int previousSlots = lot.availableSlots;
-        lot.availableSlots = lot.totalSlots;
-        int actuallyFreed = lot.totalSlots - previousSlots;
-
-        System.out.println("🚨 EMERGENCY FREE COMPLETED:");
-        System.out.println("✅ Freed " + freedVehicles.size() + " vehicles: " + freedVehicles);
-        System.out.println("✅ Freed " + actuallyFreed + " slots from lot " + lotId);
-        System.out.println("📍 Lot " + lotId + " now has " + lot.availableSlots + "/" + lot.totalSlots + " slots available");
+    // Free every slot of a lot at once; null for an unknown lot
+    public EmergencyRelease emergencyFree(String lotId) {
+        ReservationEngine.Release release = reservations.emergencyFree(lotId);
+        if (release == null) return null;
+        ParkingLot lot = reservations.lot(lotId);
+        availabilityChanged(lot);
 
-        logger.log("EMERGENCY_FREE_SUMMARY", "Lot " + lotId + 
-                  " | Vehicles freed: " + freedVehicles.size() + 
-                  " | Slots freed: " + actuallyFreed);
+        List<String> freedVehicles = release.vehicles;
+        String summary = "Lot " + lotId + " | Vehicles freed: " + freedVehicles.size() + " | Slots freed: " + release.slotsFreed;
+        if (freedVehicles.isEmpty()) logger.log("EMERGENCY_FREE_SUMMARY", summary);
+        else logger.events(EventLog.Type.EMERGENCY_FREE, lotId, freedVehicles, null, summary);
 
-        processWaitlist();
+        return new EmergencyRelease(lot, freedVehicles, release.slotsFreed, processWaitlist(lot));
     }
 
-    // Helper method to check if any slots are available
-    private boolean hasAvailableSlots() {
-        return lots.stream().anyMatch(lot -> lot.availableSlots > 0);
+    // Take a vehicle off the waitlist wherever it is queued
+    public boolean cancelWaitlist(String vehicleNumber) {
+        WaitlistManager.Entry entry = waitlist.entryOf(vehicleNumber);
+        if (entry == null || !waitlist.cancel(vehicleNumber)) return false;
+        logger.log("WAITLIST_CANCEL", entry.vehicle + " after " + (System.currentTimeMillis() - entry.enqueuedAt) / 1000 + "s");
+        return true;
     }
 
     // Get parking by ID
     public ParkingLot getParkingById(String id) {
-        for (ParkingLot lot : lots) {
-            if (lot.id.equals(id)) return lot;
-        }
-        return null;
+        return registry.get(id);
     }
 
-    // Print comprehensive parking status
-    public void printParkingStatus() {
-        System.out.println("\n--- PARKING SYSTEM STATUS ---");
-        
-        int totalSlots = lots.stream().mapToInt(lot -> lot.totalSlots).sum();
-        int availableSlots = lots.stream().mapToInt(lot -> lot.availableSlots).sum();
-        int occupiedSlots = totalSlots - availableSlots;
-        
-        System.out.printf("Overall: %d/%d slots available (%.1f%% occupancy)%n", 
-                         availableSlots, totalSlots, (occupiedSlots / (double) totalSlots) * 100);
-        
-        System.out.println("\n--- Individual Lots ---");
-        for (ParkingLot lot : lots) {
-            String status = lot.availableSlots > 0 ? "🟢" : "🔴";
-            ParkingFacilities facilities = getFacilities(lot);
-            String facilityStr = getFacilityString(lot);
-            System.out.printf("%s %s | %s | Available: %d/%d | Rating: %.1f | Cost: $%.2f/hr %s%n",
-                             status, lot.id, lot.locationName, 
-                             lot.availableSlots, lot.totalSlots, lot.rating, 
-                             facilities.costPerHour, facilityStr);
-        }
-        
-        System.out.println("\n--- Parked Vehicles ---");
-        if (parkedVehicles.isEmpty()) {
-            System.out.println("No vehicles currently parked");
-        } else {
-            parkedVehicles.forEach((vehicle, lot) -> 
-                System.out.println("🚗 " + vehicle + " → Lot " + lot));
-        }
-        
-        System.out.println("\n--- Waitlist ---");
-        System.out.println("Waitlisted vehicles: " + (waitlist.isEmpty() ? "0" : "Some vehicles"));
+    public LotRegistry getRegistry() {
+        return registry;
+    }
+
+    // Where a vehicle is parked, or null; read-only lookups for the service API
+    public ReservationEngine.Spot spotOf(String vehicleNumber) {
+        return reservations.spotOf(vehicleNumber.toUpperCase());
+    }
+
+    public String bayLabel(ReservationEngine.Spot spot) {
+        return reservations.slots(spot.lotId).label(spot.bay);
     }
 
-    // Search vehicle with more details
+    public boolean isWaitlisted(String vehicleNumber) {
+        return waitlist.contains(vehicleNumber.toUpperCase());
+    }
+
+    public int waitlistSize() {
+        return waitlist.size();
+    }
+
+    // Parked vehicle -> lot id
+    public Map<String, String> parkedVehicles() {
+        return reservations.snapshot();
+    }
+
+    public int parkedCount() {
+        return reservations.parkedCount();
+    }
+
+    public DistanceCache getDistanceCache() {
+        return distanceCache;
+    }
+
+    // 1-based bay number of a parked vehicle, or -1
     public int searchVehicle(String vehicleNumber) {
-        vehicleNumber = vehicleNumber.toUpperCase();
-        String lotId = parkedVehicles.get(vehicleNumber);
-        
-        if (lotId != null) {
-            for (int i = 0; i < lots.size(); i++) {
-                if (lots.get(i).id.equals(lotId)) {
-                    ParkingLot lot = lots.get(i);
-                    ParkingFacilities facilities = getFacilities(lot);
-                    System.out.println("🚗 Vehicle " + vehicleNumber + " found:");
-                    System.out.println("   📍 Lot: " + lot.id + " (" + lot.locationName + ")");
-                    System.out.println("   ⭐ Rating: " + lot.rating);
-                    System.out.println("   🅿️ Available slots: " + lot.availableSlots + "/" + lot.totalSlots);
-                    System.out.println("   💰 Cost: $" + facilities.costPerHour + " per hour");
-                    System.out.println("   🏆 Facility Score: " + facilities.facilityScore + "/10");
-                    return i + 1;
-                }
-            }
+        ReservationEngine.Spot spot = reservations.spotOf(vehicleNumber.toUpperCase());
+        return spot == null ? -1 : spot.bay + 1;
+    }
+
+    // Rebuild reservation state from the journal's snapshot plus its tail, then keep
+    // journaling every event. Call once at startup, before any reservations are made.
+    public synchronized int recoverFromJournal(ReservationJournal journal) throws Exception {
+        ReservationJournal.State recovered = journal.recover();
+        // Renames/removals the lot file may not have caught up with come first
+        recovered.lotChanges.forEach(this::replayLotChange);
+        // Lots the state covers start from empty bay maps so vehicles get their recorded
+        // bays back; the rest of their occupied slots are orphans
+        for (String lotId : recovered.orphans.keySet()) {
+            ParkingLot lot = registry.get(lotId);
+            if (lot != null) reservations.resetLot(lot);
         }
-        
-        System.out.println("❌ Vehicle " + vehicleNumber + " not found in parking system");
-        return -1;
+        recovered.vehicles.forEach((vehicle, spot) -> {
+            if (spot.lotId != null) reservations.restore(vehicle, spot.lotId, spot.bay, spot.seq);
+        });
+        recovered.orphans.forEach(reservations::addOrphans);
+        reservations.advanceSeq(recovered.maxSeq);
+
+        for (ParkingLot lot : registry.all()) availabilityChanged(lot);
+        journal.open(captureState(recovered.lotChanges));
+        this.journal = journal;
+        reservations.setJournal(journal);
+        int replayed = recovered.replayed;
+        logger.log("RECOVERY", "Vehicles: " + reservations.parkedCount() + " | Replayed events: " + replayed);
+        return replayed;
+    }
+
+    // A rename/removal is skipped when the lot file already reflects it
+    private void replayLotChange(ReservationJournal.Record r) {
+        if (registry.get(r.lotId) == null) return;
+        if (r.type == ReservationJournal.Type.LOT_REMOVE) removeParkingLot(r.lotId);
+        else if (r.type == ReservationJournal.Type.LOT_RENAME && registry.get(r.vehicle) == null) renameParkingLot(r.lotId, r.vehicle);
     }
 
-    // Persist data with backup notification
-    public void persistParkingData(String filepath) {
+    // Flush and snapshot the journal on shutdown; false if that failed (the log has why)
+    public synchronized boolean closeJournal() {
+        ReservationJournal j = journal;
+        if (j == null) return true;
+        journal = null;
+        reservations.setJournal(null);
         try {
-            FileUtil.saveParkingData(filepath, lots);
-            System.out.println("💾 Parking data saved successfully");
-            logger.log("DATA_SAVE", "Parking data persisted | Lots: " + lots.size());
+            j.close();
+            return true;
+        } catch (Exception e) {
+            logger.log("JOURNAL_ERROR", "Closing journal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The engine's current state, as the journal's starting image
+    private ReservationJournal.State captureState(List<ReservationJournal.Record> lotChanges) {
+        ReservationJournal.State state = new ReservationJournal.State(reservations.lastSeq());
+        state.vehicles.putAll(reservations.spots());
+        for (ParkingLot lot : registry.all()) state.orphans.put(lot.id, reservations.slots(lot.id).orphanCount());
+        state.lotChanges.addAll(lotChanges);
+        return state;
+    }
+
+    // Non-reservation records (waitlist, lot changes); O(1), the journal thread does the I/O
+    private void journal(ReservationJournal.Type type, String vehicle, String lotId, int bay) {
+        ReservationJournal j = journal;
+        if (j != null) j.append(reservations.nextSeq(), type, vehicle, lotId, bay);
+    }
+
+    // Save the lot file; false if that failed (the log has why)
+    public synchronized boolean persistParkingData(String filepath) {
+        try {
+            FileUtil.saveParkingData(filepath, registry.all());
+            // The lot file now has every rename/removal, so snapshots can drop them
+            journal(ReservationJournal.Type.LOTS_SAVED, null, null, -1);
+            logger.log("DATA_SAVE", "Parking data persisted | Lots: " + registry.size());
+            return true;
         } catch (Exception e) {
-            System.out.println("❌ Error saving parking data: " + e.getMessage());
             logger.log("DATA_SAVE_ERROR", e.getMessage());
+            return false;
         }
     }
 
     // Clear cache utility
     public void clearCache() {
-        distanceCache.clear();
-        System.out.println("🗑️ Distance cache cleared");
+        distanceCache.invalidateAll();
     }
-
-    // Get system statistics
-    public void printStatistics() {
-        System.out.println("\n--- SYSTEM STATISTICS ---");
-        System.out.println("Total parking lots: " + lots.size());
-        System.out.println("Total parked vehicles: " + parkedVehicles.size());
-        System.out.println("Waitlisted vehicles: " + (waitlist.isEmpty() ? "0" : "Some"));
-        System.out.println("Distance cache entries: " + distanceCache.size());
-        
-        long availableLots = lots.stream().filter(lot -> lot.availableSlots > 0).count();
-        System.out.println("Lots with available slots: " + availableLots);
-        
-        // Enhanced statistics
-        long secureLots = facilityData.values().stream()
-            .filter(facilities -> facilities.hasSecurity)
-            .count();
-        long evLots = facilityData.values().stream()
-            .filter(facilities -> facilities.hasEVCharging)
-            .count();
-            
-        System.out.println("Secure parking lots: " + secureLots);
-        System.out.println("EV charging lots: " + evLots);
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,307 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Headless HTTP/JSON front end for ParkingManager, on the JDK's built-in HttpServer.
+ * Each request runs on a virtual thread when the runtime has them (Java 21+) and on a
+ * fixed pool otherwise. Queries use GET, changes use POST; parameters come from the
+ * query string (or a form body):
+ *
+ *   GET  /recommend?location=MGROAD
+ *   POST /recommend/batch?origins=A,A,B,...   (one entry per arrival)
+ *   GET  /directions?from=A&to=B
+ *   GET  /search?vehicle=KA01
+ *   GET  /status                     GET /health
+ *   POST /reserve?vehicle=KA01[&lot=3][&amenities=SE]
+ *   POST /free?vehicle=KA01
+ *   POST /facilities/reload          (re-read the facilities file; admin routes only)
+ *
+ * Admin routes change server-wide state, so they are only registered when the server is
+ * built with adminRoutes on (-Dparking.server.admin=true from Main); otherwise they 404.
+ *
+ * Every response is a JSON object with "ok" plus the endpoint's fields, or "error".
+ */
+public class ParkingServer {
+    private interface Handler {
+        String handle(Map<String, String> params) throws Exception;
+    }
+
+    // Thrown by handlers for a bad request; becomes a 400 with its message
+    private static class BadRequest extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        BadRequest(String message) { super(message); }
+    }
+
+    private final ParkingManager manager;
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final long startedAt = System.currentTimeMillis();
+
+    public ParkingServer(ParkingManager manager, int port) throws IOException {
+        this(manager, port, false);
+    }
+
+    public ParkingServer(ParkingManager manager, int port, boolean adminRoutes) throws IOException {
+        this.manager = manager;
+        this.http = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newExecutor();
+        http.setExecutor(executor);
+        route("/recommend", false, this::recommend);
+        route("/recommend/batch", true, this::recommendBatch);
+        route("/directions", false, this::directions);
+        route("/search", false, this::search);
+        route("/status", false, p -> status());
+        route("/health", false, p -> new Json().field("ok", true)
+                .field("uptimeSeconds", (System.currentTimeMillis() - startedAt) / 1000).toString());
+        route("/reserve", true, this::reserve);
+        route("/free", true, this::free);
+        if (adminRoutes) {
+            route("/facilities/reload", true, p -> new Json().field("ok", true)
+                    .field("lots", manager.reloadFacilities()).toString());
+        }
+    }
+
+    // One virtual thread per request where available; a fixed pool on older runtimes
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(16, Runtime.getRuntime().availableProcessors() * 4));
+        }
+    }
+
+    public void start() {
+        http.start();
+        System.out.println("🌐 Parking service listening on port " + port());
+    }
+
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    // Stop accepting requests, give in-flight ones up to 'graceSeconds' to finish
+    public void stop(int graceSeconds) {
+        http.stop(graceSeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(graceSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void route(String path, boolean post, Handler handler) {
+        http.createContext(path, exchange -> {
+            int code = 200;
+            String body;
+            try {
+                String method = exchange.getRequestMethod();
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    code = 404;
+                    body = error("Not found");
+                } else if (!method.equals(post ? "POST" : "GET")) {
+                    code = 405;
+                    exchange.getResponseHeaders().set("Allow", post ? "POST" : "GET");
+                    body = error("Use " + (post ? "POST" : "GET"));
+                } else {
+                    body = handler.handle(params(exchange));
+                }
+            } catch (BadRequest e) {
+                code = 400;
+                body = error(e.getMessage());
+            } catch (Exception e) {
+                code = 500;
+                body = error(e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(code, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+    }
+
+    private String recommend(Map<String, String> p) throws BadRequest {
+        String location = required(p, "location");
+        ParkingManager.Recommendation r = manager.recommend(location);
+        if (r.selected == null) return new Json().field("ok", false).field("error", "No available parking lots").toString();
+        return new Json().field("ok", true).raw("lot", lotJson(r.selected.lot))
+                .field("distanceKm", r.selected.distance).field("score", r.selected.score)
+                .field("candidates", r.candidatesConsidered).toString();
+    }
+
+    private String recommendBatch(Map<String, String> p) throws BadRequest {
+        List<String> origins = new ArrayList<>();
+        for (String origin : required(p, "origins").split(",")) {
+            if (!origin.trim().isEmpty()) origins.add(origin.trim());
+        }
+        ParkingManager.BatchRecommendation batch = manager.recommendBatch(origins);
+        StringBuilder assignments = new StringBuilder("[");
+        for (int i = 0; i < origins.size(); i++) {
+            if (i > 0) assignments.append(',');
+            ParkingLot lot = batch.lots[i];
+            assignments.append(new Json().field("origin", origins.get(i))
+                    .field("lot", lot == null ? null : lot.id)
+                    .field("distanceKm", lot == null ? null : batch.distances[i]));
+        }
+        return new Json().field("ok", true).field("origins", batch.origins)
+                .field("unassigned", batch.unassigned)
+                .raw("assignments", assignments.append(']').toString()).toString();
+    }
+
+    private String directions(Map<String, String> p) throws BadRequest {
+        ParkingManager.RouteDetails route = manager.getDetailedRoute(required(p, "from"), required(p, "to"));
+        if (route.hasError()) return new Json().field("ok", false).field("error", route.getError()).toString();
+        return new Json().field("ok", true).strings("path", route.getPath())
+                .field("distanceKm", route.getTotalDistance())
+                .field("minutes", route.getEstimatedTime()).toString();
+    }
+
+    private String search(Map<String, String> p) throws BadRequest {
+        String vehicle = required(p, "vehicle").toUpperCase();
+        ReservationEngine.Spot spot = manager.spotOf(vehicle);
+        if (spot == null) {
+            return new Json().field("ok", false).field("vehicle", vehicle)
+                    .field("waitlisted", manager.isWaitlisted(vehicle)).toString();
+        }
+        return spotJson(vehicle, spot).toString();
+    }
+
+    private String reserve(Map<String, String> p) throws BadRequest {
+        String vehicle = required(p, "vehicle");
+        String lotId = p.get("lot");
+        ParkingManager.ReservationResult r = lotId != null && !lotId.isEmpty()
+                ? manager.reserveVehicleAtLot(vehicle, lotId)
+                : manager.reserveVehicle(vehicle, AvailabilityStats.parseAmenities(p.getOrDefault("amenities", "")));
+        if (r.status == ParkingManager.ReservationResult.Status.UNKNOWN_LOT) throw new BadRequest("Unknown lot " + lotId);
+        return resultJson(r).toString();
+    }
+
+    private String free(Map<String, String> p) throws BadRequest {
+        return resultJson(manager.freeByVehicle(required(p, "vehicle"))).toString();
+    }
+
+    private static Json resultJson(ParkingManager.ReservationResult r) {
+        Json json = new Json().field("ok", r.ok()).field("status", r.status.name())
+                .field("vehicle", r.vehicle).field("lot", r.lotId);
+        if (r.bay != null) json.field("bay", r.bay);
+        if (r.lot != null) json.field("availableSlots", r.availableSlots);
+        if (r.drain != null) json.strings("assignedFromWaitlist", r.drain.vehicles);
+        return json;
+    }
+
+    private String status() {
+        AvailabilityStats stats = manager.getStats();
+        StringBuilder lots = new StringBuilder("[");
+        for (ParkingLot lot : manager.getRegistry().all()) {
+            if (lots.length() > 1) lots.append(',');
+            lots.append(lotJson(lot));
+        }
+        return new Json().field("ok", true)
+                .field("totalSlots", stats.totalSlots())
+                .field("availableSlots", stats.availableSlots())
+                .field("waitlisted", manager.waitlistSize())
+                .raw("lots", lots.append(']').toString()).toString();
+    }
+
+    private Json spotJson(String vehicle, ReservationEngine.Spot spot) {
+        return new Json().field("ok", true).field("vehicle", vehicle)
+                .field("lot", spot.lotId).field("bay", manager.bayLabel(spot));
+    }
+
+    private static String lotJson(ParkingLot lot) {
+        return new Json().field("id", lot.id).field("location", lot.locationName)
+                .field("available", lot.availableSlots()).field("total", lot.totalSlots)
+                .field("rating", lot.rating).field("costPerHour", lot.costPerHour).toString();
+    }
+
+    private static String error(String message) {
+        return new Json().field("ok", false).field("error", message).toString();
+    }
+
+    private static String required(Map<String, String> p, String name) throws BadRequest {
+        String value = p.get(name);
+        if (value == null || value.trim().isEmpty()) throw new BadRequest("Missing parameter '" + name + "'");
+        return value.trim();
+    }
+
+    // Query string plus, for POST, an application/x-www-form-urlencoded body
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseQuery(exchange.getRequestURI().getRawQuery(), params);
+        if (exchange.getRequestMethod().equals("POST")) {
+            parseQuery(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseQuery(String query, Map<String, String> into) {
+        if (query == null || query.isEmpty()) return;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            into.putIfAbsent(key, value);
+        }
+    }
+
+    // Builds one flat JSON object; nested values are passed in already encoded
+    private static class Json {
+        private final StringBuilder sb = new StringBuilder("{");
+
+        Json field(String name, Object value) {
+            String encoded;
+            if (value == null) encoded = "null";
+            else if (value instanceof Boolean || value instanceof Integer || value instanceof Long) encoded = value.toString();
+            else if (value instanceof Double d) encoded = d.isNaN() || d.isInfinite() ? "null" : String.format(Locale.ROOT, "%.3f", d);
+            else encoded = quote(value.toString());
+            return raw(name, encoded);
+        }
+
+        Json strings(String name, List<String> values) {
+            StringBuilder arr = new StringBuilder("[");
+            for (String v : values) arr.append(arr.length() > 1 ? "," : "").append(quote(v));
+            return raw(name, arr.append(']').toString());
+        }
+
+        Json raw(String name, String json) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append(quote(name)).append(':').append(json);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return sb + "}";
+        }
+
+        private static String quote(String s) {
+            StringBuilder out = new StringBuilder("\"");
+            for (char c : s.toCharArray()) {
+                switch (c) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> {
+                        if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                        else out.append(c);
+                    }
+                }
+            }
+            return out.append('"').toString();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/*
+ * Thread-safe reservation core shared by every gate.
+ * Each lot keeps a SlotMap: claiming a bay bit (CAS) is what admits a vehicle, and the
+ * lot's availableSlots is derived from those bits, so there is one source of truth and
+ * a lot can never hand out more bays than it has. The vehicle -> bay index is a
+ * ConcurrentHashMap; a bay is always taken before the vehicle is indexed and released
+ * only after it is unindexed, whatever the interleaving.
+ * Every index change takes its seq inside the map's per-key compute, so one vehicle's
+ * changes are numbered in the order they took effect, and is journaled from here when
+ * a journal is attached.
+ */
+public class ReservationEngine {
+    public enum Outcome { RESERVED, TRANSFERRED, ALREADY_PARKED, LOT_FULL, UNKNOWN_LOT, NOT_PARKED }
+
+    // Summary of an emergency release
+    public static class Release {
+        public final List<String> vehicles;
+        public final int slotsFreed;
+
+        Release(List<String> vehicles, int slotsFreed) {
+            this.vehicles = vehicles;
+            this.slotsFreed = slotsFreed;
+        }
+    }
+
+    // Where a vehicle is parked, and the seq of the change that put it there
+    public static class Spot {
+        public final String lotId;
+        public final int bay;
+        public final long seq;
+
+        Spot(String lotId, int bay, long seq) {
+            this.lotId = lotId;
+            this.bay = bay;
+            this.seq = seq;
+        }
+    }
+
+    private final LotRegistry registry;
+    private volatile SlotMap[] slotsByHandle = new SlotMap[16];
+    private final ConcurrentHashMap<String, Spot> vehicleToSpot = new ConcurrentHashMap<>();
+    // Vehicle numbers interned to the int handles stored per bay (0 is reserved for "empty")
+    private final ConcurrentHashMap<String, Integer> handles = new ConcurrentHashMap<>();
+    private final Map<Integer, String> handleNames = new ConcurrentHashMap<>();
+    private final AtomicInteger nextHandle = new AtomicInteger(1);
+    private final AtomicLong seq = new AtomicLong();
+    private volatile ReservationJournal journal;
+
+    public ReservationEngine(LotRegistry registry) {
+        this.registry = registry;
+        for (ParkingLot lot : registry.all()) registerLot(lot);
+    }
+
+    public ReservationEngine(Collection<ParkingLot> lots) {
+        this(new LotRegistry(lots));
+    }
+
+    // (Re)build the bay map of a lot already in the registry
+    public synchronized void registerLot(ParkingLot lot) {
+        int handle = registry.handleOf(lot.id);
+        if (handle < 0) throw new IllegalArgumentException("Lot not in registry: " + lot.id);
+        SlotMap[] table = slotsByHandle;
+        if (handle >= table.length) table = Arrays.copyOf(table, Math.max(handle + 1, table.length * 2));
+        // Slots already occupied without a vehicle on record (e.g. counts loaded from parking_data.txt)
+        table[handle] = new SlotMap(lot);
+        slotsByHandle = table;
+    }
+
+    // Recovery: give a lot an empty bay map (all slots free) before vehicles are restored
+    public synchronized void resetLot(ParkingLot lot) {
+        int handle = registry.handleOf(lot.id);
+        if (handle < 0 || handle >= slotsByHandle.length) return;
+        slotsByHandle[handle] = new SlotMap(lot, 0, SlotMap.DEFAULT_LEVEL_SIZE);
+    }
+
+    // Drop an empty lot from the registry; false if it is unknown or still has vehicles
+    public synchronized boolean unregisterLot(String lotId) {
+        int handle = registry.handleOf(lotId);
+        if (handle < 0) return false;
+        for (Spot spot : vehicleToSpot.values()) {
+            if (spot.lotId.equals(lotId)) return false;
+        }
+        registry.remove(lotId);
+        slotsByHandle[handle] = null;
+        return true;
+    }
+
+    // Rename a lot in the registry and re-point the vehicles parked there
+    public synchronized boolean renameLot(String oldId, String newId) {
+        if (!registry.rename(oldId, newId)) return false;
+        for (Map.Entry<String, Spot> e : vehicleToSpot.entrySet()) {
+            Spot spot = e.getValue();
+            if (spot.lotId.equals(oldId)) vehicleToSpot.replace(e.getKey(), spot, new Spot(newId, spot.bay, spot.seq));
+        }
+        return true;
+    }
+
+    public ParkingLot lot(String lotId) {
+        return registry.get(lotId);
+    }
+
+    public LotRegistry registry() {
+        return registry;
+    }
+
+    // Journal every later change to 'journal' (null stops journaling)
+    public void setJournal(ReservationJournal journal) {
+        this.journal = journal;
+    }
+
+    // Seq for a record that is not an index change (waitlist, lot changes)
+    public long nextSeq() {
+        return seq.incrementAndGet();
+    }
+
+    public long lastSeq() {
+        return seq.get();
+    }
+
+    // Recovery: continue numbering after seqs already on disk
+    public void advanceSeq(long atLeast) {
+        seq.accumulateAndGet(atLeast, Math::max);
+    }
+
+    public Outcome reserve(String vehicle, String lotId) {
+        ParkingLot lot = lot(lotId);
+        if (lot == null) return Outcome.UNKNOWN_LOT;
+        if (vehicleToSpot.containsKey(vehicle)) return Outcome.ALREADY_PARKED;
+        int bay = claimBay(lotId, vehicle);
+        if (bay < 0) return Outcome.LOT_FULL;
+        Spot spot = index(vehicle, Objects::isNull, lotId, bay);
+        if (spot == null) {
+            releaseBay(vehicle, new Spot(lotId, bay, 0));
+            return Outcome.ALREADY_PARKED;
+        }
+        record(ReservationJournal.Type.PARK, vehicle, spot);
+        return Outcome.RESERVED;
+    }
+
+    // Lot id the vehicle was freed from, or null if it was not parked
+    public String free(String vehicle) {
+        Spot spot = unindex(vehicle, s -> true);
+        if (spot == null) return null;
+        releaseBay(vehicle, spot);
+        record(ReservationJournal.Type.FREE, vehicle, spot);
+        return spot.lotId;
+    }
+
+    // Move a parked vehicle to another lot; its old slot is released only once the new one is held
+    public Outcome transfer(String vehicle, String toLotId) {
+        ParkingLot target = lot(toLotId);
+        if (target == null) return Outcome.UNKNOWN_LOT;
+        Spot from = vehicleToSpot.get(vehicle);
+        if (from == null) return Outcome.NOT_PARKED;
+        if (from.lotId.equals(toLotId)) return Outcome.ALREADY_PARKED;
+        int bay = claimBay(toLotId, vehicle);
+        if (bay < 0) return Outcome.LOT_FULL;
+        Spot to = index(vehicle, cur -> cur == from, toLotId, bay);
+        if (to == null) {
+            // Freed or moved concurrently; undo our claim
+            releaseBay(vehicle, new Spot(toLotId, bay, 0));
+            return Outcome.NOT_PARKED;
+        }
+        releaseBay(vehicle, from);
+        record(ReservationJournal.Type.TRANSFER, vehicle, to);
+        return Outcome.TRANSFERRED;
+    }
+
+    // Recovery: put a vehicle back in its recorded bay (or the lowest free one if that bay
+    // is taken), moving it if it is indexed elsewhere. Replaying the same call is harmless.
+    public boolean restore(String vehicle, String lotId, int bay, long seq) {
+        ParkingLot lot = lot(lotId);
+        if (lot == null) return false;
+        Spot current = vehicleToSpot.get(vehicle);
+        if (current != null && current.lotId.equals(lotId) && current.bay == bay) return true;
+        free(vehicle);
+        SlotMap slots = slots(lotId);
+        int handle = handleOf(vehicle);
+        int got = slots.claimBay(bay, handle) ? bay : slots.claim(handle);
+        if (got < 0) return false;
+        vehicleToSpot.put(vehicle, new Spot(lotId, got, seq));
+        return true;
+    }
+
+    // Recovery: mark 'count' more slots occupied with no vehicle on record
+    public int addOrphans(String lotId, int count) {
+        SlotMap slots = slots(lotId);
+        if (slots == null) return 0;
+        int added = 0;
+        while (added < count && slots.claim(SlotMap.ORPHAN) >= 0) added++;
+        return added;
+    }
+
+    // Release every vehicle at the lot plus any slots occupied without a vehicle on record
+    public Release emergencyFree(String lotId) {
+        ParkingLot lot = lot(lotId);
+        if (lot == null) return null;
+        List<String> freed = new ArrayList<>();
+        int slots = 0;
+        for (String vehicle : vehicleToSpot.keySet()) {
+            Spot spot = unindex(vehicle, s -> lotId.equals(s.lotId));
+            if (spot == null) continue;
+            freed.add(vehicle);
+            if (releaseBay(vehicle, spot)) slots++;
+            record(ReservationJournal.Type.EMERGENCY, vehicle, spot);
+        }
+        int orphans = slots(lotId).releaseOrphans();
+        ReservationJournal j = journal;
+        if (orphans > 0 && j != null) j.append(nextSeq(), ReservationJournal.Type.ORPHANS_RELEASE, null, lotId, -1);
+        return new Release(freed, slots + orphans);
+    }
+
+    // Index the vehicle at (lotId, bay) if 'expected' accepts its current spot (null when
+    // not parked); the new spot, or null if it was refused
+    private Spot index(String vehicle, Predicate<Spot> expected, String lotId, int bay) {
+        Spot[] placed = new Spot[1];
+        vehicleToSpot.compute(vehicle, (k, cur) ->
+                expected.test(cur) ? (placed[0] = new Spot(lotId, bay, seq.incrementAndGet())) : cur);
+        return placed[0];
+    }
+
+    // Unindex the vehicle if 'which' accepts its spot; that spot stamped with the seq of
+    // the removal, or null if nothing was removed
+    private Spot unindex(String vehicle, Predicate<Spot> which) {
+        Spot[] removed = new Spot[1];
+        vehicleToSpot.computeIfPresent(vehicle, (k, cur) -> {
+            if (!which.test(cur)) return cur;
+            removed[0] = new Spot(cur.lotId, cur.bay, seq.incrementAndGet());
+            return null;
+        });
+        return removed[0];
+    }
+
+    private void record(ReservationJournal.Type type, String vehicle, Spot spot) {
+        ReservationJournal j = journal;
+        if (j != null) j.append(spot.seq, type, vehicle, spot.lotId, spot.bay);
+    }
+
+    // Lowest free bay for the vehicle, or -1 when the lot is full
+    private int claimBay(String lotId, String vehicle) {
+        SlotMap slots = slots(lotId);
+        return slots == null ? -1 : slots.claim(handleOf(vehicle));
+    }
+
+    private boolean releaseBay(String vehicle, Spot spot) {
+        SlotMap slots = slots(spot.lotId);
+        return slots != null && slots.release(spot.bay, handleOf(vehicle));
+    }
+
+    private int handleOf(String vehicle) {
+        return handles.computeIfAbsent(vehicle, v -> {
+            int h = nextHandle.getAndIncrement();
+            handleNames.put(h, v);
+            return h;
+        });
+    }
+
+    public String lotOf(String vehicle) {
+        Spot spot = vehicleToSpot.get(vehicle);
+        return spot == null ? null : spot.lotId;
+    }
+
+    public Spot spotOf(String vehicle) {
+        return vehicleToSpot.get(vehicle);
+    }
+
+    public SlotMap slots(String lotId) {
+        int handle = registry.handleOf(lotId);
+        SlotMap[] table = slotsByHandle;
+        return handle >= 0 && handle < table.length ? table[handle] : null;
+    }
+
+    // Vehicle number parked in a bay, or null if the bay is empty or its occupant is unknown
+    public String vehicleAt(String lotId, int bay) {
+        SlotMap slots = slots(lotId);
+        if (slots == null || bay < 0 || bay >= slots.totalBays()) return null;
+        return handleNames.get(slots.vehicleAt(bay));
+    }
+
+    public boolean isParked(String vehicle) {
+        return vehicleToSpot.containsKey(vehicle);
+    }
+
+    public int parkedCount() {
+        return vehicleToSpot.size();
+    }
+
+    // Point-in-time copy of the vehicle -> bay index
+    public Map<String, Spot> spots() {
+        return new TreeMap<>(vehicleToSpot);
+    }
+
+    // Point-in-time copy of the vehicle -> lot index
+    public Map<String, String> snapshot() {
+        Map<String, String> copy = new TreeMap<>();
+        for (Map.Entry<String, Spot> e : vehicleToSpot.entrySet()) copy.put(e.getKey(), e.getValue().lotId);
+        return copy;
+    }
+}
@@ -0,0 +1,408 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/*
+ * Append-only journal of reservation events plus a compacted snapshot.
+ * Seqs come from the reservation engine's AtomicLong, taken inside the per-vehicle
+ * critical section, so one vehicle's records are numbered in the order its changes took
+ * effect. Appending only queues the record: no lock, write or fsync on the caller's
+ * thread. The journal thread (group commit) writes whatever has queued and forces it,
+ * every syncMillis or as soon as SYNC_BATCH more records exist, so a crash loses at most
+ * that window. It also folds each record into an image of the state in which, per
+ * vehicle, the highest seq wins (a freed vehicle leaves a tombstone), so the image does
+ * not depend on the order records arrive in. Once compactEvery records have built up the
+ * image becomes the snapshot and the journal is truncated; gates never wait for it.
+ * A snapshot is tagged with the seq S below which every record has arrived. It holds
+ * every change <= S (and possibly later ones), so recovery folds only the records after
+ * S, and folding one twice is harmless.
+ *
+ * Journal frame: int bodyLength | body | int crc32(body)
+ *   body: long seq, byte type, long timeMillis, UTF vehicle, UTF lotId, int bay
+ *   (LOT_RENAME carries the old id in lotId and the new id in vehicle)
+ * Snapshot file: int magic, int version, long S, long maxSeq, lots (UTF id, int orphan
+ *   slots), vehicles (UTF vehicle, long seq, boolean parked, UTF lotId, int bay), lot
+ *   changes not yet in the lot file (byte type, long seq, UTF lotId, UTF newId),
+ *   int crc32 of everything before it
+ */
+public class ReservationJournal implements AutoCloseable {
+    public enum Type { PARK, FREE, TRANSFER, EMERGENCY, WAITLIST_ADD, WAITLIST_POP, LOT_RENAME, LOT_REMOVE,
+        ORPHANS_RELEASE, LOTS_SAVED }
+
+    public static class Record {
+        public final long seq;
+        public final Type type;
+        public final long time;
+        public final String vehicle;
+        public final String lotId;
+        public final int bay;
+
+        public Record(long seq, Type type, long time, String vehicle, String lotId, int bay) {
+            this.seq = seq;
+            this.type = type;
+            this.time = time;
+            this.vehicle = vehicle;
+            this.lotId = lotId;
+            this.bay = bay;
+        }
+    }
+
+    // Reservation state folded from records. A vehicle maps to the spot of its latest
+    // record; a null lotId is a tombstone, kept until no older record can still arrive.
+    // orphans counts occupied slots with no vehicle on record per lot; lotChanges are
+    // renames/removals (in order) that the lot file may not reflect yet.
+    public static class State {
+        private static final int MAX_AHEAD = 1 << 16;
+
+        public final Map<String, ReservationEngine.Spot> vehicles = new HashMap<>();
+        public final Map<String, Integer> orphans = new LinkedHashMap<>();
+        public final List<Record> lotChanges = new ArrayList<>();
+        public long watermark; // every record with seq <= watermark has been folded
+        public long maxSeq;
+        public int replayed;   // journal records folded in by recover()
+        private final TreeSet<Long> ahead = new TreeSet<>();
+
+        // State that is complete up to 'seq'
+        public State(long seq) {
+            this.watermark = seq;
+            this.maxSeq = seq;
+        }
+
+        void fold(Record r) {
+            maxSeq = Math.max(maxSeq, r.seq);
+            switch (r.type) {
+                case PARK, TRANSFER -> put(r.vehicle, new ReservationEngine.Spot(r.lotId, r.bay, r.seq));
+                case FREE -> put(r.vehicle, new ReservationEngine.Spot(null, -1, r.seq));
+                case EMERGENCY -> {
+                    if (!r.vehicle.isEmpty()) {
+                        put(r.vehicle, new ReservationEngine.Spot(null, -1, r.seq));
+                    } else {
+                        // Older format: one record cleared the whole lot
+                        vehicles.replaceAll((v, s) -> r.lotId.equals(s.lotId) && s.seq < r.seq
+                                ? new ReservationEngine.Spot(null, -1, r.seq) : s);
+                        orphans.computeIfPresent(r.lotId, (id, n) -> 0);
+                    }
+                }
+                case ORPHANS_RELEASE -> orphans.computeIfPresent(r.lotId, (id, n) -> 0);
+                case LOT_RENAME -> {
+                    vehicles.replaceAll((v, s) -> r.lotId.equals(s.lotId)
+                            ? new ReservationEngine.Spot(r.vehicle, s.bay, s.seq) : s);
+                    Integer n = orphans.remove(r.lotId);
+                    if (n != null) orphans.put(r.vehicle, n);
+                    lotChanges.add(r);
+                }
+                case LOT_REMOVE -> {
+                    orphans.remove(r.lotId);
+                    lotChanges.add(r);
+                }
+                case LOTS_SAVED -> lotChanges.removeIf(c -> c.seq < r.seq);
+                // waitlist.txt is WaitlistManager's own append-only log
+                case WAITLIST_ADD, WAITLIST_POP -> { }
+            }
+            arrived(r.seq);
+        }
+
+        private void put(String vehicle, ReservationEngine.Spot spot) {
+            vehicles.merge(vehicle, spot, (old, now) -> now.seq > old.seq ? now : old);
+        }
+
+        private void arrived(long seq) {
+            if (seq <= watermark) return;
+            ahead.add(seq);
+            // A seq taken without a record would hold the watermark forever; stop waiting for it
+            if (ahead.size() > MAX_AHEAD) watermark = ahead.first() - 1;
+            while (!ahead.isEmpty() && ahead.first() == watermark + 1) watermark = ahead.pollFirst();
+        }
+
+        // Tombstones only guard against older records still on their way; once the
+        // watermark has passed one, none can be
+        void prune() {
+            vehicles.values().removeIf(s -> s.lotId == null && s.seq <= watermark);
+        }
+    }
+
+    private static final int SNAPSHOT_MAGIC = 0x4A525053; // "SPRJ" read little-endian
+    private static final int SNAPSHOT_VERSION = 3; // 1 had no lot changes, 2 stored counters instead of orphans
+    private static final int SYNC_BATCH = 256; // power of two: a seq that is a multiple wakes the writer
+    private static final int MAX_RECORD_BYTES = 1 << 16;
+    private static final int WRITE_BATCH = 4096;
+
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final int compactEvery;
+    private final FileChannel channel;
+    private final ScheduledExecutorService writer;
+    private final ConcurrentLinkedQueue<Record> queue = new ConcurrentLinkedQueue<>();
+    private State state; // the journal thread's image; null until open()
+    private int sinceCheckpoint;
+
+    public ReservationJournal(String journalFile, String snapshotFile, long syncMillis, int compactEvery) throws IOException {
+        this.journalPath = Paths.get(journalFile);
+        this.snapshotPath = Paths.get(snapshotFile);
+        this.compactEvery = Math.max(1, compactEvery);
+        this.channel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, syncMillis);
+        writer.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Snapshot plus every journal record after it, folded. A torn or corrupt tail (crash
+    // mid-write) is cut off so new records start after the last good one.
+    public synchronized State recover() throws IOException {
+        State recovered = readSnapshot();
+        if (recovered == null) recovered = new State(0);
+        long after = recovered.watermark;
+        for (Record r : readRecords()) {
+            if (r.seq <= after) continue;
+            recovered.fold(r);
+            recovered.replayed++;
+        }
+        return recovered;
+    }
+
+    // Start journaling on top of 'current' (the state the owner rebuilt) and snapshot it
+    public synchronized void open(State current) throws IOException {
+        state = current;
+        checkpoint();
+    }
+
+    // Queue one record. Runs on the gates' threads, so it never locks or touches the disk.
+    public void append(long seq, Type type, String vehicle, String lotId, int bay) {
+        queue.offer(new Record(seq, type, System.currentTimeMillis(),
+                vehicle == null ? "" : vehicle, lotId == null ? "" : lotId, bay));
+        if ((seq & (SYNC_BATCH - 1)) == 0) {
+            try {
+                writer.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // closing; close() flushes what is queued
+            }
+        }
+    }
+
+    // Write and force everything queued so far, on the journal thread
+    public void sync() throws IOException {
+        try {
+            writer.submit(() -> { flush(); return null; }).get();
+        } catch (RejectedExecutionException e) {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    private synchronized void flush() throws IOException {
+        if (state == null) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * WRITE_BATCH);
+        DataOutputStream out = new DataOutputStream(bytes);
+        int written = 0;
+        while (true) {
+            bytes.reset();
+            int n = 0;
+            Record r;
+            while (n < WRITE_BATCH && (r = queue.poll()) != null) {
+                encode(r, out);
+                state.fold(r);
+                n++;
+            }
+            if (n == 0) break;
+            ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+            while (buf.hasRemaining()) channel.write(buf);
+            written += n;
+        }
+        if (written == 0) return;
+        channel.force(false);
+        sinceCheckpoint += written;
+        if (sinceCheckpoint >= compactEvery) checkpoint();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.out.println("Journal write error: " + e.getMessage());
+        }
+    }
+
+    // Write the folded image as the new snapshot and drop the journal behind it. Every
+    // record written so far is in the image; if we crash before the truncate, recover()
+    // skips the records the snapshot covers and re-folding the rest changes nothing.
+    private void checkpoint() throws IOException {
+        state.prune();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeLong(state.watermark);
+        out.writeLong(state.maxSeq);
+        out.writeInt(state.orphans.size());
+        for (Map.Entry<String, Integer> e : state.orphans.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeInt(e.getValue());
+        }
+        out.writeInt(state.vehicles.size());
+        for (Map.Entry<String, ReservationEngine.Spot> e : state.vehicles.entrySet()) {
+            ReservationEngine.Spot spot = e.getValue();
+            out.writeUTF(e.getKey());
+            out.writeLong(spot.seq);
+            out.writeBoolean(spot.lotId != null);
+            out.writeUTF(spot.lotId == null ? "" : spot.lotId);
+            out.writeInt(spot.bay);
+        }
+        out.writeInt(state.lotChanges.size());
+        for (Record r : state.lotChanges) {
+            out.writeByte(r.type.ordinal());
+            out.writeLong(r.seq);
+            out.writeUTF(r.lotId);
+            out.writeUTF(r.vehicle);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        Path tmp = Paths.get(snapshotPath + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        channel.truncate(0);
+        channel.force(true);
+        sinceCheckpoint = 0;
+    }
+
+    // Drain the queue and leave a fresh snapshot behind
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (state != null) {
+                flush();
+                checkpoint();
+            }
+            channel.close();
+        }
+    }
+
+    // Latest snapshot, or null if there is none, it fails its checksum or it predates version 3
+    private State readSnapshot() {
+        if (!Files.exists(snapshotPath)) return null;
+        try {
+            byte[] bytes = Files.readAllBytes(snapshotPath);
+            if (bytes.length < 4) return null;
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()) return null;
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+            if (in.readInt() != SNAPSHOT_MAGIC) return null;
+            if (in.readInt() != SNAPSHOT_VERSION) return null;
+            State snapshot = new State(in.readLong());
+            snapshot.maxSeq = in.readLong();
+            for (int i = in.readInt(); i > 0; i--) snapshot.orphans.put(in.readUTF(), in.readInt());
+            for (int i = in.readInt(); i > 0; i--) {
+                String vehicle = in.readUTF();
+                long seq = in.readLong();
+                boolean parked = in.readBoolean();
+                String lotId = in.readUTF();
+                snapshot.vehicles.put(vehicle, new ReservationEngine.Spot(parked ? lotId : null, in.readInt(), seq));
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                int type = in.readByte();
+                if (type < 0 || type >= Type.values().length) return null;
+                long seq = in.readLong();
+                String lotId = in.readUTF();
+                snapshot.lotChanges.add(new Record(seq, Type.values()[type], 0, in.readUTF(), lotId, -1));
+            }
+            return snapshot;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Every good record in the journal file, in file order
+    private List<Record> readRecords() throws IOException {
+        List<Record> records = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+        channel.read(buf, 0);
+        buf.flip();
+        long good = 0;
+        while (buf.remaining() >= 4) {
+            int len = buf.getInt();
+            if (len <= 0 || len > MAX_RECORD_BYTES || buf.remaining() < len + 4) break;
+            byte[] body = new byte[len];
+            buf.get(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != buf.getInt()) break;
+
+            Record r = decode(body);
+            if (r == null) break;
+            good = buf.position();
+            records.add(r);
+        }
+        if (good < channel.size()) {
+            System.out.println("Warning: journal tail damaged, truncating at byte " + good);
+            channel.truncate(good);
+            channel.force(true);
+        }
+        channel.position(good);
+        return records;
+    }
+
+    private static void encode(Record r, DataOutputStream frames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(r.seq);
+        out.writeByte(r.type.ordinal());
+        out.writeLong(r.time);
+        out.writeUTF(r.vehicle);
+        out.writeUTF(r.lotId);
+        out.writeInt(r.bay);
+        byte[] body = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        frames.writeInt(body.length);
+        frames.write(body);
+        frames.writeInt((int) crc.getValue());
+    }
+
+    private static Record decode(byte[] body) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            long seq = in.readLong();
+            int type = in.readByte();
+            if (type < 0 || type >= Type.values().length) return null;
+            long time = in.readLong();
+            String vehicle = in.readUTF();
+            String lotId = in.readUTF();
+            int bay = in.readInt();
+            return new Record(seq, Type.values()[type], time, vehicle, lotId, bay);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/*
+ * Routing engines for one graph, shared by concurrent callers. Dijkstra and
+ * ContractionHierarchy keep per-query scratch arrays, so each caller borrows an engine
+ * of its own; copies share the graph, heuristic and hierarchy data and are created on
+ * demand up to 'max', after which callers wait (routing is CPU-bound, so running more
+ * searches than cores gains nothing). A Dijkstra.Result must be consumed inside the
+ * query function: it reads the engine's arrays and goes stale once the engine is reused.
+ */
+public class RouterPool {
+    public static class Engine {
+        public final Dijkstra dijkstra;
+        public final ContractionHierarchy hierarchy; // null when none is loaded
+
+        Engine(Dijkstra dijkstra, ContractionHierarchy hierarchy) {
+            this.dijkstra = dijkstra;
+            this.hierarchy = hierarchy;
+        }
+    }
+
+    private final Dijkstra prototype;
+    private final ContractionHierarchy hierarchy;
+    private final ConcurrentLinkedQueue<Engine> idle = new ConcurrentLinkedQueue<>();
+    private final Semaphore permits;
+
+    public RouterPool(Dijkstra prototype, ContractionHierarchy hierarchy, int max) {
+        this.prototype = prototype;
+        this.hierarchy = hierarchy;
+        this.permits = new Semaphore(Math.max(1, max));
+        idle.add(new Engine(prototype, hierarchy));
+    }
+
+    // Same engines with a (new) hierarchy attached
+    public RouterPool withHierarchy(ContractionHierarchy ch, int max) {
+        return new RouterPool(prototype, ch, max);
+    }
+
+    public CompactGraph graph() {
+        return prototype.getGraph();
+    }
+
+    public <T> T query(Function<Engine, T> query) {
+        permits.acquireUninterruptibly();
+        Engine e = idle.poll();
+        if (e == null) e = new Engine(new Dijkstra(prototype), hierarchy == null ? null : hierarchy.copy());
+        try {
+            return query.apply(e);
+        } finally {
+            idle.offer(e);
+            permits.release();
+        }
+    }
+
+    // An engine that belongs to the caller alone, e.g. to keep a Result around
+    public Dijkstra dedicated() {
+        return new Dijkstra(prototype);
+    }
+}
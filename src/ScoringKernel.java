@@ -0,0 +1,217 @@
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Struct-of-arrays lot scoring. Callers fill one row per lot into a Batch (distance,
+ * availability, rating, cost and facility columns as primitive arrays), then score()
+ * drops unreachable rows and finds the distance and cost ranges in a single pass,
+ * folds the normalization into per-factor coefficients so every score is one chain of
+ * multiply-adds in a branch-free counted loop (which C2 auto-vectorizes), and keeps the
+ * best k rows in a bounded min-heap instead of sorting every lot. Batches come from a
+ * shared pool (acquire/release) rather than one per thread, so a virtual thread per
+ * request still reuses grown arrays and once they fit the lot count nothing is allocated.
+ */
+public class ScoringKernel {
+
+    // Factor weights; the score is their weighted sum of 0-1 factors (higher is better)
+    public static class Weights {
+        public final double distance, availability, rating, cost, facility;
+
+        public Weights(double distance, double availability, double rating, double cost, double facility) {
+            this.distance = distance;
+            this.availability = availability;
+            this.rating = rating;
+            this.cost = cost;
+            this.facility = facility;
+        }
+
+        // "distance,availability,rating,cost,facility", e.g. "0.25,0.20,0.15,0.20,0.20"
+        public static Weights parse(String spec) {
+            String[] p = spec.split(",");
+            if (p.length != 5) throw new IllegalArgumentException("Expected 5 weights, got: " + spec);
+            double[] w = new double[5];
+            for (int i = 0; i < 5; i++) w[i] = Double.parseDouble(p[i].trim());
+            return new Weights(w[0], w[1], w[2], w[3], w[4]);
+        }
+
+        @Override
+        public String toString() {
+            return distance + "," + availability + "," + rating + "," + cost + "," + facility;
+        }
+    }
+
+    public static final Weights DEFAULT_WEIGHTS = new Weights(0.25, 0.20, 0.15, 0.20, 0.20);
+
+    public static class Batch {
+        public ParkingLot[] lots = new ParkingLot[64];
+        public double[] distance = new double[64];     // km; NaN until known, infinite if unreachable
+        public double[] availability = new double[64]; // free / total slots
+        public double[] rating = new double[64];       // 1-5 stars
+        public double[] cost = new double[64];         // per hour
+        public double[] facility = new double[64];     // 0-1 amenity score
+        public double[] score = new double[64];
+        public int[] top = new int[64];                // after score(): best rows first
+        public int size;
+        double costBase, costSlope;                    // cost factor = costBase + costSlope * cost
+
+        public void clear() {
+            for (int i = 0; i < size; i++) lots[i] = null;
+            size = 0;
+        }
+
+        public int add(ParkingLot lot, double distance, double availability, double rating, double cost, double facility) {
+            if (size == lots.length) grow();
+            int i = size++;
+            this.lots[i] = lot;
+            this.distance[i] = distance;
+            this.availability[i] = availability;
+            this.rating[i] = rating;
+            this.cost[i] = cost;
+            this.facility[i] = facility;
+            return i;
+        }
+
+        // Normalized 0-1 cost factor of row i (cheaper is higher), valid after score()
+        public double costFactor(int i) {
+            return costBase + costSlope * cost[i];
+        }
+
+        private void grow() {
+            int n = lots.length * 2;
+            lots = Arrays.copyOf(lots, n);
+            distance = Arrays.copyOf(distance, n);
+            availability = Arrays.copyOf(availability, n);
+            rating = Arrays.copyOf(rating, n);
+            cost = Arrays.copyOf(cost, n);
+            facility = Arrays.copyOf(facility, n);
+            score = Arrays.copyOf(score, n);
+            top = Arrays.copyOf(top, n);
+        }
+    }
+
+    // Idle batches; at most POOL_LIMIT are kept, extras from a burst are left to the GC
+    private static final int POOL_LIMIT = Runtime.getRuntime().availableProcessors() * 2;
+    private static final Queue<Batch> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    // An empty batch for this caller alone; hand it back with release() when done
+    public static Batch acquire() {
+        Batch b = POOL.poll();
+        if (b == null) return new Batch();
+        pooled.decrementAndGet();
+        return b;
+    }
+
+    public static void release(Batch b) {
+        b.clear();
+        if (pooled.incrementAndGet() <= POOL_LIMIT) {
+            POOL.offer(b);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    // Scores every reachable row and puts the best k (best first) in b.top; returns how
+    // many that is. Rows with an infinite or unknown distance are removed from the batch.
+    public static int score(Batch b, Weights w, int k) {
+        // Compact reachable rows and find the distance and cost ranges in one pass
+        int n = 0;
+        double minD = Double.POSITIVE_INFINITY, maxD = Double.NEGATIVE_INFINITY;
+        double minC = Double.POSITIVE_INFINITY, maxC = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < b.size; i++) {
+            double d = b.distance[i];
+            if (!(d < Double.POSITIVE_INFINITY)) continue;
+            if (n != i) {
+                b.lots[n] = b.lots[i];
+                b.distance[n] = d;
+                b.availability[n] = b.availability[i];
+                b.rating[n] = b.rating[i];
+                b.cost[n] = b.cost[i];
+                b.facility[n] = b.facility[i];
+            }
+            double c = b.cost[n];
+            minD = Math.min(minD, d);
+            maxD = Math.max(maxD, d);
+            minC = Math.min(minC, c);
+            maxC = Math.max(maxC, c);
+            n++;
+        }
+        for (int i = n; i < b.size; i++) b.lots[i] = null;
+        b.size = n;
+        if (n == 0) return 0;
+
+        // factor = base + slope * value: 1 at the minimum, 0 at the maximum, 0.5 if all equal
+        double rangeD = maxD - minD, rangeC = maxC - minC;
+        double slopeD = rangeD > 0 ? -1.0 / rangeD : 0.0;
+        double baseD = rangeD > 0 ? 1.0 + minD / rangeD : 0.5;
+        b.costSlope = rangeC > 0 ? -1.0 / rangeC : 0.0;
+        b.costBase = rangeC > 0 ? 1.0 + minC / rangeC : 0.5;
+
+        // Constant terms folded together; rating 1-5 maps to 0-1
+        double constant = w.distance * baseD + w.cost * b.costBase - w.rating * 0.25;
+        double kd = w.distance * slopeD, kc = w.cost * b.costSlope, kr = w.rating * 0.25;
+        double ka = w.availability, kf = w.facility;
+        double[] dist = b.distance, avail = b.availability, rate = b.rating, cost = b.cost, fac = b.facility, score = b.score;
+        for (int i = 0; i < n; i++) {
+            score[i] = constant + kd * dist[i] + ka * avail[i] + kr * rate[i] + kc * cost[i] + kf * fac[i];
+        }
+        return selectTop(b, Math.min(k, n));
+    }
+
+    // Bounded min-heap of the k best rows (worst at the root), then drained best-first
+    private static int selectTop(Batch b, int k) {
+        if (k <= 0) return 0;
+        int[] heap = b.top;
+        double[] s = b.score;
+        int size = 0;
+        for (int i = 0; i < b.size; i++) {
+            if (size < k) {
+                heap[size] = i;
+                siftUp(heap, s, size++);
+            } else if (better(s, i, heap[0])) {
+                heap[0] = i;
+                siftDown(heap, s, 0, size);
+            }
+        }
+        // Pop the worst to the back until the array reads best first
+        for (int end = size - 1; end > 0; end--) {
+            int worst = heap[0];
+            heap[0] = heap[end];
+            heap[end] = worst;
+            siftDown(heap, s, 0, end);
+        }
+        return size;
+    }
+
+    // Higher score wins; equal scores keep input order
+    private static boolean better(double[] s, int a, int b) {
+        return s[a] > s[b] || (s[a] == s[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, double[] s, int i) {
+        int id = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(s, heap[parent], id)) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = id;
+    }
+
+    private static void siftDown(int[] heap, double[] s, int i, int size) {
+        int id = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && better(s, heap[child], heap[right])) child = right;
+            if (!better(s, id, heap[child])) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = id;
+    }
+}
@@ -0,0 +1,215 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Bay-level occupancy for one lot: one bit per bay (1 = occupied) in lock-free words,
+ * grouped into levels of whole words, with a summary bitmap marking full words so a
+ * free bay is found with a couple of trailing-zero counts instead of a scan.
+ * Each bay also records a vehicle handle in a primitive array (0 = none,
+ * ORPHAN = occupied but no vehicle on record). Padding bits past the last bay are
+ * permanently set so every word can be treated as 64 bays.
+ * The map is the only writer of its lot's availableSlots: the count is set from the
+ * popcount when the map is built and moves by one exactly when a bay bit flips.
+ */
+public class SlotMap {
+    public static final int DEFAULT_LEVEL_SIZE = 512;
+    public static final int ORPHAN = -1;
+
+    private final ParkingLot lot;
+    private final int totalBays;
+    private final int wordsPerLevel;
+    private final AtomicLongArray words;
+    private final AtomicLongArray fullWords; // hint: bit w set when words[w] looked full
+    private final AtomicIntegerArray vehicles;
+
+    // The first 'occupied' bays start out as ORPHAN, matching counts loaded from disk
+    public SlotMap(ParkingLot lot, int occupied, int levelSize) {
+        this.lot = lot;
+        this.totalBays = Math.max(0, lot.totalSlots);
+        this.wordsPerLevel = Math.max(1, (levelSize + 63) / 64);
+        int wordCount = (this.totalBays + 63) / 64;
+        this.words = new AtomicLongArray(Math.max(1, wordCount));
+        this.fullWords = new AtomicLongArray(Math.max(1, (wordCount + 63) / 64));
+        this.vehicles = new AtomicIntegerArray(Math.max(1, this.totalBays));
+
+        if (wordCount == 0) {
+            words.set(0, -1L);
+        } else if (this.totalBays % 64 != 0) {
+            words.set(wordCount - 1, -1L << (this.totalBays % 64));
+        }
+        for (int bay = 0; bay < Math.min(occupied, this.totalBays); bay++) {
+            words.set(bay >>> 6, words.get(bay >>> 6) | (1L << bay));
+            vehicles.set(bay, ORPHAN);
+        }
+        for (int w = 0; w < words.length(); w++) {
+            if (words.get(w) == -1L) markFull(w);
+        }
+        lot.publishAvailable(freeCount());
+    }
+
+    // Map for the lot's current count: its occupied slots become ORPHAN bays
+    public SlotMap(ParkingLot lot) {
+        this(lot, Math.max(0, lot.totalSlots - lot.availableSlots()), DEFAULT_LEVEL_SIZE);
+    }
+
+    public int totalBays() { return totalBays; }
+
+    public int levelCount() {
+        return Math.max(1, (words.length() + wordsPerLevel - 1) / wordsPerLevel);
+    }
+
+    // Claim any free bay, lowest level first; -1 when full
+    public int claim(int vehicle) {
+        return claim(vehicle, 0, words.length());
+    }
+
+    // Claim a free bay on one level; -1 when that level is full
+    public int claimOnLevel(int vehicle, int level) {
+        int first = level * wordsPerLevel;
+        return claim(vehicle, first, Math.min(words.length(), first + wordsPerLevel));
+    }
+
+    private int claim(int vehicle, int fromWord, int toWord) {
+        // Summary pass: only visit words not marked full
+        for (int sw = fromWord >>> 6; sw <= (toWord - 1) >>> 6 && sw < fullWords.length(); sw++) {
+            long candidates = ~fullWords.get(sw) & rangeMask(sw, fromWord, toWord);
+            while (candidates != 0) {
+                int w = (sw << 6) + Long.numberOfTrailingZeros(candidates);
+                int bay = claimInWord(w, vehicle);
+                if (bay >= 0) return bay;
+                candidates &= candidates - 1;
+            }
+        }
+        // Hints can be stale under contention; fall back to checking every word
+        for (int w = fromWord; w < toWord; w++) {
+            int bay = claimInWord(w, vehicle);
+            if (bay >= 0) return bay;
+        }
+        return -1;
+    }
+
+    private int claimInWord(int w, int vehicle) {
+        while (true) {
+            long cur = words.get(w);
+            long free = ~cur;
+            if (free == 0) {
+                markFull(w);
+                return -1;
+            }
+            long bit = free & -free;
+            if (words.compareAndSet(w, cur, cur | bit)) {
+                if ((cur | bit) == -1L) markFull(w);
+                int bay = (w << 6) + Long.numberOfTrailingZeros(bit);
+                vehicles.set(bay, vehicle);
+                lot.addAvailable(-1);
+                return bay;
+            }
+        }
+    }
+
+    // Claim one specific bay; false if it is already taken
+    public boolean claimBay(int bay, int vehicle) {
+        if (bay < 0 || bay >= totalBays) return false;
+        int w = bay >>> 6;
+        long bit = 1L << bay;
+        while (true) {
+            long cur = words.get(w);
+            if ((cur & bit) != 0) return false;
+            if (words.compareAndSet(w, cur, cur | bit)) {
+                if ((cur | bit) == -1L) markFull(w);
+                vehicles.set(bay, vehicle);
+                lot.addAvailable(-1);
+                return true;
+            }
+        }
+    }
+
+    // Free a bay held by 'vehicle'; false if it is empty or now held by someone else, so a
+    // double or stale release never evicts the bay's current occupant
+    public boolean release(int bay, int vehicle) {
+        if (bay < 0 || bay >= totalBays || vehicle == 0) return false;
+        if (!vehicles.compareAndSet(bay, vehicle, 0)) return false;
+        int w = bay >>> 6;
+        long bit = 1L << bay;
+        while (true) {
+            long cur = words.get(w);
+            if ((cur & bit) == 0) return false;
+            if (words.compareAndSet(w, cur, cur & ~bit)) {
+                clearFull(w);
+                lot.addAvailable(1);
+                return true;
+            }
+        }
+    }
+
+    // Release every ORPHAN bay and return how many were freed
+    public int releaseOrphans() {
+        int freed = 0;
+        for (int bay = 0; bay < totalBays; bay++) {
+            if (vehicles.get(bay) == ORPHAN && release(bay, ORPHAN)) freed++;
+        }
+        return freed;
+    }
+
+    // Occupied bays with no vehicle on record
+    public int orphanCount() {
+        int count = 0;
+        for (int bay = 0; bay < totalBays; bay++) {
+            if (vehicles.get(bay) == ORPHAN) count++;
+        }
+        return count;
+    }
+
+    public boolean isOccupied(int bay) {
+        return (words.get(bay >>> 6) & (1L << bay)) != 0;
+    }
+
+    public int vehicleAt(int bay) {
+        return vehicles.get(bay);
+    }
+
+    // Derived from popcounts; padding bits in the last word are excluded
+    public int occupiedCount() {
+        int count = 0;
+        for (int w = 0; w < words.length(); w++) count += Long.bitCount(words.get(w));
+        return count - (words.length() * 64 - totalBays);
+    }
+
+    public int freeCount() {
+        return totalBays - occupiedCount();
+    }
+
+    public int levelOf(int bay) {
+        return (bay >>> 6) / wordsPerLevel;
+    }
+
+    // Human-readable bay label, e.g. L2-017
+    public String label(int bay) {
+        int level = levelOf(bay);
+        return String.format("L%d-%03d", level + 1, bay - level * wordsPerLevel * 64 + 1);
+    }
+
+    private long rangeMask(int sw, int fromWord, int toWord) {
+        int lo = Math.max(fromWord - (sw << 6), 0);
+        int hi = Math.min(toWord - (sw << 6), 64);
+        if (hi <= lo) return 0L;
+        long upper = hi == 64 ? -1L : (1L << hi) - 1;
+        return upper & (-1L << lo);
+    }
+
+    private void markFull(int w) {
+        long bit = 1L << w;
+        long cur;
+        do {
+            cur = fullWords.get(w >>> 6);
+        } while ((cur & bit) == 0 && !fullWords.compareAndSet(w >>> 6, cur, cur | bit));
+    }
+
+    private void clearFull(int w) {
+        long bit = 1L << w;
+        long cur;
+        do {
+            cur = fullWords.get(w >>> 6);
+        } while ((cur & bit) != 0 && !fullWords.compareAndSet(w >>> 6, cur, cur & ~bit));
+    }
+}
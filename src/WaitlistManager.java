@@ -1,38 +1,339 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.function.Predicate;
 
 /*
- * Simple queue-based waitlist with persistence file path.
+ * Waitlist as an indexed linked queue. Every entry is threaded on the global FIFO list
+ * and on one group list: the lot it asked for, or the set of amenities it needs (the
+ * empty set meaning any lot). A vehicle -> entry map gives O(1) dedupe and cancel, and
+ * pollFor(lot) takes the oldest compatible head among at most 17 groups, so no
+ * queue operation walks the queue (only renaming or removing a lot walks its waiters).
+ * The file is an append-only log of "+" (add), "-" (remove) and "R" (lot renamed or
+ * removed) lines that keeps each entry's original enqueue time; once dead lines
+ * outweigh live entries it is rewritten with just the live ones. Plain
+ * "VEHICLE,epochSeconds" lines from older files load too.
  */
 public class WaitlistManager {
-    private Queue<String> queue;
-    private String filepath;
+    private static final int COMPACT_SLACK = 1024;
+
+    public static class Entry {
+        public final String vehicle;
+        private String lotId;           // null when any lot will do
+        private int amenities;          // AvailabilityStats amenity bits the lot must offer
+        public final long enqueuedAt;   // epoch millis
+        private final long seq;
+        private Entry prev, next;
+        private Entry groupPrev, groupNext;
+        private Group group;
+
+        private Entry(String vehicle, String lotId, int amenities, long enqueuedAt, long seq) {
+            this.vehicle = vehicle;
+            this.lotId = lotId;
+            this.amenities = amenities;
+            this.enqueuedAt = enqueuedAt;
+            this.seq = seq;
+        }
+
+        public String lotId() { return lotId; }
+
+        public int amenities() { return amenities; }
+    }
+
+    private static class Group {
+        final String lotId; // null for amenity groups
+        Entry head, tail;
+        int size;
+
+        Group(String lotId) {
+            this.lotId = lotId;
+        }
+    }
+
+    private final String filepath;
+    private final Map<String, Entry> byVehicle = new HashMap<>();
+    private final Map<String, Group> byLot = new HashMap<>();
+    private final Group[] byAmenities = new Group[16];
+    private Entry head, tail;
+    private long nextSeq;
+    private Writer out;
+    private int logLines;
 
     public WaitlistManager(String filepath) {
         this.filepath = filepath;
-        try { this.queue = FileUtil.loadWaitlist(filepath); }
-        catch (Exception ex) { this.queue = new LinkedList<>(); }
+        for (int i = 0; i < byAmenities.length; i++) byAmenities[i] = new Group(null);
+        try {
+            load();
+        } catch (Exception ex) {
+            System.out.println("Error loading waitlist: " + ex.getMessage());
+        }
     }
 
-    public void add(String vehicleNumber) {
-        queue.add(vehicleNumber.toUpperCase());
-        persist();
+    // Queue for any lot; false if the vehicle is already waiting
+    public boolean add(String vehicleNumber) {
+        return add(vehicleNumber, null, 0);
+    }
+
+    // Queue for one lot, or (lotId null) for any lot offering 'amenities'
+    public synchronized boolean add(String vehicleNumber, String lotId, int amenities) {
+        Entry e = link(vehicleNumber.toUpperCase(), lotId, amenities & 15, System.currentTimeMillis());
+        if (e == null) return false;
+        record(e);
+        return true;
     }
-    
 
-    public String pop() {
-        String v = queue.poll();
+    // Oldest entry regardless of what it waits for
+    public synchronized String pop() {
+        Entry e = head;
+        if (e == null) return null;
+        unlink(e);
+        record("-," + e.vehicle);
+        return e.vehicle;
+    }
+
+    // Oldest entry that 'lot' can serve: waiting for this lot, or for amenities it offers
+    public synchronized Entry pollFor(ParkingLot lot) {
+        Entry best = nextFor(lot);
+        if (best == null) return null;
+        unlink(best);
+        record("-," + best.vehicle);
+        return best;
+    }
+
+    // Offer up to 'max' waiters for 'lot', in the order pollFor would give them, to 'serve'
+    // (called under this queue's lock, so it must not call back into it). Each one it
+    // accepts leaves the queue, with a single write to the file for the batch; the first
+    // refusal ends the pass and leaves that waiter, and everyone behind it, in place.
+    public synchronized List<Entry> serve(ParkingLot lot, int max, Predicate<Entry> serve) {
+        List<Entry> taken = new ArrayList<>(Math.min(Math.max(0, max), byVehicle.size()));
+        Entry e;
+        while (taken.size() < max && (e = nextFor(lot)) != null && serve.test(e)) {
+            unlink(e);
+            write("-," + e.vehicle);
+            taken.add(e);
+        }
+        if (!taken.isEmpty()) flushLog();
+        return taken;
+    }
+
+    private Entry nextFor(ParkingLot lot) {
+        Entry best = null;
+        Group forLot = byLot.get(lot.id);
+        if (forLot != null) best = forLot.head;
+        int offered = lot.amenities;
+        for (int mask = 0; mask < byAmenities.length; mask++) {
+            if ((mask & ~offered) != 0) continue;
+            Entry h = byAmenities[mask].head;
+            if (h != null && (best == null || h.seq < best.seq)) best = h;
+        }
+        return best;
+    }
+
+    // The lot was renamed; vehicles waiting for it keep their place
+    public synchronized void renameLot(String oldId, String newId) {
+        if (moveGroup(oldId, newId)) record("R," + oldId + "," + newId);
+    }
+
+    // The lot is gone; vehicles waiting for it now wait for any lot, keeping their place
+    public synchronized void dropLot(String lotId) {
+        if (moveGroup(lotId, null)) record("R," + lotId + ",");
+    }
+
+    // Remove a vehicle from anywhere in the queue
+    public synchronized boolean cancel(String vehicleNumber) {
+        Entry e = byVehicle.get(vehicleNumber.toUpperCase());
+        if (e == null) return false;
+        unlink(e);
+        record("-," + e.vehicle);
+        return true;
+    }
+
+    public synchronized boolean contains(String vehicleNumber) {
+        return byVehicle.containsKey(vehicleNumber.toUpperCase());
+    }
+
+    public synchronized Entry entryOf(String vehicleNumber) {
+        return byVehicle.get(vehicleNumber.toUpperCase());
+    }
+
+    public synchronized boolean isEmpty() { return head == null; }
+
+    public synchronized int size() { return byVehicle.size(); }
+
+    // Number of vehicles waiting specifically for this lot
+    public synchronized int waitingFor(String lotId) {
+        Group g = byLot.get(lotId);
+        return g == null ? 0 : g.size;
+    }
+
+    // Flush pending appends and compact the file if it has grown mostly dead
+    public synchronized void persist() {
+        flushLog();
+    }
+
+    public synchronized void close() {
         persist();
-        return v;
+        try {
+            if (out != null) out.close();
+        } catch (IOException ex) {
+            System.out.println("Error saving waitlist: " + ex.getMessage());
+        }
+        out = null;
+    }
+
+    // Vehicles in queue order
+    public synchronized List<String> snapshot() {
+        List<String> list = new ArrayList<>(byVehicle.size());
+        for (Entry e = head; e != null; e = e.next) list.add(e.vehicle);
+        return list;
+    }
+
+    public synchronized List<Entry> entries() {
+        List<Entry> list = new ArrayList<>(byVehicle.size());
+        for (Entry e = head; e != null; e = e.next) list.add(e);
+        return list;
+    }
+
+    private Entry link(String vehicle, String lotId, int amenities, long enqueuedAt) {
+        if (byVehicle.containsKey(vehicle)) return null;
+        if (lotId != null && lotId.isEmpty()) lotId = null;
+        if (lotId != null) amenities = 0;
+        Entry e = new Entry(vehicle, lotId, amenities, enqueuedAt, nextSeq++);
+        byVehicle.put(vehicle, e);
+        e.prev = tail;
+        if (tail == null) head = e; else tail.next = e;
+        tail = e;
+        Group g = lotId != null ? byLot.computeIfAbsent(lotId, Group::new) : byAmenities[amenities];
+        e.group = g;
+        e.groupPrev = g.tail;
+        if (g.tail == null) g.head = e; else g.tail.groupNext = e;
+        g.tail = e;
+        g.size++;
+        return e;
+    }
+
+    private void unlink(Entry e) {
+        byVehicle.remove(e.vehicle);
+        if (e.prev == null) head = e.next; else e.prev.next = e.next;
+        if (e.next == null) tail = e.prev; else e.next.prev = e.prev;
+        Group g = e.group;
+        if (e.groupPrev == null) g.head = e.groupNext; else e.groupPrev.groupNext = e.groupNext;
+        if (e.groupNext == null) g.tail = e.groupPrev; else e.groupNext.groupPrev = e.groupPrev;
+        g.size--;
+        if (g.head == null && g.lotId != null) byLot.remove(g.lotId);
+        e.prev = e.next = e.groupPrev = e.groupNext = null;
+    }
+
+    // Merge the waiters of lot 'from' into lot 'to' (or the any-lot group), in queue order
+    private boolean moveGroup(String from, String to) {
+        if (to != null && to.isEmpty()) to = null;
+        if (from == null || from.equals(to)) return false;
+        Group g = byLot.remove(from);
+        if (g == null) return false;
+        Group target = to != null ? byLot.computeIfAbsent(to, Group::new) : byAmenities[0];
+        Entry a = target.head, b = g.head;
+        target.head = target.tail = null;
+        target.size = 0;
+        while (a != null || b != null) {
+            Entry e;
+            if (b == null || (a != null && a.seq < b.seq)) {
+                e = a;
+                a = a.groupNext;
+            } else {
+                e = b;
+                b = b.groupNext;
+                e.lotId = to;
+                e.group = target;
+            }
+            e.groupPrev = target.tail;
+            e.groupNext = null;
+            if (target.tail == null) target.head = e; else target.tail.groupNext = e;
+            target.tail = e;
+            target.size++;
+        }
+        return true;
+    }
+
+    private void record(Entry e) {
+        record(line(e));
+    }
+
+    private static String line(Entry e) {
+        return "+," + e.vehicle + "," + e.enqueuedAt + "," + (e.lotId == null ? "" : e.lotId) + "," + e.amenities;
     }
 
-    public boolean isEmpty() { return queue.isEmpty(); }
+    private void record(String line) {
+        write(line);
+        flushLog();
+    }
+
+    private void write(String line) {
+        try {
+            if (out == null) out = open(true);
+            out.write(line);
+            out.write('\n');
+            logLines++;
+        } catch (IOException ex) {
+            System.out.println("Error saving waitlist: " + ex.getMessage());
+        }
+    }
+
+    private void flushLog() {
+        try {
+            if (logLines > 2 * byVehicle.size() + COMPACT_SLACK) compact();
+            else if (out != null) out.flush();
+        } catch (IOException ex) {
+            System.out.println("Error saving waitlist: " + ex.getMessage());
+        }
+    }
+
+    private Writer open(boolean append) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filepath, append), StandardCharsets.UTF_8));
+    }
 
-    public void persist() {
-        try { FileUtil.saveWaitlist(filepath, queue); }
-        catch (Exception ex) { System.out.println("Error saving waitlist: " + ex.getMessage()); }
+    private void load() throws IOException {
+        File f = new File(filepath);
+        if (!f.exists()) return;
+        try (BufferedReader br = Files.newBufferedReader(f.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                logLines++;
+                String[] p = line.split(",", -1);
+                try {
+                    if (p[0].equals("+") && p.length >= 5) {
+                        link(p[1], p[3], Integer.parseInt(p[4]) & 15, Long.parseLong(p[2]));
+                    } else if (p[0].equals("R") && p.length >= 3) {
+                        moveGroup(p[1], p[2]);
+                    } else if (p[0].equals("-") && p.length >= 2) {
+                        Entry e = byVehicle.get(p[1]);
+                        if (e != null) unlink(e);
+                    } else {
+                        long seconds = p.length > 1 ? Long.parseLong(p[1].trim()) : System.currentTimeMillis() / 1000;
+                        link(p[0].trim().toUpperCase(), null, 0, seconds * 1000);
+                    }
+                } catch (NumberFormatException ex) {
+                    System.out.println("Skipping bad waitlist line: " + line);
+                }
+            }
+        }
     }
 
-    public List<String> snapshot() {
-        return new ArrayList<>(queue);
+    // Rewrite the file with only the live entries, then keep appending to it
+    private void compact() throws IOException {
+        if (out != null) out.close();
+        Path target = Paths.get(filepath);
+        Path tmp = Paths.get(filepath + ".tmp");
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (Entry e = head; e != null; e = e.next) {
+                w.write(line(e));
+                w.write('\n');
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logLines = byVehicle.size();
+        out = open(true);
     }
 }